@@ -0,0 +1,557 @@
+import java.util.Random;
+
+/**
+ * A minesweeper board held as bitsets, for simulations that go through many boards.
+ *
+ * Mines, open cells and flags are long[] bitsets with one stride of words per
+ * row; column c of a row is bit c % 64 of word c / 64. Neighbor counts are bit
+ * sliced: four bitsets hold bits 0 to 3 of every count, filled by adding the
+ * eight shifted mine rows with word-wide half adders, 64 cells at a time. A
+ * cascade grows the clicked zero cell inside the zero mask a row at a time:
+ * each run of zero cells touched is filled whole by a Kogge-Stone fill, and
+ * sweeps up and down the rows repeat until the region stops growing. Then its
+ * border is opened by one dilation.
+ *
+ * Boards from generate() have the same mines as MineSweeper for the same seed.
+ */
+public class BitBoard {
+
+	/**
+	 * Number of rows.
+	 */
+	private final int rowCount;
+
+	/**
+	 * Number of columns.
+	 */
+	private final int colCount;
+
+	/**
+	 * Words per row.
+	 */
+	private final int words;
+
+	/**
+	 * Valid columns of the last word of a row.
+	 */
+	private final long lastMask;
+
+	/**
+	 * Cells with a mine.
+	 */
+	private final long[] mines;
+
+	/**
+	 * Open cells.
+	 */
+	private final long[] visible;
+
+	/**
+	 * Flagged cells.
+	 */
+	private final long[] flagged;
+
+	/**
+	 * Safe cells with no mine around.
+	 */
+	private final long[] zero;
+
+	/**
+	 * Bit slices of the neighbor counts, lowest bit first.
+	 */
+	private final long[][] count = new long[4][];
+
+	/**
+	 * Scratch bitset of the region of a cascade.
+	 */
+	private final long[] region;
+
+	/**
+	 * First row the current cascade reached.
+	 */
+	private int lo;
+
+	/**
+	 * Last row the current cascade reached.
+	 */
+	private int hi;
+
+	/**
+	 * First word of a row the current cascade reached.
+	 */
+	private int left;
+
+	/**
+	 * Last word of a row the current cascade reached.
+	 */
+	private int right;
+
+	/**
+	 * Number of mines.
+	 */
+	private int mineCount;
+
+	/**
+	 * Safe cells opened.
+	 */
+	private int clickedCount;
+
+	/**
+	 * Whether a mine was opened.
+	 */
+	private boolean exploded;
+
+	/**
+	 * Constructor, creates an empty board; add mines, then call countAll().
+	 * @param rowCount Number of rows.
+	 * @param colCount Number of columns.
+	 */
+	public BitBoard(int rowCount, int colCount){
+		if (rowCount <= 0 || colCount <= 0)
+			throw new IllegalArgumentException("Board size must be positive");
+		this.rowCount = rowCount;
+		this.colCount = colCount;
+		words = (colCount + 63) >>> 6;
+		lastMask = -1L >>> (words * 64 - colCount);
+		int n = rowCount * words;
+		mines = new long[n];
+		visible = new long[n];
+		flagged = new long[n];
+		zero = new long[n];
+		region = new long[n];
+		for (int b = 0; b < count.length; b++)
+			count[b] = new long[n];
+	}
+
+	/**
+	 * Builds the board MineSweeper builds from the same seed, with counts.
+	 * @param seed Seed for the random numbers.
+	 * @param rowCount Number of rows.
+	 * @param colCount Number of columns.
+	 * @param mineCount Number of mines.
+	 * @return The board.
+	 */
+	public static BitBoard generate(int seed, int rowCount, int colCount, int mineCount){
+		BitBoard board = new BitBoard(rowCount, colCount);
+		DynIntArr310 cells = MinePlacer.place(new Random(seed), rowCount, colCount, mineCount);
+		for (int i = 0; i < cells.size(); i++)
+			board.setMine(cells.get(i) / colCount, cells.get(i) % colCount);
+		board.countAll();
+		return board;
+	}
+
+	/**
+	 * Places a mine; counts are stale until countAll().
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 */
+	public void setMine(int row, int col){
+		int w = row * words + (col >>> 6);
+		long bit = 1L << col;
+		if ((mines[w] & bit) == 0){
+			mines[w] |= bit;
+			mineCount++;
+		}
+	}
+
+	/**
+	 * Reads word w of a row shifted so each cell sees its west neighbor.
+	 * @param bits Bitset.
+	 * @param base First word of the row.
+	 * @param w Word in the row.
+	 * @return Bits of the cells to the west.
+	 */
+	private long west(long[] bits, int base, int w){
+		long x = bits[base + w] << 1;
+		return w > 0 ? x | bits[base + w - 1] >>> 63 : x;
+	}
+
+	/**
+	 * Reads word w of a row shifted so each cell sees its east neighbor.
+	 * @param bits Bitset.
+	 * @param base First word of the row.
+	 * @param w Word in the row.
+	 * @return Bits of the cells to the east.
+	 */
+	private long east(long[] bits, int base, int w){
+		long x = bits[base + w] >>> 1;
+		return w < words - 1 ? x | bits[base + w + 1] << 63 : x;
+	}
+
+	/**
+	 * Computes every neighbor count and the zero mask with word-wide adders:
+	 * each of the eight neighbor directions is a shifted mine row added into
+	 * the four count slices at once. O(rows x words).
+	 */
+	public void countAll(){
+		long[] c0 = count[0], c1 = count[1], c2 = count[2], c3 = count[3];
+		for (int r = 0; r < rowCount; r++){
+			int base = r * words;
+			for (int w = 0; w < words; w++){
+				long s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+				for (int dr = -1; dr <= 1; dr++){
+					int rr = r + dr;
+					if (rr < 0 || rr >= rowCount)
+						continue;
+					int b = rr * words;
+					for (int d = 0; d < 3; d++){
+						long add = d == 0 ? west(mines, b, w) : d == 1 ? east(mines, b, w) : dr != 0 ? mines[b + w] : 0;
+						//ripple the new bit through the four slices
+						long carry = s0 & add;
+						s0 ^= add;
+						long carry1 = s1 & carry;
+						s1 ^= carry;
+						long carry2 = s2 & carry1;
+						s2 ^= carry1;
+						s3 ^= carry2;
+					}
+				}
+				c0[base + w] = s0;
+				c1[base + w] = s1;
+				c2[base + w] = s2;
+				c3[base + w] = s3;
+				long valid = w == words - 1 ? lastMask : -1L;
+				zero[base + w] = ~(s0 | s1 | s2 | s3 | mines[base + w]) & valid;
+			}
+		}
+	}
+
+	/**
+	 * Reports the number of mines around a cell from the count slices.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return Count of the cell, -1 for a mine.
+	 */
+	public int getCount(int row, int col){
+		int w = row * words + (col >>> 6);
+		if ((mines[w] >>> col & 1) != 0)
+			return -1;
+		return (int) ((count[0][w] >>> col & 1) | (count[1][w] >>> col & 1) << 1
+			| (count[2][w] >>> col & 1) << 2 | (count[3][w] >>> col & 1) << 3);
+	}
+
+	/**
+	 * Opens a cell like MineSweeper.clickAt: a mine explodes, a zero cell opens
+	 * its zero region and the region's border.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return Returns -2 if the cell is invalid, flagged or open, -1 for a mine, the count of the cell otherwise.
+	 */
+	public int clickAt(int row, int col){
+		if (row < 0 || row >= rowCount || col < 0 || col >= colCount)
+			return -2;
+		int w = row * words + (col >>> 6);
+		long bit = 1L << col;
+		if (((visible[w] | flagged[w]) & bit) != 0)
+			return -2;
+		visible[w] |= bit;
+		if ((mines[w] & bit) != 0){
+			exploded = true;
+			return -1;
+		}
+		if ((zero[w] & bit) == 0){
+			clickedCount++;
+			return getCount(row, col);
+		}
+		visible[w] &= ~bit;
+		cascade(row, w, bit);
+		return 0;
+	}
+
+	/**
+	 * Opens every zero region not open yet, finding hidden zero cells a word at a time.
+	 * @return Number of regions opened, i.e. the clicks it took.
+	 */
+	public int openZeroRegions(){
+		int clicks = 0;
+		for (int w = 0; w < zero.length; w++){
+			long hidden;
+			while ((hidden = zero[w] & ~visible[w] & ~flagged[w]) != 0){
+				cascade(w / words, w, Long.lowestOneBit(hidden));
+				clicks++;
+			}
+		}
+		return clicks;
+	}
+
+	/**
+	 * Grows the zero region of a cell, then opens the region and its border.
+	 * Sweeps only cover the rows and words the region reached so far.
+	 * @param row Row of the cell.
+	 * @param w Word of the cell.
+	 * @param bit Bit of the cell in the word.
+	 */
+	private void cascade(int row, int w, long bit){
+		region[w] = bit;
+		lo = hi = row;
+		left = right = w - row * words;
+		fillRow(row);
+		boolean grew = true;
+		while (grew){
+			grew = false;
+			//sweep down, then up: each row takes the dilated rows next to it
+			for (int r = Math.max(0, lo - 1); r <= Math.min(rowCount - 1, hi + 1); r++)
+				grew |= grow(r);
+			for (int r = Math.min(rowCount - 1, hi + 1); r >= Math.max(0, lo - 1); r--)
+				grew |= grow(r);
+		}
+
+		//open the region dilated by one cell, and clear the scratch rows
+		int from = Math.max(0, left - 1);
+		int to = Math.min(words - 1, right + 1);
+		for (int r = Math.max(0, lo - 1); r <= Math.min(rowCount - 1, hi + 1); r++){
+			int base = r * words;
+			for (int x = from; x <= to; x++){
+				long near = 0;
+				for (int rr = Math.max(lo, r - 1); rr <= Math.min(hi, r + 1); rr++){
+					int b = rr * words;
+					near |= region[b + x] | west(region, b, x) | east(region, b, x);
+				}
+				if (x == words - 1)
+					near &= lastMask;
+				long open = near & ~visible[base + x];
+				visible[base + x] |= open;
+				clickedCount += Long.bitCount(open);
+			}
+		}
+		for (int r = lo; r <= hi; r++)
+			java.util.Arrays.fill(region, r * words + left, r * words + right + 1, 0);
+	}
+
+	/**
+	 * Adds to a row of the region the zero cells next to the region rows around it.
+	 * @param r Row.
+	 * @return true if the row grew.
+	 */
+	private boolean grow(int r){
+		int base = r * words;
+		boolean grew = false;
+		int rFrom = Math.max(lo, r - 1);
+		int rTo = Math.min(hi, r + 1);
+		for (int x = Math.max(0, left - 1); x <= Math.min(words - 1, right + 1); x++){
+			long near = 0;
+			for (int rr = rFrom; rr <= rTo; rr++){
+				if (rr == r)
+					continue;
+				int b = rr * words;
+				near |= region[b + x] | west(region, b, x) | east(region, b, x);
+			}
+			long add = near & zero[base + x] & ~region[base + x];
+			if (add != 0){
+				region[base + x] |= add;
+				grew = true;
+			}
+		}
+		if (grew){
+			lo = Math.min(lo, r);
+			hi = Math.max(hi, r);
+			fillRow(r);
+		}
+		return grew;
+	}
+
+	/**
+	 * Extends the region in a row to the whole runs of zero cells it touches,
+	 * with Kogge-Stone fills inside each word and carries between words.
+	 * @param r Row.
+	 */
+	private void fillRow(int r){
+		int base = r * words;
+		//upward: towards higher columns
+		for (int x = 0; x < words; x++){
+			long seed = region[base + x];
+			if (x > 0)
+				seed |= region[base + x - 1] >>> 63;
+			region[base + x] = fillUp(seed & zero[base + x], zero[base + x]) | region[base + x];
+		}
+		//downward: towards lower columns
+		for (int x = words - 1; x >= 0; x--){
+			long seed = region[base + x];
+			if (x < words - 1)
+				seed |= region[base + x + 1] << 63;
+			region[base + x] |= fillDown(seed & zero[base + x], zero[base + x]);
+		}
+		while (left > 0 && region[base + left - 1] != 0)
+			left--;
+		while (right < words - 1 && region[base + right + 1] != 0)
+			right++;
+	}
+
+	/**
+	 * Spreads bits to higher positions through a mask in log2(64) steps.
+	 * @param g Bits to spread, inside the mask.
+	 * @param p Mask the bits may spread through.
+	 * @return The bits and every mask bit above one of them in the same run.
+	 */
+	private static long fillUp(long g, long p){
+		g |= p & (g << 1);
+		p &= p << 1;
+		g |= p & (g << 2);
+		p &= p << 2;
+		g |= p & (g << 4);
+		p &= p << 4;
+		g |= p & (g << 8);
+		p &= p << 8;
+		g |= p & (g << 16);
+		p &= p << 16;
+		return g | (p & (g << 32));
+	}
+
+	/**
+	 * Spreads bits to lower positions through a mask in log2(64) steps.
+	 * @param g Bits to spread, inside the mask.
+	 * @param p Mask the bits may spread through.
+	 * @return The bits and every mask bit below one of them in the same run.
+	 */
+	private static long fillDown(long g, long p){
+		g |= p & (g >>> 1);
+		p &= p >>> 1;
+		g |= p & (g >>> 2);
+		p &= p >>> 2;
+		g |= p & (g >>> 4);
+		p &= p >>> 4;
+		g |= p & (g >>> 8);
+		p &= p >>> 8;
+		g |= p & (g >>> 16);
+		p &= p >>> 16;
+		return g | (p & (g >>> 32));
+	}
+
+	/**
+	 * Flags a hidden cell.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return Returns true if the cell was flagged.
+	 */
+	public boolean flagAt(int row, int col){
+		int w = row * words + (col >>> 6);
+		long bit = 1L << col;
+		if (((visible[w] | flagged[w]) & bit) != 0)
+			return false;
+		flagged[w] |= bit;
+		return true;
+	}
+
+	/**
+	 * Reports whether a cell has a mine.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return true if it has a mine.
+	 */
+	public boolean hasMine(int row, int col) { return (mines[row * words + (col >>> 6)] >>> col & 1) != 0; }
+
+	/**
+	 * Reports whether a cell is open.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return true if open.
+	 */
+	public boolean isVisible(int row, int col) { return (visible[row * words + (col >>> 6)] >>> col & 1) != 0; }
+
+	/**
+	 * Reports whether a cell is flagged.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return true if flagged.
+	 */
+	public boolean isFlagged(int row, int col) { return (flagged[row * words + (col >>> 6)] >>> col & 1) != 0; }
+
+	/**
+	 * Reports whether a mine was opened.
+	 * @return true if exploded.
+	 */
+	public boolean isExploded() { return exploded; }
+
+	/**
+	 * Reports whether every safe cell is open and no mine is.
+	 * @return true if solved.
+	 */
+	public boolean isSolved() { return !exploded && clickedCount + mineCount == rowCount * colCount; }
+
+	/**
+	 * Reports the safe cells opened.
+	 * @return Opened cells.
+	 */
+	public int clickedCount() { return clickedCount; }
+
+	/**
+	 * Reports the number of mines.
+	 * @return Mines.
+	 */
+	public int mineCount() { return mineCount; }
+
+	/**
+	 * Reports the number of rows.
+	 * @return Rows.
+	 */
+	public int rowCount() { return rowCount; }
+
+	/**
+	 * Reports the number of columns.
+	 * @return Columns.
+	 */
+	public int colCount() { return colCount; }
+
+	/**
+	 * Self-checks against MineSweeper.
+	 * @param args Not used.
+	 */
+	public static void main(String[] args){
+		int[][] sizes = { {1, 1}, {16, 30}, {9, 63}, {9, 64}, {12, 65}, {40, 130}, {100, 100} };
+
+		//counts match countNbrMines, on widths around the word size
+		boolean counts = true;
+		for (int[] size : sizes)
+			for (int seed = 0; seed < 20; seed++){
+				int mines = size[0] * size[1] / 6;
+				MineSweeper game = new MineSweeper(seed, MineSweeper.Level.CUSTOM, size[0], size[1], mines);
+				BitBoard bits = generate(seed, size[0], size[1], mines);
+				for (int r = 0; r < size[0]; r++)
+					for (int c = 0; c < size[1]; c++)
+						counts &= bits.getCount(r, c) == game.countNbrMines(r, c);
+			}
+		if (counts){
+			System.out.println("Yay 1");
+		}
+
+		//clicks, cascades included, open the same cells as MineSweeper
+		boolean same = true;
+		Random random = new Random(1);
+		for (int[] size : sizes)
+			for (int seed = 0; seed < 20; seed++){
+				int mines = size[0] * size[1] / (seed % 2 == 0 ? 12 : 40);
+				MineSweeper game = new MineSweeper(seed, MineSweeper.Level.CUSTOM, size[0], size[1], mines);
+				BitBoard bits = generate(seed, size[0], size[1], mines);
+				for (int k = 0; k < 30 && !game.isExploded(); k++){
+					int r = random.nextInt(size[0]);
+					int c = random.nextInt(size[1]);
+					if (game.hasMine(r, c))
+						continue;
+					same &= game.clickAt(r, c) == bits.clickAt(r, c);
+				}
+				for (int r = 0; r < size[0]; r++)
+					for (int c = 0; c < size[1]; c++)
+						same &= bits.isVisible(r, c) == game.isVisible(r, c);
+				same &= bits.clickedCount() == game.clickedCount() && bits.isSolved() == game.isSolved();
+			}
+		if (same){
+			System.out.println("Yay 2");
+		}
+
+		//opening every zero region opens the same cells as clicking every zero
+		boolean zeros = true;
+		for (int seed = 0; seed < 200; seed++){
+			MineSweeper game = new MineSweeper(seed, MineSweeper.Level.HARD);
+			for (int i = 0; i < 16 * 30; i++)
+				if (!game.hasMine(i / 30, i % 30) && game.getCount(i / 30, i % 30) == 0)
+					game.clickAt(i / 30, i % 30);
+			BitBoard bits = generate(seed, 16, 30, 99);
+			bits.openZeroRegions();
+			for (int i = 0; i < 16 * 30; i++)
+				zeros &= bits.isVisible(i / 30, i % 30) == game.isVisible(i / 30, i % 30);
+		}
+		if (zeros){
+			System.out.println("Yay 3");
+		}
+	}
+}
@@ -0,0 +1,489 @@
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded pool of ready-made MineSweeper games, so a new game does not have
+ * to build its board on the JavaFX thread.
+ *
+ * Each board setting (a standard level, or the size of a custom game) has its own
+ * queue of up to capacity games. A low-priority daemon thread keeps the queues of
+ * the settings in use full, most recently used first. take() removes a game in
+ * O(1), or builds one on the spot when the queue is empty. Only one custom setting
+ * is kept at a time. Games are counted by their full footprint against a byte
+ * budget. The heap is checked on every take() and, while the worker is idle,
+ * every IDLE_CHECK_MILLIS; when it is tight the queues of the least recently
+ * used settings are dropped.
+ */
+public class BoardPool {
+
+	/**
+	 * Share of the maximum heap the pooled games may use.
+	 */
+	private static final int BUDGET_DIVISOR = 16;
+
+	/**
+	 * The heap counts as tight when less than 1/TIGHT_DIVISOR of it is free.
+	 */
+	private static final int TIGHT_DIVISOR = 4;
+
+	/**
+	 * Longest time the idle worker waits before checking the heap again.
+	 */
+	private static final long IDLE_CHECK_MILLIS = 500;
+
+	/**
+	 * Games kept per setting.
+	 */
+	private final int capacity;
+
+	/**
+	 * Bytes the pooled games may use.
+	 */
+	private final long budget;
+
+	/**
+	 * Queues by setting, least recently used first. Guarded by itself.
+	 */
+	private final LinkedHashMap<Setting, ArrayDeque<MineSweeper>> queues = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * Estimated bytes of the pooled games. Guarded by queues.
+	 */
+	private long bytes;
+
+	/**
+	 * Seeds of new games. Guarded by queues.
+	 */
+	private final Random seeds;
+
+	/**
+	 * Games taken from a queue, per level.
+	 */
+	private final LongAdder[] hits = adders();
+
+	/**
+	 * Games built on the spot because the queue was empty, per level.
+	 */
+	private final LongAdder[] misses = adders();
+
+	/**
+	 * Games dropped to save memory.
+	 */
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Thread that fills the queues.
+	 */
+	private final Thread worker;
+
+	/**
+	 * Set when the pool is shut down. Guarded by queues.
+	 */
+	private boolean stopped;
+
+	/**
+	 * Constructor, starts the background worker.
+	 * @param seed Seed of the sequence of game seeds.
+	 * @param capacity Games kept per setting.
+	 */
+	public BoardPool(long seed, int capacity){
+		this.capacity = capacity;
+		this.seeds = new Random(seed);
+		this.budget = Runtime.getRuntime().maxMemory() / BUDGET_DIVISOR;
+		worker = new Thread(this::fill, "BoardPool");
+		worker.setDaemon(true);
+		worker.setPriority(Thread.MIN_PRIORITY);
+		worker.start();
+	}
+
+	/**
+	 * Creates one counter per level.
+	 * @return Counters indexed by level ordinal.
+	 */
+	private static LongAdder[] adders(){
+		LongAdder[] adders = new LongAdder[MineSweeper.Level.values().length];
+		for (int i = 0; i < adders.length; i++)
+			adders[i] = new LongAdder();
+		return adders;
+	}
+
+	/**
+	 * Asks the worker to keep games of a standard level ready.
+	 * @param level Level, not CUSTOM.
+	 */
+	public void prefill(MineSweeper.Level level){
+		synchronized (queues){
+			queueOf(new Setting(level, 0, 0, 0));
+			queues.notifyAll();
+		}
+	}
+
+	/**
+	 * Takes a game of a standard level.
+	 * @param level Level, not CUSTOM.
+	 * @return A fresh game.
+	 */
+	public MineSweeper take(MineSweeper.Level level){
+		if (level == MineSweeper.Level.CUSTOM)
+			throw new IllegalArgumentException("Customized games need more parameters!");
+		return take(new Setting(level, 0, 0, 0));
+	}
+
+	/**
+	 * Takes a custom game.
+	 * @param rowCount Number of rows.
+	 * @param colCount Number of columns.
+	 * @param mineCount Number of mines.
+	 * @return A fresh game.
+	 */
+	public MineSweeper take(int rowCount, int colCount, int mineCount){
+		return take(new Setting(MineSweeper.Level.CUSTOM, rowCount, colCount, mineCount));
+	}
+
+	/**
+	 * Takes a game from the queue of a setting, or builds one if it is empty.
+	 * Either way the setting becomes the most recently used one.
+	 * @param setting Board setting.
+	 * @return A fresh game.
+	 */
+	private MineSweeper take(Setting setting){
+		MineSweeper game;
+		int seed;
+		synchronized (queues){
+			game = queueOf(setting).poll();
+			if (game != null)
+				bytes -= game.bytes();
+			if (memoryTight())
+				evictOldest();
+			seed = seeds.nextInt();
+			queues.notifyAll();
+		}
+		if (game != null){
+			hits[setting.level.ordinal()].increment();
+			return game;
+		}
+		misses[setting.level.ordinal()].increment();
+		return setting.build(seed);
+	}
+
+	/**
+	 * Finds or creates the queue of a setting and marks it most recently used.
+	 * A new custom setting replaces the previous one. Call with queues held.
+	 * @param setting Board setting.
+	 * @return The queue.
+	 */
+	private ArrayDeque<MineSweeper> queueOf(Setting setting){
+		ArrayDeque<MineSweeper> queue = queues.get(setting);
+		if (queue != null)
+			return queue;
+		if (setting.level == MineSweeper.Level.CUSTOM){
+			Iterator<Map.Entry<Setting, ArrayDeque<MineSweeper>>> it = queues.entrySet().iterator();
+			while (it.hasNext()){
+				Map.Entry<Setting, ArrayDeque<MineSweeper>> entry = it.next();
+				if (entry.getKey().level == MineSweeper.Level.CUSTOM){
+					drop(entry.getValue());
+					it.remove();
+				}
+			}
+		}
+		queue = new ArrayDeque<>();
+		queues.put(setting, queue);
+		return queue;
+	}
+
+	/**
+	 * Empties a queue and counts its games as evicted. Call with queues held.
+	 * @param queue Queue to empty.
+	 */
+	private void drop(ArrayDeque<MineSweeper> queue){
+		evictions.add(queue.size());
+		for (MineSweeper game : queue)
+			bytes -= game.bytes();
+		queue.clear();
+	}
+
+	/**
+	 * Body of the worker: builds games for the most recently used setting that is
+	 * not full, and sleeps while every queue is full or the budget is used up,
+	 * waking every IDLE_CHECK_MILLIS to check the heap.
+	 */
+	private void fill(){
+		while (true){
+			Setting setting;
+			int seed;
+			synchronized (queues){
+				setting = null;
+				while (!stopped && (setting = nextToFill()) == null){
+					try {
+						queues.wait(IDLE_CHECK_MILLIS);
+					}
+					catch (InterruptedException e){
+						return;
+					}
+				}
+				if (stopped)
+					return;
+				seed = seeds.nextInt();
+			}
+
+			MineSweeper game = setting.build(seed);
+
+			synchronized (queues){
+				ArrayDeque<MineSweeper> queue = peek(setting);
+				if (queue != null && queue.size() < capacity){
+					queue.add(game);
+					bytes += game.bytes();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the queue of a setting without marking it used, since only take()
+	 * should change the order. Call with queues held.
+	 * @param setting Board setting.
+	 * @return The queue, or null if the setting was dropped.
+	 */
+	private ArrayDeque<MineSweeper> peek(Setting setting){
+		for (Map.Entry<Setting, ArrayDeque<MineSweeper>> entry : queues.entrySet())
+			if (entry.getKey().equals(setting))
+				return entry.getValue();
+		return null;
+	}
+
+	/**
+	 * Picks the setting to build a game for, dropping old queues when memory is
+	 * tight. Call with queues held.
+	 * @return The most recently used setting whose queue is not full, or null.
+	 */
+	private Setting nextToFill(){
+		if (memoryTight())
+			evictOldest();
+
+		Setting best = null;
+		for (Map.Entry<Setting, ArrayDeque<MineSweeper>> entry : queues.entrySet())
+			if (entry.getValue().size() < capacity && bytes + entry.getKey().bytes() <= budget)
+				best = entry.getKey();
+		return best;
+	}
+
+	/**
+	 * Reports whether less than a quarter of the maximum heap is free.
+	 * @return true if the heap is tight.
+	 */
+	private static boolean memoryTight(){
+		Runtime runtime = Runtime.getRuntime();
+		long used = runtime.totalMemory() - runtime.freeMemory();
+		return runtime.maxMemory() - used < runtime.maxMemory() / TIGHT_DIVISOR;
+	}
+
+	/**
+	 * Empties the queues of every setting but the most recently used one.
+	 * Call with queues held.
+	 */
+	private void evictOldest(){
+		int left = queues.size();
+		for (Map.Entry<Setting, ArrayDeque<MineSweeper>> entry : queues.entrySet())
+			if (--left > 0)
+				drop(entry.getValue());
+	}
+
+	/**
+	 * Reports how many games of a standard level are ready.
+	 * @param level Level, not CUSTOM.
+	 * @return Number of pooled games.
+	 */
+	public int ready(MineSweeper.Level level){
+		synchronized (queues){
+			for (Map.Entry<Setting, ArrayDeque<MineSweeper>> entry : queues.entrySet())
+				if (entry.getKey().level == level)
+					return entry.getValue().size();
+		}
+		return 0;
+	}
+
+	/**
+	 * Reports the estimated memory of the pooled games.
+	 * @return Bytes counted against the budget.
+	 */
+	public long pooledBytes(){
+		synchronized (queues){
+			return bytes;
+		}
+	}
+
+	/**
+	 * Reports games taken from the pool.
+	 * @param level Level.
+	 * @return Number of hits.
+	 */
+	public long hits(MineSweeper.Level level) { return hits[level.ordinal()].sum(); }
+
+	/**
+	 * Reports games built on the spot because the pool was empty.
+	 * @param level Level.
+	 * @return Number of misses.
+	 */
+	public long misses(MineSweeper.Level level) { return misses[level.ordinal()].sum(); }
+
+	/**
+	 * Reports games dropped to save memory or for a new custom setting.
+	 * @return Number of evicted games.
+	 */
+	public long evictions() { return evictions.sum(); }
+
+	/**
+	 * Stops the worker and empties the pool.
+	 */
+	public void shutdown(){
+		synchronized (queues){
+			stopped = true;
+			for (Map.Entry<Setting, ArrayDeque<MineSweeper>> entry : queues.entrySet())
+				entry.getValue().clear();
+			bytes = 0;
+			queues.notifyAll();
+		}
+	}
+
+	/**
+	 * Displays hit/miss counts per level that was used.
+	 * @return A string representation of the metrics.
+	 */
+	@Override
+	public String toString(){
+		StringBuilder sb = new StringBuilder();
+		for (MineSweeper.Level level : MineSweeper.Level.values())
+			if (hits(level) + misses(level) > 0)
+				sb.append(level).append(" hits=").append(hits(level))
+					.append(" misses=").append(misses(level)).append(' ');
+		return sb.append("evictions=").append(evictions()).toString();
+	}
+
+	/**
+	 * A board setting: a standard level, or a custom size.
+	 */
+	private static final class Setting {
+
+		/**
+		 * Level of the games.
+		 */
+		final MineSweeper.Level level;
+
+		/**
+		 * Rows, columns and mines of a custom setting, 0 otherwise.
+		 */
+		final int rowCount, colCount, mineCount;
+
+		/**
+		 * Constructor.
+		 * @param level Level of the games.
+		 * @param rowCount Rows of a custom setting.
+		 * @param colCount Columns of a custom setting.
+		 * @param mineCount Mines of a custom setting.
+		 */
+		Setting(MineSweeper.Level level, int rowCount, int colCount, int mineCount){
+			this.level = level;
+			this.rowCount = rowCount;
+			this.colCount = colCount;
+			this.mineCount = mineCount;
+		}
+
+		/**
+		 * Builds a game of this setting.
+		 * @param seed Seed of the game.
+		 * @return A fresh game.
+		 */
+		MineSweeper build(int seed){
+			return level == MineSweeper.Level.CUSTOM
+				? new MineSweeper(seed, level, rowCount, colCount, mineCount)
+				: new MineSweeper(seed, level);
+		}
+
+		/**
+		 * Estimates the memory of one fresh game before it is built: a byte per
+		 * cell, the neighbor table and object overhead, as MineSweeper.bytes()
+		 * counts them.
+		 * @return Estimated bytes.
+		 */
+		long bytes(){
+			int rows = level == MineSweeper.Level.CUSTOM ? rowCount : 16;
+			int cols = level == MineSweeper.Level.CUSTOM ? colCount : 30;
+			return (long) rows * cols + Topology.SQUARE.table(rows, cols).bytes() + 64 + 256 + 64;
+		}
+
+		@Override
+		public boolean equals(Object o){
+			if (!(o instanceof Setting))
+				return false;
+			Setting other = (Setting) o;
+			return level == other.level && rowCount == other.rowCount
+				&& colCount == other.colCount && mineCount == other.mineCount;
+		}
+
+		@Override
+		public int hashCode(){
+			return ((level.hashCode() * 31 + rowCount) * 31 + colCount) * 31 + mineCount;
+		}
+	}
+
+	/**
+	 * Waits until a level has some games ready, for the tests.
+	 * @param pool Pool to watch.
+	 * @param level Level.
+	 * @param count Games to wait for.
+	 * @return true if they were ready within two seconds.
+	 */
+	private static boolean await(BoardPool pool, MineSweeper.Level level, int count){
+		for (int tries = 0; tries < 200 && pool.ready(level) < count; tries++){
+			try {
+				Thread.sleep(10);
+			}
+			catch (InterruptedException e){
+				return false;
+			}
+		}
+		return pool.ready(level) >= count;
+	}
+
+	/**
+	 * Tests the BoardPool class.
+	 * @param args Not used.
+	 */
+	public static void main(String[] args){
+		BoardPool pool = new BoardPool(10, 4);
+
+		//an unused level misses, a prefilled one hits
+		MineSweeper game = pool.take(MineSweeper.Level.EASY);
+		pool.prefill(MineSweeper.Level.HARD);
+		if (await(pool, MineSweeper.Level.HARD, 4) && pool.take(MineSweeper.Level.HARD).rowCount() == 16
+				&& pool.hits(MineSweeper.Level.HARD) == 1 && pool.misses(MineSweeper.Level.EASY) == 1
+				&& game.rowCount() == 9)
+			System.out.println("Yay 1");
+
+		//the queue refills, and no more than capacity games are kept
+		if (await(pool, MineSweeper.Level.HARD, 4) && await(pool, MineSweeper.Level.EASY, 4)
+				&& pool.ready(MineSweeper.Level.HARD) == 4)
+			System.out.println("Yay 2");
+
+		//a new custom setting replaces the old one
+		pool.take(20, 20, 40);
+		await(pool, MineSweeper.Level.CUSTOM, 4);
+		MineSweeper custom = pool.take(20, 20, 40);
+		pool.take(30, 30, 90);
+		if (custom.rowCount() == 20 && pool.hits(MineSweeper.Level.CUSTOM) == 1 && pool.evictions() >= 3)
+			System.out.println("Yay 3");
+
+		//pooled games are counted with their neighbor tables, and the count follows takes and evictions
+		boolean full = await(pool, MineSweeper.Level.HARD, 4) && await(pool, MineSweeper.Level.EASY, 4)
+			&& await(pool, MineSweeper.Level.CUSTOM, 4);
+		long expected = 4 * (new MineSweeper(0, MineSweeper.Level.HARD).bytes() + new MineSweeper(0, MineSweeper.Level.EASY).bytes()
+			+ new MineSweeper(0, MineSweeper.Level.CUSTOM, 30, 30, 90).bytes());
+		if (full && pool.pooledBytes() == expected && new MineSweeper(0, MineSweeper.Level.HARD).bytes() > 16 * 30 + Topology.SQUARE.table(16, 30).bytes())
+			System.out.println("Yay 4");
+		pool.shutdown();
+	}
+}
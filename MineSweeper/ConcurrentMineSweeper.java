@@ -0,0 +1,501 @@
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A minesweeper game many players can play on one board at the same time.
+ *
+ * Every cell is one int of an AtomicIntegerArray in the PackedBoard layout, and
+ * a cell is only opened or flagged by a compare-and-set on it, so each cell is
+ * opened by exactly one player even when flood fills from several threads meet.
+ * Only the player that opens a cell counts it. The safe cells left to open are an
+ * AtomicInteger; the player that opens the last one, or a mine, ends the game by
+ * a compare-and-set of the status, so SOLVED or EXPLODED is decided exactly once.
+ * Once the game is over no mine opens and no new click or flag is taken; only
+ * flood fills already running may still open safe cells. The click and flag totals are
+ * LongAdders, as they are only read for display.
+ *
+ * The board is copied from a MineSweeper, so a seed and level give the same mines
+ * here as in a single-player game.
+ */
+public class ConcurrentMineSweeper {
+
+	/**
+	 * Packed state of each cell, in the PackedBoard layout.
+	 */
+	private final AtomicIntegerArray cells;
+
+	/**
+	 * Layout of the board, used read-only for neighbor indexes.
+	 */
+	private final PackedBoard layout;
+
+	/**
+	 * Number of rows of the board.
+	 */
+	private final int rowCount;
+
+	/**
+	 * Number of columns of the board.
+	 */
+	private final int colCount;
+
+	/**
+	 * Number of mines of the board.
+	 */
+	private final int mineCount;
+
+	/**
+	 * Safe cells not opened yet.
+	 */
+	private final AtomicInteger safeLeft;
+
+	/**
+	 * Current status of the game.
+	 */
+	private final AtomicReference<MineSweeper.Status> status;
+
+	/**
+	 * Cells opened so far.
+	 */
+	private final LongAdder clicked = new LongAdder();
+
+	/**
+	 * Flags placed minus flags removed.
+	 */
+	private final LongAdder flagged = new LongAdder();
+
+	/**
+	 * Constructor, takes over the mines, counts, open cells and topology of a game.
+	 * The game is not changed and not used afterwards.
+	 * @param game Game to copy, usually fresh.
+	 */
+	public ConcurrentMineSweeper(MineSweeper game){
+		rowCount = game.rowCount();
+		colCount = game.colCount();
+		mineCount = game.mineCount();
+		layout = new PackedBoard(rowCount, colCount, game.getTopology());
+		cells = new AtomicIntegerArray(rowCount * colCount);
+		for (int r = 0; r < rowCount; r++)
+			for (int c = 0; c < colCount; c++){
+				int state = game.hasMine(r, c) ? PackedBoard.MINE : game.getCount(r, c) + 1;
+				if (game.isVisible(r, c))
+					state |= PackedBoard.VISIBLE;
+				if (game.isFlagged(r, c))
+					state |= PackedBoard.FLAGGED;
+				cells.set(layout.index(r, c), state);
+			}
+		clicked.add(game.clickedCount());
+		flagged.add(game.flaggedCount());
+		safeLeft = new AtomicInteger(rowCount * colCount - mineCount - game.clickedCount());
+		status = new AtomicReference<>(statusOf(game));
+	}
+
+	/**
+	 * Constructor for a standard level.
+	 * @param seed Seed for the random numbers.
+	 * @param level Level of the game (Tiny, Easy, Medium, Hard).
+	 */
+	public ConcurrentMineSweeper(int seed, MineSweeper.Level level){
+		this(new MineSweeper(seed, level));
+	}
+
+	/**
+	 * Constructor for a customized game.
+	 * @param seed Seed for the random numbers.
+	 * @param rowCount Amount of rows in the game.
+	 * @param colCount Amount of columns in the game.
+	 * @param mineCount Amount of mines in the game.
+	 */
+	public ConcurrentMineSweeper(int seed, int rowCount, int colCount, int mineCount){
+		this(new MineSweeper(seed, MineSweeper.Level.CUSTOM, rowCount, colCount, mineCount));
+	}
+
+	/**
+	 * Reads the status of a game.
+	 * @param game Game to read.
+	 * @return Its status.
+	 */
+	private static MineSweeper.Status statusOf(MineSweeper game){
+		if (game.isSolved())
+			return MineSweeper.Status.SOLVED;
+		if (game.isExploded())
+			return MineSweeper.Status.EXPLODED;
+		return game.clickedCount() > 0 ? MineSweeper.Status.INGAME : MineSweeper.Status.INIT;
+	}
+
+	/**
+	 * Opens the cell at (row,col) like MineSweeper.clickAt. Safe to call from any thread.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return Returns -2 if the cell is invalid, flagged, already open or the game is over,
+	 * -1 if this call opened a mine and so ended the game, the number of adjacent mines otherwise.
+	 */
+	public int clickAt(int row, int col){
+		return clickAt(row, col, null);
+	}
+
+	/**
+	 * Opens the cell at (row,col) like MineSweeper.clickAt and reports the cells
+	 * this call opened. A flood fill skips cells another player opened first, so
+	 * the lists of all players never share a cell.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @param opened List the opened cells are appended to as flat indexes, or null.
+	 * @return Returns -2 if the cell is invalid, flagged, already open or the game is over,
+	 * -1 if this call opened a mine and so ended the game, the number of adjacent mines otherwise.
+	 */
+	public int clickAt(int row, int col, DynIntArr310 opened){
+		if (!layout.isValidCell(row, col) || isOver())
+			return -2;
+		int index = layout.index(row, col);
+		int state = open(index, PackedBoard.VISIBLE | PackedBoard.FLAGGED);
+		if (state < 0)
+			return -2;
+		if ((state & PackedBoard.MINE) != 0){
+			if (end(MineSweeper.Status.EXPLODED)){
+				if (opened != null)
+					opened.add(index);
+				return -1;
+			}
+			//the game ended while this click ran: the mine stays hidden
+			cells.updateAndGet(index, s -> s & ~PackedBoard.VISIBLE);
+			return -2;
+		}
+		if (opened != null)
+			opened.add(index);
+		int count = (state & PackedBoard.COUNT_MASK) - 1;
+		int open = 1;
+		if (count == 0)
+			open += fill(index, opened);
+		clicked.add(open);
+		status.compareAndSet(MineSweeper.Status.INIT, MineSweeper.Status.INGAME);
+		if (safeLeft.addAndGet(-open) == 0)
+			end(MineSweeper.Status.SOLVED);
+		return count;
+	}
+
+	/**
+	 * Sets the visible bit of a cell unless it has any of the blocking bits.
+	 * @param index Flat index of the cell.
+	 * @param blocked VISIBLE | FLAGGED for a clicked cell, VISIBLE for a cell a flood fill reaches.
+	 * @return The cell state before, or -1 if the cell had a blocking bit or another player won the race.
+	 */
+	private int open(int index, int blocked){
+		while (true){
+			int state = cells.get(index);
+			if ((state & blocked) != 0)
+				return -1;
+			if (cells.compareAndSet(index, state, state | PackedBoard.VISIBLE))
+				return state;
+		}
+	}
+
+	/**
+	 * Opens every cell connected to an opened zero-count cell through zero-count
+	 * cells, together with their neighbors, using a local worklist. Flagged cells
+	 * are opened too and keep their flag, as in MineSweeper.
+	 * @param index Flat index of a zero-count cell this thread opened.
+	 * @param opened List the opened cells are appended to, or null.
+	 * @return Number of cells opened besides index.
+	 */
+	private int fill(int index, DynIntArr310 opened){
+		DynIntArr310 work = new DynIntArr310();
+		int[] nbrs = new int[8];
+		work.add(index);
+		int open = 0;
+		while (work.size() > 0 && !isOver()){
+			int n = layout.neighbors(work.removeLast(), nbrs);
+			for (int i = 0; i < n; i++){
+				int state = open(nbrs[i], PackedBoard.VISIBLE);
+				if (state < 0)
+					continue;
+				open++;
+				if (opened != null)
+					opened.add(nbrs[i]);
+				//a zero cell has no mine around, so its neighbors are never mines
+				if ((state & PackedBoard.COUNT_MASK) == 1)
+					work.add(nbrs[i]);
+			}
+		}
+		return open;
+	}
+
+	/**
+	 * Ends a running game with the given status, once.
+	 * @param end SOLVED or EXPLODED.
+	 * @return Returns true if this call ended the game.
+	 */
+	private boolean end(MineSweeper.Status end){
+		while (true){
+			MineSweeper.Status now = status.get();
+			if (now == MineSweeper.Status.SOLVED || now == MineSweeper.Status.EXPLODED)
+				return false;
+			if (status.compareAndSet(now, end))
+				return true;
+		}
+	}
+
+	/**
+	 * Flags a hidden cell. Safe to call from any thread.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return Returns true if this call flagged the cell, false if it is invalid,
+	 * open, flagged already or the game is over.
+	 */
+	public boolean flagAt(int row, int col){
+		if (!layout.isValidCell(row, col) || isOver())
+			return false;
+		int index = layout.index(row, col);
+		while (true){
+			int state = cells.get(index);
+			if ((state & (PackedBoard.VISIBLE | PackedBoard.FLAGGED)) != 0)
+				return false;
+			if (cells.compareAndSet(index, state, state | PackedBoard.FLAGGED)){
+				flagged.increment();
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Removes the flag of a cell. Safe to call from any thread.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return Returns true if this call removed the flag.
+	 */
+	public boolean unFlagAt(int row, int col){
+		if (!layout.isValidCell(row, col) || isOver())
+			return false;
+		int index = layout.index(row, col);
+		while (true){
+			int state = cells.get(index);
+			if ((state & PackedBoard.FLAGGED) == 0)
+				return false;
+			if (cells.compareAndSet(index, state, state & ~PackedBoard.FLAGGED)){
+				flagged.decrement();
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Reports whether the game is solved or exploded.
+	 * @return true once the game is over.
+	 */
+	public boolean isOver(){
+		MineSweeper.Status now = status.get();
+		return now == MineSweeper.Status.SOLVED || now == MineSweeper.Status.EXPLODED;
+	}
+
+	/**
+	 * Reports whether the game is solved.
+	 * @return true if every safe cell was opened before any mine.
+	 */
+	public boolean isSolved() { return status.get() == MineSweeper.Status.SOLVED; }
+
+	/**
+	 * Reports whether a mine was opened.
+	 * @return true if the game exploded.
+	 */
+	public boolean isExploded() { return status.get() == MineSweeper.Status.EXPLODED; }
+
+	/**
+	 * Reports the current status of the game.
+	 * @return One of MineSweeper.Status_STRINGS.
+	 */
+	public String getStatus() { return MineSweeper.Status_STRINGS[status.get().ordinal()]; }
+
+	/**
+	 * Reports the number of rows.
+	 * @return Number of rows.
+	 */
+	public int rowCount() { return rowCount; }
+
+	/**
+	 * Reports the number of columns.
+	 * @return Number of columns.
+	 */
+	public int colCount() { return colCount; }
+
+	/**
+	 * Reports the number of mines.
+	 * @return Number of mines.
+	 */
+	public int mineCount() { return mineCount; }
+
+	/**
+	 * Reports the cells opened so far; exact once no click is running.
+	 * @return Opened cells.
+	 */
+	public long clickedCount() { return clicked.sum(); }
+
+	/**
+	 * Reports the flags placed; exact once no flag change is running.
+	 * @return Flagged cells.
+	 */
+	public long flaggedCount() { return flagged.sum(); }
+
+	/**
+	 * Reports the mines not flagged yet.
+	 * @return Mines minus flags.
+	 */
+	public long mineLeft() { return mineCount - flagged.sum(); }
+
+	/**
+	 * Reports whether a cell is open.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return true if the cell is valid and open.
+	 */
+	public boolean isVisible(int row, int col){
+		return layout.isValidCell(row, col) && (cells.get(layout.index(row, col)) & PackedBoard.VISIBLE) != 0;
+	}
+
+	/**
+	 * Reports whether a cell is flagged.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return true if the cell is valid and flagged.
+	 */
+	public boolean isFlagged(int row, int col){
+		return layout.isValidCell(row, col) && (cells.get(layout.index(row, col)) & PackedBoard.FLAGGED) != 0;
+	}
+
+	/**
+	 * Reports whether a cell has a mine.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return true if the cell is valid and has a mine.
+	 */
+	public boolean hasMine(int row, int col){
+		return layout.isValidCell(row, col) && (cells.get(layout.index(row, col)) & PackedBoard.MINE) != 0;
+	}
+
+	/**
+	 * Reports the number of mines around a cell.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return Count of the cell, -1 for a mine, -2 for an invalid cell.
+	 */
+	public int getCount(int row, int col){
+		if (!layout.isValidCell(row, col))
+			return -2;
+		int state = cells.get(layout.index(row, col));
+		return (state & PackedBoard.MINE) != 0 ? -1 : (state & PackedBoard.COUNT_MASK) - 1;
+	}
+
+	/**
+	 * Self-checks: the same game as MineSweeper on one thread, and exact counts
+	 * and a single end decision with many players on a 500x500 board.
+	 * @param args Not used.
+	 */
+	public static void main(String[] args) throws Exception {
+		//one player: the same cells open as in MineSweeper, on every topology
+		boolean same = true;
+		for (Topology topology : Topology.values()){
+			MineSweeper single = new MineSweeper(5, MineSweeper.Level.CUSTOM, 16, 30, 60, topology);
+			ConcurrentMineSweeper shared = new ConcurrentMineSweeper(new MineSweeper(5, MineSweeper.Level.CUSTOM, 16, 30, 60, topology));
+			//a flag on a zero cell, which cascades open anyway
+			int flag = 16 * 30 - 1;
+			while (single.hasMine(flag / 30, flag % 30) || single.getCount(flag / 30, flag % 30) != 0)
+				flag--;
+			same &= single.flagAt(flag / 30, flag % 30) && shared.flagAt(flag / 30, flag % 30);
+			//cascades first, then every safe cell left, until the game is solved
+			for (int pass = 0; pass < 2; pass++){
+				for (int i = 0; i < 16 * 30; i++)
+					if (!single.hasMine(i / 30, i % 30) && (pass == 1 || single.getCount(i / 30, i % 30) == 0))
+						same &= single.clickAt(i / 30, i % 30) == shared.clickAt(i / 30, i % 30);
+				if (!single.isVisible(flag / 30, flag % 30))
+					same &= single.unFlagAt(flag / 30, flag % 30) && shared.unFlagAt(flag / 30, flag % 30);
+			}
+			same &= single.isSolved();
+			for (int r = 0; r < 16; r++)
+				for (int c = 0; c < 30; c++)
+					if (single.isVisible(r, c) != shared.isVisible(r, c))
+						same = false;
+			same &= shared.clickedCount() == single.clickedCount() && shared.getStatus().equals(single.getStatus());
+		}
+		MineSweeper small = new MineSweeper(3, MineSweeper.Level.CUSTOM, 10, 10, 2);
+		ConcurrentMineSweeper smallShared = new ConcurrentMineSweeper(new MineSweeper(3, MineSweeper.Level.CUSTOM, 10, 10, 2));
+		int flag = -1;
+		int click = -1;
+		for (int i = 0; i < 100; i++)
+			if (small.getCount(i / 10, i % 10) == 0){
+				if (flag < 0)
+					flag = i;
+				else
+					click = i;
+			}
+		small.flagAt(flag / 10, flag % 10);
+		smallShared.flagAt(flag / 10, flag % 10);
+		same &= smallShared.clickAt(click / 10, click % 10) == small.clickAt(click / 10, click % 10)
+			&& smallShared.clickedCount() == small.clickedCount() && smallShared.isVisible(flag / 10, flag % 10);
+		if (same){
+			System.out.println("Yay 1");
+		}
+
+		//many players open every safe cell of a 500x500 board in their own orders
+		int players = 32;
+		int side = 500;
+		ConcurrentMineSweeper game = new ConcurrentMineSweeper(7, side, side, 25000);
+		int[] safe = new int[side * side - 25000];
+		int n = 0;
+		for (int i = 0; i < side * side; i++)
+			if (!game.hasMine(i / side, i % side))
+				safe[n++] = i;
+		ExecutorService pool = Executors.newFixedThreadPool(players);
+		AtomicInteger cellsOpened = new AtomicInteger();
+		Future<?>[] done = new Future<?>[players];
+		for (int p = 0; p < players; p++){
+			int player = p;
+			done[p] = pool.submit(() -> {
+				Random order = new Random(player);
+				int[] mine = safe.clone();
+				for (int i = mine.length - 1; i > 0; i--){
+					int j = order.nextInt(i + 1);
+					int t = mine[i];
+					mine[i] = mine[j];
+					mine[j] = t;
+				}
+				DynIntArr310 opened = new DynIntArr310();
+				for (int cell : mine)
+					game.clickAt(cell / side, cell % side, opened);
+				cellsOpened.addAndGet(opened.size());
+			});
+		}
+		for (Future<?> f : done)
+			f.get();
+		if (game.isSolved() && game.clickedCount() == safe.length && cellsOpened.get() == safe.length){
+			System.out.println("Yay 2");
+		}
+
+		//players race to open cells while one opens a mine: exactly one end, nothing opens after it
+		ConcurrentMineSweeper race = new ConcurrentMineSweeper(9, side, side, 25000);
+		AtomicInteger booms = new AtomicInteger();
+		for (int p = 0; p < players; p++){
+			int player = p;
+			done[p] = pool.submit(() -> {
+				Random order = new Random(100 + player);
+				for (int i = 0; i < 20000; i++)
+					if (race.clickAt(order.nextInt(side), order.nextInt(side)) == -1)
+						booms.incrementAndGet();
+			});
+		}
+		for (Future<?> f : done)
+			f.get();
+		long before = race.clickedCount();
+		race.clickAt(0, 0);
+		if (race.isExploded() && booms.get() == 1 && race.clickedCount() == before && !race.flagAt(1, 1)){
+			System.out.println("Yay 3");
+		}
+		pool.shutdown();
+		pool.awaitTermination(1, TimeUnit.MINUTES);
+	}
+}
@@ -1,9 +1,79 @@
+import java.util.Arrays;
+
 /**
  * A generic class that creates a dynamic array.
  * @param <T> Generic object type.
  */
 public class DynArr310<T> {
 
+	/**
+	 * Rules for growing and shrinking the storage of a DynArr310.
+	 */
+	public static final class GrowthPolicy {
+
+		/**
+		 * The original rules: double when full, halve when the size falls to 1/3 of the capacity.
+		 */
+		public static final GrowthPolicy DEFAULT = new GrowthPolicy(2.0, 1, 3);
+
+		/**
+		 * Capacity is multiplied by this factor when the storage is full.
+		 */
+		private final double growFactor;
+
+		/**
+		 * Capacity grows by at least this many elements.
+		 */
+		private final int minStep;
+
+		/**
+		 * Capacity is halved once the size falls to capacity / shrinkDivisor; 0 never shrinks.
+		 */
+		private final int shrinkDivisor;
+
+		/**
+		 * Constructor.
+		 * @param growFactor Factor applied to the capacity when full, greater than 1.
+		 * @param minStep Smallest number of elements to grow by, at least 1.
+		 * @param shrinkDivisor Halve the capacity once size is at most capacity / shrinkDivisor;
+		 *        at least 2 so a halved array is never over-full, or 0 to never shrink.
+		 */
+		public GrowthPolicy(double growFactor, int minStep, int shrinkDivisor){
+			if(!(growFactor > 1.0))
+				throw new IllegalArgumentException("Growth factor must be greater than 1!");
+			if(minStep < 1)
+				throw new IllegalArgumentException("Growth step must be at least 1!");
+			if(shrinkDivisor != 0 && shrinkDivisor < 2)
+				throw new IllegalArgumentException("Shrink divisor must be 0 or at least 2!");
+			this.growFactor = growFactor;
+			this.minStep = minStep;
+			this.shrinkDivisor = shrinkDivisor;
+		}
+
+		/**
+		 * Reports the capacity to grow to.
+		 * @param capacity Current capacity.
+		 * @param needed Smallest capacity required.
+		 * @return New capacity, at least needed.
+		 */
+		int grow(int capacity, int needed){
+			long grown = Math.max((long) capacity + minStep, (long) (capacity * growFactor));
+			return (int) Math.max(needed, Math.min(grown, Integer.MAX_VALUE - 8));
+		}
+
+		/**
+		 * Reports the capacity to shrink to after a removal, or the same capacity to keep it.
+		 * @param size Number of elements after the removal.
+		 * @param capacity Current capacity.
+		 * @return New capacity.
+		 */
+		int shrink(int size, int capacity){
+			if(shrinkDivisor == 0 || size > capacity / shrinkDivisor)
+				return capacity;
+			return Math.max(capacity / 2, MINCAP);
+		}
+	}
+
 	//underlying array for storage -- you MUST use this for credit!
 	//Do NOT change the name or type
 	/**
@@ -21,6 +91,11 @@ public class DynArr310<T> {
 	 * Amount of elements in the array.
 	 */
 	private int size = 0;
+
+	/**
+	 * Rules for growing and shrinking the storage.
+	 */
+	private final GrowthPolicy policy;
 			
 	/**
 	 * Constructor, creates and empty array with size MINCAP.
@@ -30,6 +105,7 @@ public class DynArr310<T> {
 		//constructor
 		//initial capacity of the array should be MINCAP
 		storage = (T[]) new Object[MINCAP];
+		policy = GrowthPolicy.DEFAULT;
 		// Hint: Can't remember how to make an array of generic Ts? It's in the textbook...
 	}
 
@@ -37,8 +113,17 @@ public class DynArr310<T> {
 	 * Constructor, creates and empty array with size initCap.
 	 * @param initCap Initial capacity of the array, must at least be 2.
 	 */
-	@SuppressWarnings("unchecked")
 	public DynArr310(int initCap){
+		this(initCap, GrowthPolicy.DEFAULT);
+	}
+
+	/**
+	 * Constructor, creates and empty array with size initCap and the given growth policy.
+	 * @param initCap Initial capacity of the array, must at least be 2.
+	 * @param policy Rules for growing and shrinking the storage.
+	 */
+	@SuppressWarnings("unchecked")
+	public DynArr310(int initCap, GrowthPolicy policy){
 		// Constructor
 
 		// Initial capacity of the storage should be initCap.
@@ -51,6 +136,9 @@ public class DynArr310<T> {
 			throw new IllegalArgumentException("Capacity must be at least 2!");
 		else
 			storage = (T[]) new Object[initCap];
+		if(policy == null)
+			throw new IllegalArgumentException("Null values not accepted!");
+		this.policy = policy;
 	}
 	
 	/**
@@ -125,11 +213,28 @@ public class DynArr310<T> {
 
 	}
 
+	/**
+	 * Grows the storage, if needed, so it holds at least minCapacity elements.
+	 * @param minCapacity Smallest capacity wanted.
+	 */
+	public void ensureCapacity(int minCapacity){
+		if(minCapacity > storage.length)
+			storage = Arrays.copyOf(storage, policy.grow(storage.length, minCapacity));
+	}
+
+	/**
+	 * Shrinks the storage to the number of elements, but not below MINCAP.
+	 */
+	public void trimToSize(){
+		int capacity = Math.max(size, MINCAP);
+		if(capacity < storage.length)
+			storage = Arrays.copyOf(storage, capacity);
+	}
+
 	/**
 	 * Appends an element to the end of the storage.
 	 * @param value Value to append, can't be null.
 	 */
-	@SuppressWarnings("unchecked")
 	public void add(T value){
 		// Append an element to the end of the storage.		
 		// Double the capacity if no space available.
@@ -144,17 +249,9 @@ public class DynArr310<T> {
 		// value when you grow the capacity.
 		
 		// Amortized O(1)
-		if(size < storage.length)
-			storage[size] = value;
-		else
-		{
-			T[] tempArray = (T[]) new Object[storage.length * 2];
-			for(int i=0; i<storage.length; i++)
-				tempArray[i] = storage[i];
-			tempArray[size] = value;
-			storage = tempArray;
-		}
-		size++;
+		if(size == storage.length)
+			ensureCapacity(size + 1);
+		storage[size++] = value;
 	}
 	
 	/**
@@ -162,7 +259,6 @@ public class DynArr310<T> {
 	 * @param index Index at which to insert the value.
 	 * @param value Value to insert, can't be null.
 	 */
-	@SuppressWarnings("unchecked")
 	public void insert(int index, T value){
 		// Insert the given value at the given index and shift elements if needed. 
 		// NOTE: You can also append items with this method.
@@ -180,36 +276,19 @@ public class DynArr310<T> {
 			throw new IndexOutOfBoundsException("Index: " + index + " out of bounds!");
 		
 		// O(N) where N is the number of elements in the storage
-		if(index == size)
-			add(value);
-		else if(size < storage.length)
-		{
-			for(int i=size; i>index; i--)
-				storage[i] = storage[i-1];
-			storage[index] = value;
-			size++;
-		}
-		else
-		{
-			T[] tempArray = (T[]) new Object[storage.length * 2];
-			for(int i=0,j=0; i<storage.length; j++)
-			{
-				if(j != index)
-					tempArray[j] = storage[i++];
-				else
-					tempArray[j] = value;
-			}
-			storage = tempArray;
-			size++;
-		}
+		if(size == storage.length)
+			ensureCapacity(size + 1);
+		System.arraycopy(storage, index, storage, index + 1, size - index);
+		storage[index] = value;
+		size++;
 	}
 	
 	/**
-	 * Removes and returns the element at the given index, shifts elements to ensure no gap.
+	 * Removes and returns the element at the given index, shifts elements in place to ensure no gap.
+	 * The storage is only reallocated when the growth policy shrinks it.
 	 * @param index Index to remove from the array.
 	 * @return Returns the removed element.
 	 */
-	@SuppressWarnings("unchecked")
 	public T remove(int index){
 		// Remove and return the element at the given index. Shift elements
 		// to ensure no gap. Throw an exception when there is an invalid
@@ -223,23 +302,13 @@ public class DynArr310<T> {
 		if(index >= size || index < 0)
 			throw new IndexOutOfBoundsException("Index: " + index + " out of bounds!");
 
-		T removedElement=null;
-		T[] tempArray;
+		T removedElement = storage[index];
+		System.arraycopy(storage, index + 1, storage, index, size - index - 1);
+		storage[--size] = null;
 
-		if(size-1 <= storage.length / 3)
-			tempArray = (T[]) new Object[Math.max(storage.length / 2, MINCAP)];
-		else
-			tempArray = (T[]) new Object[storage.length];
-		
-		for(int i=0,j=0; i<size; i++)
-		{
-			if(i != index)
-				tempArray[j++] = storage[i];
-			else
-				removedElement = storage[index];
-		}
-		storage = tempArray;
-		size--;
+		int capacity = policy.shrink(size, storage.length);
+		if(capacity < storage.length)
+			storage = Arrays.copyOf(storage, capacity);
 
 		return removedElement;					
 	}  
@@ -357,6 +426,20 @@ public class DynArr310<T> {
 				System.out.println("Yay 6");			
 			}
 		}
+
+		//growth policy, ensureCapacity and trimToSize
+		DynArr310<Integer> steady = new DynArr310<>(4, new GrowthPolicy(1.5, 4, 0));
+		for (int i=0; i<5; i++)
+			steady.add(i);
+		int grown = steady.capacity();
+		for (int i=0; i<4; i++)
+			steady.remove(0);
+		steady.ensureCapacity(20);
+		int ensured = steady.capacity();
+		steady.trimToSize();
+		if (grown == 8 && ensured >= 20 && steady.capacity() == 2 && steady.get(0) == 4){
+			System.out.println("Yay 7");
+		}
 		
 	}
         
@@ -2,7 +2,7 @@
  * A generic class that creates a 2d dynamic array.
  * @param <T> Generic object type.
  */
-public class DynGrid310<T> {
+public class DynGrid310<T> implements Grid310<T> {
 
 	//underlying 2-d array for storage -- you MUST use this for credit!
 	//Do NOT change the name or type
@@ -119,7 +119,7 @@ public class DynGrid310<T> {
 	/**
 	 * Inserts newRow into the grid at index.
 	 * @param index Index to insert to.
-	 * @param newRow Row to insert.
+	 * @param newRow Row to insert; it is stored itself, not copied.
 	 * @return Returns false if invalid index, newRow is null or empty, the number of items in newRow does not match existing rows, otherwise true.
 	 */
 	public boolean addRow(int index, DynArr310<T> newRow){
@@ -186,7 +186,7 @@ public class DynGrid310<T> {
 	/**
 	 * Removes and returns a row at index, shifts rows as to remove the gap.
 	 * @param index Index to remove.
-	 * @return Retuns removed row, if invalid index returns null.
+	 * @return Retuns removed row, the one stored by addRow, if invalid index returns null.
 	 */
 	public DynArr310<T> removeRow(int index){
 		// remove and return a row at index, shift rows as needed to remove the gap		
@@ -221,8 +221,9 @@ public class DynGrid310<T> {
 		}
 		if(getNumCol() == 0)
 		{
-			for(int i=0,size=storage.size(); i<size; i++)
-				storage.remove(0);
+			//remove from the end so nothing is shifted
+			while(storage.size() > 0)
+				storage.remove(storage.size()-1);
 		}
 
 		return removedCol;
@@ -0,0 +1,124 @@
+import java.util.Arrays;
+
+/**
+ * A dynamic array of primitive ints, used for lists of flat cell indexes
+ * where a DynArr310 of Integers would box every element.
+ */
+public class DynIntArr310 {
+
+	/**
+	 * Underlying array for storage.
+	 */
+	private int[] storage;
+
+	/**
+	 * Default initial capacity / minimum capacity.
+	 */
+	private static final int MINCAP = 2;
+
+	/**
+	 * Amount of elements in the array.
+	 */
+	private int size = 0;
+
+	/**
+	 * Constructor, creates an empty array with size MINCAP.
+	 */
+	public DynIntArr310(){
+		storage = new int[MINCAP];
+	}
+
+	/**
+	 * Constructor, creates an empty array with size initCap.
+	 * @param initCap Initial capacity of the array, must at least be 2.
+	 */
+	public DynIntArr310(int initCap){
+		if(initCap < MINCAP)
+			throw new IllegalArgumentException("Capacity must be at least 2!");
+		storage = new int[initCap];
+	}
+
+	/**
+	 * Report current number of elements.
+	 * @return Number of elements in the array.
+	 */
+	public int size() { return size; }
+
+	/**
+	 * Report max number of elements.
+	 * @return Capacity of the array.
+	 */
+	public int capacity() { return storage.length; }
+
+	/**
+	 * Returns the item at the given index.
+	 * @param index Index of the element.
+	 * @return Returns the element at the given index.
+	 */
+	public int get(int index){
+		if(index >= size || index < 0)
+			throw new IndexOutOfBoundsException("Index: " + index + " out of bounds!");
+		return storage[index];
+	}
+
+	/**
+	 * Replaces the item at the given index to be the given value.
+	 * @param index Index at which to replace.
+	 * @param value Value to replace with.
+	 * @return Returns the old value before replacement.
+	 */
+	public int set(int index, int value){
+		if(index >= size || index < 0)
+			throw new IndexOutOfBoundsException("Index: " + index + " out of bounds!");
+		int oldValue = storage[index];
+		storage[index] = value;
+		return oldValue;
+	}
+
+	/**
+	 * Appends an element to the end of the storage, doubling the capacity if no space available.
+	 * @param value Value to append.
+	 */
+	public void add(int value){
+		if(size == storage.length)
+			storage = Arrays.copyOf(storage, storage.length * 2);
+		storage[size++] = value;
+	}
+
+	/**
+	 * Removes and returns the last element.
+	 * @return Returns the removed element.
+	 */
+	public int removeLast(){
+		if(size == 0)
+			throw new IndexOutOfBoundsException("Index: -1 out of bounds!");
+		return storage[--size];
+	}
+
+	/**
+	 * Removes all elements, keeping the capacity.
+	 */
+	public void clear() { size = 0; }
+
+	/**
+	 * Copies the elements into a new array of exactly size() ints.
+	 * @return The elements in order.
+	 */
+	public int[] toArray() { return Arrays.copyOf(storage, size); }
+
+	/**
+	 * Displays the array in string format.
+	 * @return A string representation of the array.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder s = new StringBuilder("[");
+		for (int i = 0; i < size; i++) {
+			s.append(storage[i]);
+			if (i<size-1)
+				s.append(", ");
+		}
+		s.append("]");
+		return s.toString();
+	}
+}
@@ -0,0 +1,559 @@
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * An endless minesweeper board that reaches in every direction as far as int
+ * coordinates go, with (0,0) as the start cell.
+ *
+ * The board is cut into CHUNK x CHUNK chunks. Whether a cell has a mine is a
+ * stateless hash of the seed, the chunk coordinates and the cell inside the
+ * chunk, so any cell, including those across a chunk border, can be tested
+ * without loading its chunk. A chunk is only built, mines and counts, when a
+ * click, a cascade or a read reaches it. Built chunks are kept in a
+ * least-recently-used cache of fixed capacity and the eldest is dropped in O(1)
+ * past it; building one again gives the same cells. What players changed, the
+ * open and flagged cells, is kept apart as two bits per cell of each chunk they
+ * changed and laid over a chunk when it is built. The cache thus takes constant
+ * memory, and the played state a quarter byte per cell of the chunks played,
+ * never anything for the area only looked at.
+ *
+ * A click opens at most maxCascade cells. A cascade cut short leaves open
+ * zero-count cells with hidden neighbors; clicking one of them goes on with it.
+ * The game only ends by opening a mine.
+ */
+public class EndlessMineSweeper {
+
+	/**
+	 * Log2 of the chunk side.
+	 */
+	static final int SHIFT = 5;
+
+	/**
+	 * Side of a chunk, in cells.
+	 */
+	public static final int CHUNK = 1 << SHIFT;
+
+	/**
+	 * Mask of the cell coordinates inside a chunk.
+	 */
+	private static final int MASK = CHUNK - 1;
+
+	/**
+	 * Odd constants that spread chunk coordinates before mixing.
+	 */
+	private static final long ROW_STEP = 0x9e3779b97f4a7c15L;
+
+	/**
+	 * Odd constants that spread chunk coordinates before mixing.
+	 */
+	private static final long COL_STEP = 0xc2b2ae3d27d4eb4fL;
+
+	/**
+	 * Longs in one bitset over the cells of a chunk.
+	 */
+	private static final int WORDS = CHUNK * CHUNK / 64;
+
+	/**
+	 * Cells of one built chunk.
+	 */
+	private static class Chunk {
+
+		/**
+		 * Cells in the PackedBoard layout, row-major inside the chunk.
+		 */
+		final byte[] cells = new byte[CHUNK * CHUNK];
+	}
+
+	/**
+	 * Seed of the board.
+	 */
+	private final long seed;
+
+	/**
+	 * Mine test threshold: a cell has a mine when its hash's top 53 bits are below it.
+	 */
+	private final long threshold;
+
+	/**
+	 * Most chunks kept in the cache.
+	 */
+	private final int capacity;
+
+	/**
+	 * Most cells one click opens.
+	 */
+	private final int maxCascade;
+
+	/**
+	 * Chunks by packed chunk coordinates, in access order.
+	 */
+	private final LinkedHashMap<Long, Chunk> chunks = new LinkedHashMap<>(64, 0.75f, true);
+
+	/**
+	 * Open and flagged cells of each chunk a player changed, by chunk key: an
+	 * open bitset of WORDS longs, then a flagged one.
+	 */
+	private final HashMap<Long, long[]> marks = new HashMap<>();
+
+	/**
+	 * Key of the chunk used last, to skip the map on runs of nearby cells.
+	 */
+	private long lastKey = Long.MIN_VALUE;
+
+	/**
+	 * Chunk used last.
+	 */
+	private Chunk lastChunk;
+
+	/**
+	 * Current status of the game.
+	 */
+	private MineSweeper.Status status = MineSweeper.Status.INIT;
+
+	/**
+	 * Cells opened.
+	 */
+	private long clickedCount;
+
+	/**
+	 * Cells flagged.
+	 */
+	private long flaggedCount;
+
+	/**
+	 * Chunks built, including rebuilds.
+	 */
+	private long builds;
+
+	/**
+	 * Chunks evicted.
+	 */
+	private long evictions;
+
+	/**
+	 * Cells opened by the last clickAt as row, col pairs.
+	 */
+	private DynIntArr310 revealed = new DynIntArr310();
+
+	/**
+	 * Scratch mine grid of a chunk and its one-cell border.
+	 */
+	private final boolean[] around = new boolean[(CHUNK + 2) * (CHUNK + 2)];
+
+	/**
+	 * Constructor.
+	 * @param seed Seed of the board.
+	 * @param density Share of cells with a mine, in [0, 1).
+	 * @param capacity Most chunks kept in the cache.
+	 * @param maxCascade Most cells one click opens.
+	 */
+	public EndlessMineSweeper(long seed, double density, int capacity, int maxCascade){
+		if (density < 0 || density >= 1)
+			throw new IllegalArgumentException("Mine density must be in [0, 1)");
+		if (capacity <= 0 || maxCascade <= 0)
+			throw new IllegalArgumentException("Capacity and cascade cap must be positive");
+		this.seed = MineSimulator.mix(seed);
+		this.threshold = (long) (density * (1L << 53));
+		this.capacity = capacity;
+		this.maxCascade = maxCascade;
+	}
+
+	/**
+	 * Tests a cell for a mine from the hash of the seed, its chunk and its place
+	 * in the chunk. The 3x3 area around (0,0) never has mines.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return true if the cell has a mine.
+	 */
+	public boolean hasMine(int row, int col){
+		if (row >= -1 && row <= 1 && col >= -1 && col <= 1)
+			return false;
+		long chunk = MineSimulator.mix(seed + (row >> SHIFT) * ROW_STEP) + (col >> SHIFT) * COL_STEP;
+		long cell = ((row & MASK) << SHIFT) | (col & MASK);
+		return MineSimulator.mix(MineSimulator.mix(chunk) + cell * ROW_STEP) >>> 11 < threshold;
+	}
+
+	/**
+	 * Packs chunk coordinates into a key.
+	 * @param chunkRow Chunk row.
+	 * @param chunkCol Chunk column.
+	 * @return Key of the chunk.
+	 */
+	private static long key(int chunkRow, int chunkCol){
+		return ((long) chunkRow << 32) | (chunkCol & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Finds the chunk of a cell, building it if needed.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return The chunk.
+	 */
+	private Chunk chunk(int row, int col){
+		long key = key(row >> SHIFT, col >> SHIFT);
+		if (key == lastKey)
+			return lastChunk;
+		Chunk chunk = chunks.get(key);
+		if (chunk == null){
+			chunk = build(row >> SHIFT, col >> SHIFT);
+			chunks.put(key, chunk);
+			evict();
+		}
+		lastKey = key;
+		lastChunk = chunk;
+		return chunk;
+	}
+
+	/**
+	 * Builds a chunk: its mines, counts that look across its borders by hash, and
+	 * the cells players opened or flagged in it.
+	 * @param chunkRow Chunk row.
+	 * @param chunkCol Chunk column.
+	 * @return The chunk.
+	 */
+	private Chunk build(int chunkRow, int chunkCol){
+		builds++;
+		int top = chunkRow << SHIFT;
+		int left = chunkCol << SHIFT;
+		int side = CHUNK + 2;
+		for (int r = 0; r < side; r++)
+			for (int c = 0; c < side; c++)
+				around[r * side + c] = hasMine(top + r - 1, left + c - 1);
+		Chunk chunk = new Chunk();
+		for (int r = 0; r < CHUNK; r++)
+			for (int c = 0; c < CHUNK; c++){
+				int at = (r + 1) * side + c + 1;
+				if (around[at]){
+					chunk.cells[(r << SHIFT) | c] = PackedBoard.MINE;
+					continue;
+				}
+				int count = 0;
+				for (int dr = -side; dr <= side; dr += side)
+					for (int dc = -1; dc <= 1; dc++)
+						if (around[at + dr + dc])
+							count++;
+				chunk.cells[(r << SHIFT) | c] = (byte) (count + 1);
+			}
+		long[] played = marks.get(key(chunkRow, chunkCol));
+		if (played != null)
+			for (int at = 0; at < CHUNK * CHUNK; at++){
+				if ((played[at >> 6] & 1L << at) != 0)
+					chunk.cells[at] |= PackedBoard.VISIBLE;
+				if ((played[WORDS + (at >> 6)] & 1L << at) != 0)
+					chunk.cells[at] |= (byte) PackedBoard.FLAGGED;
+			}
+		return chunk;
+	}
+
+	/**
+	 * Evicts the least recently used chunk once the cache is over capacity. The
+	 * chunk just built is the most recent, so it stays. O(1).
+	 */
+	private void evict(){
+		Iterator<Long> it = chunks.keySet().iterator();
+		while (chunks.size() > capacity){
+			if (it.next() == lastKey)
+				lastKey = Long.MIN_VALUE;
+			it.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Reads the state of a cell.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return Cell byte in the PackedBoard layout.
+	 */
+	private int state(int row, int col){
+		return chunk(row, col).cells[((row & MASK) << SHIFT) | (col & MASK)] & 0xFF;
+	}
+
+	/**
+	 * Opens or flags a cell, in its chunk and in the played state kept for rebuilds.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @param bit PackedBoard.VISIBLE or PackedBoard.FLAGGED.
+	 */
+	private void set(int row, int col, int bit){
+		int at = ((row & MASK) << SHIFT) | (col & MASK);
+		chunk(row, col).cells[at] |= (byte) bit;
+		long[] played = marks.computeIfAbsent(key(row >> SHIFT, col >> SHIFT), k -> new long[2 * WORDS]);
+		played[(bit == PackedBoard.VISIBLE ? 0 : WORDS) + (at >> 6)] |= 1L << at;
+	}
+
+	/**
+	 * Opens the cell at (row,col). A mine explodes; a zero-count cell opens its
+	 * zero-count region and its border, up to maxCascade cells. Clicking an open
+	 * zero-count cell with hidden neighbors goes on with a cut cascade.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return Returns -2 if nothing opened, -1 for a mine, the count of the cell otherwise.
+	 */
+	public int clickAt(int row, int col){
+		revealed = new DynIntArr310();
+		if (status == MineSweeper.Status.EXPLODED)
+			return -2;
+		int state = state(row, col);
+		if ((state & PackedBoard.FLAGGED) != 0)
+			return -2;
+		int count = (state & PackedBoard.COUNT_MASK) - 1;
+		if ((state & PackedBoard.VISIBLE) != 0){
+			if (count != 0)
+				return -2;
+			cascade(row, col);
+			return revealed.size() > 0 ? 0 : -2;
+		}
+		set(row, col, PackedBoard.VISIBLE);
+		revealed.add(row);
+		revealed.add(col);
+		if ((state & PackedBoard.MINE) != 0){
+			status = MineSweeper.Status.EXPLODED;
+			return -1;
+		}
+		clickedCount++;
+		status = MineSweeper.Status.INGAME;
+		if (count == 0)
+			cascade(row, col);
+		return count;
+	}
+
+	/**
+	 * Opens the hidden neighbors of an open zero-count cell, and on through the
+	 * zero-count cells among them, until maxCascade cells were opened by this click.
+	 * @param row Row of an open zero-count cell.
+	 * @param col Column of that cell.
+	 */
+	private void cascade(int row, int col){
+		DynIntArr310 work = new DynIntArr310();
+		work.add(row);
+		work.add(col);
+		while (work.size() > 0 && revealed.size() / 2 < maxCascade){
+			int c0 = work.removeLast();
+			int r0 = work.removeLast();
+			for (int dr = -1; dr <= 1; dr++)
+				for (int dc = -1; dc <= 1; dc++){
+					int r = r0 + dr;
+					int c = c0 + dc;
+					if ((state(r, c) & (PackedBoard.VISIBLE | PackedBoard.FLAGGED)) != 0
+						|| revealed.size() / 2 >= maxCascade)
+						continue;
+					set(r, c, PackedBoard.VISIBLE);
+					clickedCount++;
+					revealed.add(r);
+					revealed.add(c);
+					if ((state(r, c) & PackedBoard.COUNT_MASK) == 1){
+						work.add(r);
+						work.add(c);
+					}
+				}
+		}
+	}
+
+	/**
+	 * Flags a hidden cell.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return Returns true if the cell was flagged.
+	 */
+	public boolean flagAt(int row, int col){
+		int state = state(row, col);
+		if ((state & (PackedBoard.VISIBLE | PackedBoard.FLAGGED)) != 0)
+			return false;
+		set(row, col, PackedBoard.FLAGGED);
+		flaggedCount++;
+		return true;
+	}
+
+	/**
+	 * Removes the flag of a cell.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return Returns true if the flag was removed.
+	 */
+	public boolean unFlagAt(int row, int col){
+		Chunk chunk = chunk(row, col);
+		int at = ((row & MASK) << SHIFT) | (col & MASK);
+		if ((chunk.cells[at] & PackedBoard.FLAGGED) == 0)
+			return false;
+		chunk.cells[at] &= ~PackedBoard.FLAGGED;
+		marks.get(key(row >> SHIFT, col >> SHIFT))[WORDS + (at >> 6)] &= ~(1L << at);
+		flaggedCount--;
+		return true;
+	}
+
+	/**
+	 * Returns the cells opened by the last clickAt.
+	 * @return Row, column pairs: row of the i-th cell at 2i, column at 2i+1.
+	 */
+	public DynIntArr310 getRevealed() { return revealed; }
+
+	/**
+	 * Reports whether a cell is open.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return true if open.
+	 */
+	public boolean isVisible(int row, int col) { return (state(row, col) & PackedBoard.VISIBLE) != 0; }
+
+	/**
+	 * Reports whether a cell is flagged.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return true if flagged.
+	 */
+	public boolean isFlagged(int row, int col) { return (state(row, col) & PackedBoard.FLAGGED) != 0; }
+
+	/**
+	 * Reports the number of mines around a cell.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return Count of the cell, -1 for a mine.
+	 */
+	public int getCount(int row, int col){
+		int state = state(row, col);
+		return (state & PackedBoard.MINE) != 0 ? -1 : (state & PackedBoard.COUNT_MASK) - 1;
+	}
+
+	/**
+	 * Reports whether a mine was opened.
+	 * @return true if the game exploded.
+	 */
+	public boolean isExploded() { return status == MineSweeper.Status.EXPLODED; }
+
+	/**
+	 * Reports the current status of the game.
+	 * @return One of MineSweeper.Status_STRINGS; never SOLVED.
+	 */
+	public String getStatus() { return MineSweeper.Status_STRINGS[status.ordinal()]; }
+
+	/**
+	 * Reports the cells opened so far.
+	 * @return Opened safe cells.
+	 */
+	public long clickedCount() { return clickedCount; }
+
+	/**
+	 * Reports the cells flagged.
+	 * @return Flagged cells.
+	 */
+	public long flaggedCount() { return flaggedCount; }
+
+	/**
+	 * Reports the chunks held in memory.
+	 * @return Loaded chunks.
+	 */
+	public int chunkCount() { return chunks.size(); }
+
+	/**
+	 * Reports the chunks a player opened or flagged a cell in.
+	 * @return Chunks with played state.
+	 */
+	public int playedChunkCount() { return marks.size(); }
+
+	/**
+	 * Reports the chunks built so far, rebuilds included.
+	 * @return Chunk builds.
+	 */
+	public long buildCount() { return builds; }
+
+	/**
+	 * Reports the chunks evicted so far.
+	 * @return Evictions.
+	 */
+	public long evictionCount() { return evictions; }
+
+	/**
+	 * Displays a window of the board, use this for debugging.
+	 * @param top First row.
+	 * @param left First column.
+	 * @param rows Number of rows.
+	 * @param cols Number of columns.
+	 * @return String format of the window.
+	 */
+	public String boardToString(int top, int left, int rows, int cols){
+		StringBuilder sb = new StringBuilder();
+		for (int i = top; i < top + rows; i++){
+			sb.append(i).append(" |");
+			for (int j = left; j < left + cols; j++)
+				sb.append(PackedCell.toString(state(i, j))).append('|');
+			sb.append('\n');
+		}
+		return sb.toString().trim();
+	}
+
+	/**
+	 * Self-checks: counts across chunk borders, identical rebuilds after eviction,
+	 * bounded memory over a long walk, and the cascade cap.
+	 * @param args Not used.
+	 */
+	public static void main(String[] args){
+		//counts match the mines around, across borders and at negative coordinates
+		EndlessMineSweeper game = new EndlessMineSweeper(42, 0.2, 16, 1000);
+		boolean counts = true;
+		for (int row = -70; row < 70; row++)
+			for (int col = -70; col < 70; col++){
+				int n = 0;
+				for (int dr = -1; dr <= 1; dr++)
+					for (int dc = -1; dc <= 1; dc++)
+						if ((dr != 0 || dc != 0) && game.hasMine(row + dr, col + dc))
+							n++;
+				if (game.getCount(row, col) != (game.hasMine(row, col) ? -1 : n))
+					counts = false;
+			}
+		if (counts && game.evictionCount() > 0 && game.chunkCount() <= 16){
+			System.out.println("Yay 1");
+		}
+
+		//an evicted chunk is rebuilt with the same cells
+		String before = game.boardToString(-40, -40, 80, 80);
+		long builds = game.buildCount();
+		for (int far = 0; far < 40; far++)
+			game.getCount(1000 * CHUNK, far * CHUNK);
+		if (game.boardToString(-40, -40, 80, 80).equals(before) && game.buildCount() > builds + 40){
+			System.out.println("Yay 2");
+		}
+
+		//a long walk of flags keeps the cache at its capacity, and played cells survive eviction
+		game = new EndlessMineSweeper(7, 0.15, 32, 1000);
+		game.clickAt(0, 0);
+		String start = game.boardToString(-8, -8, 16, 16);
+		int played = game.playedChunkCount();
+		int flags = 0;
+		for (int step = 1; step <= 2000; step++){
+			int row = step * CHUNK;
+			if (step % 10 == 0 && !game.isVisible(row, 0)){
+				game.flagAt(row, 0);
+				played++;
+				flags++;
+			}
+			else
+				game.getCount(row, 5);
+		}
+		boolean kept = game.chunkCount() <= 32 && game.playedChunkCount() == played && game.flaggedCount() == flags;
+		for (int step = 10; step <= 2000; step += 10)
+			kept &= game.isFlagged(step * CHUNK, 0) || game.isVisible(step * CHUNK, 0);
+		kept &= game.unFlagAt(10 * CHUNK, 0) && !game.isFlagged(10 * CHUNK, 0);
+		for (int far = 0; far < 40; far++)
+			game.getCount(-1000 * CHUNK, far * CHUNK);
+		if (kept && !game.isFlagged(10 * CHUNK, 0) && game.boardToString(-8, -8, 16, 16).equals(start)
+			&& game.chunkCount() <= 32 && game.buildCount() > 2000 && game.getStatus().equals("IN_GAME")){
+			System.out.println("Yay 3");
+		}
+
+		//a cut cascade goes on when one of its open zero cells is clicked
+		game = new EndlessMineSweeper(3, 0.01, 64, 500);
+		boolean capped = game.clickAt(0, 0) == 0 && game.getRevealed().size() == 1000;
+		long opened = game.clickedCount();
+		int resumed = -2;
+		for (int row = -30; row <= 30 && resumed == -2; row++)
+			for (int col = -30; col <= 30 && resumed == -2; col++)
+				if (game.isVisible(row, col))
+					resumed = game.clickAt(row, col);
+		if (capped && resumed == 0 && game.clickedCount() > opened && !game.isExploded()){
+			System.out.println("Yay 4");
+		}
+		//System.out.println(game.boardToString(-10, -10, 20, 20));
+	}
+}
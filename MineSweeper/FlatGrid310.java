@@ -0,0 +1,523 @@
+import java.util.Arrays;
+
+/**
+ * A Grid310 backed by one contiguous array instead of the list of row lists of
+ * DynGrid310, for grids whose columns are edited often.
+ *
+ * Cells live in physical slots of a row-major array with a fixed row stride.
+ * Logical rows and columns map to physical ones through two small int arrays,
+ * so inserting or removing a row or column only shifts one int array and
+ * touches the cells of that row or column: O(R + C) instead of O(R * C).
+ * Freed physical rows and columns are reused by later inserts. Once the rows
+ * or columns in use fall to a third of the storage, the cells are packed into
+ * a storage half that size, as DynArr310 shrinks, so the cost stays amortized
+ * O(R + C) and memory follows the content.
+ *
+ * Unlike DynGrid310, rows are copied: addRow does not keep newRow, and
+ * removeRow returns a new row.
+ * @param <T> Generic object type.
+ */
+public class FlatGrid310<T> implements Grid310<T> {
+
+	/**
+	 * Default initial capacity / minimum capacity of each dimension.
+	 */
+	private static final int MINCAP = 2;
+
+	/**
+	 * Physical cells, row-major with stride colCap.
+	 */
+	private T[] cells;
+
+	/**
+	 * Number of physical rows the storage has room for.
+	 */
+	private int rowCap;
+
+	/**
+	 * Number of physical columns the storage has room for (the row stride).
+	 */
+	private int colCap;
+
+	/**
+	 * Physical row of each logical row.
+	 */
+	private int[] rowMap;
+
+	/**
+	 * Physical column of each logical column.
+	 */
+	private int[] colMap;
+
+	/**
+	 * Number of rows with contents in the grid.
+	 */
+	private int numRow;
+
+	/**
+	 * Number of columns with contents in the grid.
+	 */
+	private int numCol;
+
+	/**
+	 * Physical rows freed by removeRow, ready for reuse.
+	 */
+	private DynIntArr310 freeRows = new DynIntArr310();
+
+	/**
+	 * Physical columns freed by removeCol, ready for reuse.
+	 */
+	private DynIntArr310 freeCols = new DynIntArr310();
+
+	/**
+	 * Number of physical rows ever handed out since the grid was last empty.
+	 */
+	private int usedRows;
+
+	/**
+	 * Number of physical columns ever handed out since the grid was last empty.
+	 */
+	private int usedCols;
+
+	/**
+	 * Constructor, creates an empty grid.
+	 */
+	@SuppressWarnings("unchecked")
+	public FlatGrid310(){
+		rowCap = MINCAP;
+		colCap = MINCAP;
+		cells = (T[]) new Object[rowCap * colCap];
+		rowMap = new int[MINCAP];
+		colMap = new int[MINCAP];
+	}
+
+	/**
+	 * Report number of rows with contents in the grid.
+	 * @return Number of rows.
+	 */
+	public int getNumRow() { return numRow; }
+
+	/**
+	 * Report number of columns with contents in the grid.
+	 * @return Number of columns.
+	 */
+	public int getNumCol() { return numCol; }
+
+	/**
+	* Checks whether (row,col) corresponds to a cell with content.
+	* @param row Row of the cell.
+	* @param col Column of the cell.
+	* @return Returns true if valid cell, false otherwise.
+	*/
+	public boolean isValidCell(int row, int col){
+		return row >= 0 && col >= 0 && row < numRow && col < numCol;
+	}
+
+	/**
+	 * Reports cell value at (row, col). Throws IndexOutOfBoundsException if any index is not valid.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return Returns the cell at (row, col).
+	 */
+	public T get(int row, int col){
+		if(!isValidCell(row, col))
+			throw new IndexOutOfBoundsException("Index("+row+","+col+") out of bounds!");
+		return cells[rowMap[row] * colCap + colMap[col]];
+	}
+
+	/**
+	 * Changes cell value at (row, col) to be value, and returns the old cell value.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @param value Value to set the cell to, can't be null.
+	 * @return Returns the old value of the cell.
+	 */
+	public T set(int row, int col, T value){
+		if(!isValidCell(row, col))
+			throw new IndexOutOfBoundsException("Index("+row+","+col+") out of bounds!");
+		if(value == null)
+			throw new IllegalArgumentException("Null values not accepted!");
+
+		int slot = rowMap[row] * colCap + colMap[col];
+		T oldValue = cells[slot];
+		cells[slot] = value;
+		return oldValue;
+	}
+
+	/**
+	 * Inserts newRow into the grid at index.
+	 * @param index Index to insert to.
+	 * @param newRow Row to insert; its cells are copied, later changes to it do not show in the grid.
+	 * @return Returns false if invalid index, newRow is null or empty, the number of items in newRow does not match existing rows, otherwise true.
+	 */
+	public boolean addRow(int index, DynArr310<T> newRow){
+		if(index < 0 || index > numRow || newRow == null || newRow.size() == 0 || (numRow > 0 && newRow.size() != numCol))
+			return false;
+
+		//first row decides the columns
+		if(numRow == 0)
+		{
+			for(int j=0; j<newRow.size(); j++)
+				colMap = insertAt(colMap, j, allocCol(), j);
+			numCol = newRow.size();
+		}
+
+		// O(C + R)
+		int physRow = allocRow();
+		int base = physRow * colCap;
+		for(int j=0; j<numCol; j++)
+			cells[base + colMap[j]] = newRow.get(j);
+		rowMap = insertAt(rowMap, numRow, physRow, index);
+		numRow++;
+		return true;
+	}
+
+	/**
+	 * Inserts newCol as a new column into the grid at index.
+	 * @param index Index to insert to.
+	 * @param newCol Coulmn to insert.
+	 * @return Returns false if invalid index, newCol is null or empty, the number of items in newCol does not match existing columns.
+	 */
+	public boolean addCol(int index, DynArr310<T> newCol){
+		if(index < 0 || index > numCol || newCol == null || newCol.size() == 0 || (numRow != 0 && newCol.size() != numRow))
+			return false;
+
+		//empty grid: one single-cell row per item, like DynGrid310
+		if(numRow == 0)
+		{
+			for(int i=0; i<newCol.size(); i++)
+			{
+				DynArr310<T> row = new DynArr310<>();
+				row.add(newCol.get(i));
+				addRow(i, row);
+			}
+			return true;
+		}
+
+		// O(R + C)
+		int physCol = allocCol();
+		for(int i=0; i<numRow; i++)
+			cells[rowMap[i] * colCap + physCol] = newCol.get(i);
+		colMap = insertAt(colMap, numCol, physCol, index);
+		numCol++;
+		return true;
+	}
+
+	/**
+	 * Removes and returns a row at index, shifts rows as to remove the gap.
+	 * @param index Index to remove.
+	 * @return Retuns removed row as a new DynArr310, if invalid index returns null.
+	 */
+	public DynArr310<T> removeRow(int index){
+		if(index >= numRow || index < 0)
+			return null;
+
+		// O(C + R)
+		int physRow = rowMap[index];
+		int base = physRow * colCap;
+		DynArr310<T> removedRow = new DynArr310<>(Math.max(numCol, MINCAP));
+		for(int j=0; j<numCol; j++)
+		{
+			removedRow.add(cells[base + colMap[j]]);
+			cells[base + colMap[j]] = null;
+		}
+		System.arraycopy(rowMap, index + 1, rowMap, index, numRow - index - 1);
+		numRow--;
+		freeRows.add(physRow);
+
+		if(numRow == 0)
+			clear();
+		else if(rowCap > MINCAP && numRow <= rowCap / 3)
+			compact(rowCap / 2, colCap);
+		return removedRow;
+	}
+
+	/**
+	 * Removes and returns a column at index, shifts cols to remove the gap.
+	 * @param index Index to remove.
+	 * @return Returns removed column, if invalid index returns null.
+	 */
+	public DynArr310<T> removeCol(int index){
+		if(index >= numCol || index < 0)
+			return null;
+
+		// O(R + C)
+		int physCol = colMap[index];
+		DynArr310<T> removedCol = new DynArr310<>(Math.max(numRow, MINCAP));
+		for(int i=0; i<numRow; i++)
+		{
+			int slot = rowMap[i] * colCap + physCol;
+			removedCol.add(cells[slot]);
+			cells[slot] = null;
+		}
+		System.arraycopy(colMap, index + 1, colMap, index, numCol - index - 1);
+		numCol--;
+		freeCols.add(physCol);
+
+		if(numCol == 0)
+			clear();
+		else if(colCap > MINCAP && numCol <= colCap / 3)
+			compact(rowCap, colCap / 2);
+		return removedCol;
+	}
+
+	/**
+	 * Forgets all rows and columns once the grid has no content left, and goes
+	 * back to the initial storage.
+	 */
+	@SuppressWarnings("unchecked")
+	private void clear(){
+		numRow = 0;
+		numCol = 0;
+		usedRows = 0;
+		usedCols = 0;
+		freeRows.clear();
+		freeCols.clear();
+		rowCap = MINCAP;
+		colCap = MINCAP;
+		cells = (T[]) new Object[rowCap * colCap];
+		rowMap = new int[MINCAP];
+		colMap = new int[MINCAP];
+	}
+
+	/**
+	 * Packs the cells into physical rows and columns 0, 1, ... in logical order,
+	 * in a storage of the given size. O(R * C), paid once per halving.
+	 * @param newRowCap Physical rows of the new storage, at least numRow.
+	 * @param newColCap Physical columns of the new storage, at least numCol.
+	 */
+	@SuppressWarnings("unchecked")
+	private void compact(int newRowCap, int newColCap){
+		T[] newCells = (T[]) new Object[newRowCap * newColCap];
+		for(int i=0; i<numRow; i++)
+		{
+			int base = rowMap[i] * colCap;
+			for(int j=0; j<numCol; j++)
+				newCells[i * newColCap + j] = cells[base + colMap[j]];
+		}
+		cells = newCells;
+		rowCap = newRowCap;
+		colCap = newColCap;
+		rowMap = identity(numRow, Math.max(MINCAP, newRowCap));
+		colMap = identity(numCol, Math.max(MINCAP, newColCap));
+		usedRows = numRow;
+		usedCols = numCol;
+		freeRows.clear();
+		freeCols.clear();
+	}
+
+	/**
+	 * Builds a map whose first size entries are 0, 1, ..., size - 1.
+	 * @param size Entries in use.
+	 * @param length Length of the map.
+	 * @return The map.
+	 */
+	private static int[] identity(int size, int length){
+		int[] map = new int[length];
+		for(int i=0; i<size; i++)
+			map[i] = i;
+		return map;
+	}
+
+	/**
+	 * Hands out a physical row, growing the storage if none is free.
+	 * @return The physical row.
+	 */
+	private int allocRow(){
+		if(freeRows.size() > 0)
+			return freeRows.removeLast();
+		if(usedRows == rowCap)
+		{
+			//rows are contiguous blocks: a plain copy keeps the layout
+			rowCap *= 2;
+			cells = Arrays.copyOf(cells, rowCap * colCap);
+		}
+		return usedRows++;
+	}
+
+	/**
+	 * Hands out a physical column, widening the row stride if none is free.
+	 * @return The physical column.
+	 */
+	@SuppressWarnings("unchecked")
+	private int allocCol(){
+		if(freeCols.size() > 0)
+			return freeCols.removeLast();
+		if(usedCols == colCap)
+		{
+			int newCap = colCap * 2;
+			T[] newCells = (T[]) new Object[rowCap * newCap];
+			for(int r=0; r<usedRows; r++)
+				System.arraycopy(cells, r * colCap, newCells, r * newCap, colCap);
+			cells = newCells;
+			colCap = newCap;
+		}
+		return usedCols++;
+	}
+
+	/**
+	 * Inserts value at index of the first size ints of map, growing map if needed.
+	 * @param map Array to insert into.
+	 * @param size Number of ints in use.
+	 * @param value Value to insert.
+	 * @param index Index to insert at.
+	 * @return The array holding the result, map itself unless it had to grow.
+	 */
+	private static int[] insertAt(int[] map, int size, int value, int index){
+		if(size == map.length)
+			map = Arrays.copyOf(map, map.length * 2);
+		System.arraycopy(map, index, map, index + 1, size - index);
+		map[index] = value;
+		return map;
+	}
+
+	/**
+	 * Displays the grid in string format.
+	 * @return A string representation of the grid.
+	 */
+	@Override
+	public String toString(){
+		if(getNumRow() == 0 || getNumCol() == 0 ){ return "empty board"; }
+		StringBuilder sb = new StringBuilder();
+		for(int i=0; i<getNumRow(); i++){
+			sb.append("|");
+			for (int j=0;j<getNumCol(); j++){
+				sb.append(get(i,j).toString());
+				sb.append("|");
+			}
+			sb.append("\n");
+		}
+		return sb.toString().trim();
+	}
+
+	//******************************************************
+	//*******     BELOW THIS LINE IS TESTING CODE    *******
+	//*******      Edit it as much as you'd like!    *******
+	//******************************************************
+
+	/**
+	 * Tests the FlatGrid310 class with the same checks as DynGrid310.
+	 * @param args String array (not used).
+	 */
+	public static void main(String[] args){
+		FlatGrid310<String> sgrid = new FlatGrid310<>();
+
+		DynArr310<String> srow = new DynArr310<>();
+		srow.add("English");
+		srow.add("Spanish");
+		srow.add("German");
+
+		//addRow and checking
+		if (sgrid.getNumRow() == 0 && sgrid.getNumCol() == 0 && !sgrid.addRow(1,srow)
+			&& sgrid.addRow(0,srow) && sgrid.getNumRow() == 1 && sgrid.getNumCol() == 3){
+			System.out.println("Yay 1");
+		}
+
+		//get, set, isValidCell
+		if (sgrid.get(0,0).equals("English") && sgrid.set(0,1,"Espano").equals("Spanish")
+			&& sgrid.get(0,1).equals("Espano") && sgrid.isValidCell(0,0)
+			&& !sgrid.isValidCell(-1,0) && !sgrid.isValidCell(3,2)) {
+			System.out.println("Yay 2");
+		}
+
+		//a grid of integers
+		FlatGrid310<Integer> igrid = new FlatGrid310<Integer>();
+		boolean ok = true;
+		for (int i=0; i<3; i++){
+			DynArr310<Integer> irow = new DynArr310<>();
+			irow.add((i+1) * 10);
+			irow.add((i+1) * 11);
+			ok = ok && igrid.addRow(igrid.getNumRow(),irow);
+		}
+		if (ok && igrid.toString().equals("|10|11|\n|20|22|\n|30|33|")){
+			System.out.println("Yay 3");
+		}
+
+		//addCol
+		DynArr310<Integer> icol = new DynArr310<>();
+		icol.add(-10);
+		icol.add(-20);
+		ok = igrid.addCol(1,icol);
+		icol.add(-30);
+		if (!ok && !igrid.addCol(1,null) && igrid.addCol(1,icol) &&
+			igrid.getNumRow() == 3 && igrid.getNumCol() == 3){
+			System.out.println("Yay 4");
+		}
+
+		//removeRow
+		if (igrid.removeRow(5) == null &&
+			igrid.removeRow(1).toString().equals("[20, -20, 22]") &&
+			igrid.getNumRow() == 2 && igrid.getNumCol() == 3 ){
+			System.out.println("Yay 5");
+		}
+
+		//removeCol
+		String a = igrid.removeCol(0).toString();
+		String b = igrid.removeCol(1).toString();
+		String c = igrid.removeCol(0).toString();
+		if (a.equals("[10, 30]") && b.equals("[11, 33]") && c.equals("[-10, -30]") &&
+			igrid.getNumRow() == 0 && igrid.getNumCol() == 0 ){
+			System.out.println("Yay 6");
+		}
+
+		//column churn matches DynGrid310 and reuses freed slots
+		FlatGrid310<Integer> flat = new FlatGrid310<>();
+		DynGrid310<Integer> dyn = new DynGrid310<>();
+		for (int i=0; i<20; i++){
+			DynArr310<Integer> row = new DynArr310<>();
+			for (int j=0; j<30; j++)
+				row.add(i * 100 + j);
+			flat.addRow(i, row);
+			dyn.addRow(i, row);
+		}
+		java.util.Random random = new java.util.Random(3);
+		ok = true;
+		for (int k=0; k<500; k++){
+			int col = random.nextInt(flat.getNumCol());
+			ok = ok && flat.removeCol(col).toString().equals(dyn.removeCol(col).toString());
+			DynArr310<Integer> newCol = new DynArr310<>();
+			for (int i=0; i<20; i++)
+				newCol.add(-k * 100 - i);
+			int at = random.nextInt(flat.getNumCol() + 1);
+			ok = ok && flat.addCol(at, newCol) && dyn.addCol(at, newCol);
+			if (k % 7 == 0){
+				int row = random.nextInt(flat.getNumRow());
+				DynArr310<Integer> removed = flat.removeRow(row);
+				ok = ok && removed.toString().equals(dyn.removeRow(row).toString());
+				ok = ok && flat.addRow(row, removed) && dyn.addRow(row, removed);
+			}
+		}
+		if (ok && flat.toString().equals(dyn.toString()) && flat.colCap == 32){
+			System.out.println("Yay 7");
+		}
+
+		//shrinking the content packs the storage, and rows are copied, not shared
+		flat = new FlatGrid310<>();
+		dyn = new DynGrid310<>();
+		for (int i=0; i<300; i++){
+			DynArr310<Integer> row = new DynArr310<>();
+			for (int j=0; j<40; j++)
+				row.add(i * 100 + j);
+			flat.addRow(i, row);
+			dyn.addRow(i, row);
+		}
+		ok = true;
+		while (flat.getNumRow() > 3){
+			int row = random.nextInt(flat.getNumRow());
+			ok = ok && flat.removeRow(row).toString().equals(dyn.removeRow(row).toString());
+		}
+		while (flat.getNumCol() > 2){
+			int col = random.nextInt(flat.getNumCol());
+			ok = ok && flat.removeCol(col).toString().equals(dyn.removeCol(col).toString());
+		}
+		DynArr310<Integer> shared = new DynArr310<>();
+		shared.add(1);
+		shared.add(2);
+		flat.addRow(0, shared);
+		shared.set(0, 5);
+		if (ok && flat.rowCap <= 16 && flat.colCap <= 8
+			&& flat.get(0, 0) == 1 && flat.removeRow(0) != shared && flat.toString().equals(dyn.toString())){
+			System.out.println("Yay 8");
+		}
+	}
+}
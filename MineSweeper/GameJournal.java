@@ -0,0 +1,514 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compact binary record of one MineSweeper game, and a replay engine for it.
+ *
+ * Format, all integers as unsigned LEB128 varints unless noted:
+ *   header  "MSJ" 1, level ordinal (byte), flags (byte, bit 0 = first click safe,
+ *           bits 1-2 = topology ordinal, 0 for square grids),
+ *           rows, cols, mines, zigzag seed, start time in epoch milliseconds
+ *   event   (cell index << 2 | type), milliseconds since the previous event
+ *           where type is CLICK, FLAG or UNFLAG
+ *   trailer END (a lone 3), status ordinal (byte), clickedCount, flaggedCount,
+ *           number of events
+ * A move on a HARD board takes 2 to 4 bytes. The replay engine builds the game from
+ * the header, applies the events and checks the result against the trailer.
+ * A no-guess game is recorded with its board seed and its start-cell click as
+ * the first event, so it replays like any other game.
+ */
+public class GameJournal {
+
+	/**
+	 * Event type of a clickAt.
+	 */
+	public static final int CLICK = 0;
+
+	/**
+	 * Event type of a flagAt.
+	 */
+	public static final int FLAG = 1;
+
+	/**
+	 * Event type of an unFlagAt.
+	 */
+	public static final int UNFLAG = 2;
+
+	/**
+	 * Marker of the trailer, in place of an event.
+	 */
+	private static final int END = 3;
+
+	/**
+	 * File magic and format version.
+	 */
+	private static final byte[] MAGIC = { 'M', 'S', 'J', 1 };
+
+	/**
+	 * Size of the write buffer.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Longest varint of a long, in bytes.
+	 */
+	private static final int MAX_VARINT = 10;
+
+	/**
+	 * Not meant to be instantiated.
+	 */
+	private GameJournal(){ }
+
+	/**
+	 * Appends an unsigned varint.
+	 * @param buffer Buffer to write to.
+	 * @param value Value, read as unsigned.
+	 */
+	static void putVarint(ByteBuffer buffer, long value){
+		while ((value & ~0x7FL) != 0){
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	/**
+	 * Reads an unsigned varint.
+	 * @param buffer Buffer to read from.
+	 * @return The value.
+	 * @throws IOException if the varint is longer than 10 bytes.
+	 */
+	static long getVarint(ByteBuffer buffer) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7){
+			byte b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0)
+				return value;
+		}
+		throw new IOException("Bad varint in journal");
+	}
+
+	/**
+	 * Writes the journal of one game to a file through a buffered FileChannel.
+	 * Start it on a game that has not been played yet, or on a no-guess game
+	 * whose only move is the opening of its start cell.
+	 */
+	public static class Writer implements AutoCloseable {
+
+		/**
+		 * File being written.
+		 */
+		private final FileChannel channel;
+
+		/**
+		 * Pending bytes.
+		 */
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+		/**
+		 * Time of the previous event in epoch milliseconds.
+		 */
+		private long lastMillis;
+
+		/**
+		 * Events written.
+		 */
+		private long events;
+
+		/**
+		 * Bytes handed to the channel so far.
+		 */
+		private long written;
+
+		/**
+		 * Whether the trailer has been written.
+		 */
+		private boolean finished;
+
+		/**
+		 * Creates the file and writes the header, and the start-cell click of a no-guess game.
+		 * @param path File to create or replace.
+		 * @param game Game to record, not played yet or a fresh no-guess game.
+		 * @param startMillis Start time in epoch milliseconds.
+		 * @throws IOException if the file cannot be written.
+		 */
+		public Writer(Path path, MineSweeper game, long startMillis) throws IOException {
+			boolean started = !game.getStatus().equals("INIT");
+			if (started && !isNoGuessStart(game))
+				throw new IllegalArgumentException("Only games that have not started, or no-guess games at their start cell, can be recorded");
+			channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+			buffer.put(MAGIC);
+			buffer.put((byte) game.getLevel().ordinal());
+			buffer.put((byte) ((game.isFirstClickSafe() ? 1 : 0) | game.getTopology().ordinal() << 1));
+			putVarint(buffer, game.rowCount());
+			putVarint(buffer, game.colCount());
+			putVarint(buffer, game.mineCount());
+			putVarint(buffer, ((game.getSeed() << 1) ^ (game.getSeed() >> 31)) & 0xFFFFFFFFL);
+			putVarint(buffer, startMillis);
+			lastMillis = startMillis;
+			if (started)
+				record(CLICK, NoGuessGenerator.startCell(game.rowCount(), game.colCount()), startMillis);
+		}
+
+		/**
+		 * Appends one event.
+		 * @param type CLICK, FLAG or UNFLAG.
+		 * @param index Flat row-major index of the cell.
+		 * @param millis Time of the event in epoch milliseconds.
+		 * @throws IOException if the file cannot be written.
+		 */
+		public void record(int type, int index, long millis) throws IOException {
+			if (type < CLICK || type > UNFLAG)
+				throw new IllegalArgumentException("Unknown event type " + type);
+			if (buffer.remaining() < 2 * MAX_VARINT)
+				flush();
+			putVarint(buffer, (long) index << 2 | type);
+			putVarint(buffer, Math.max(0, millis - lastMillis));
+			lastMillis = Math.max(lastMillis, millis);
+			events++;
+		}
+
+		/**
+		 * Writes the trailer with the final state of the game, and flushes.
+		 * @param game The recorded game after its last move.
+		 * @throws IOException if the file cannot be written.
+		 */
+		public void finish(MineSweeper game) throws IOException {
+			if (buffer.remaining() < 4 * MAX_VARINT)
+				flush();
+			putVarint(buffer, END);
+			buffer.put((byte) statusOf(game).ordinal());
+			putVarint(buffer, game.clickedCount());
+			putVarint(buffer, game.flaggedCount());
+			putVarint(buffer, events);
+			flush();
+			finished = true;
+		}
+
+		/**
+		 * Reports the size of the journal so far.
+		 * @return Bytes written, including those still buffered.
+		 */
+		public long size() { return written + buffer.position(); }
+
+		/**
+		 * Hands the buffered bytes to the channel.
+		 * @throws IOException if the file cannot be written.
+		 */
+		private void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining())
+				written += channel.write(buffer);
+			buffer.clear();
+		}
+
+		/**
+		 * Flushes and closes the file. A journal closed without finish() has no
+		 * trailer and replays as unverified.
+		 * @throws IOException if the file cannot be written.
+		 */
+		@Override
+		public void close() throws IOException {
+			if (!finished)
+				flush();
+			channel.close();
+		}
+	}
+
+	/**
+	 * Builds the unplayed game a journal header describes.
+	 * @param seed Board seed.
+	 * @param level Level of the game.
+	 * @param rows Amount of rows.
+	 * @param cols Amount of columns.
+	 * @param mines Amount of mines.
+	 * @param topology Neighborhood of the board.
+	 * @return The new game.
+	 */
+	private static MineSweeper newGame(int seed, MineSweeper.Level level, int rows, int cols, int mines, Topology topology){
+		return level == MineSweeper.Level.CUSTOM
+			? new MineSweeper(seed, level, rows, cols, mines, topology)
+			: new MineSweeper(seed, level);
+	}
+
+	/**
+	 * Checks that a started game is exactly its board with only the start cell clicked,
+	 * as a no-guess constructor leaves it.
+	 * @param game Game to check.
+	 * @return true if the same board with only the start cell clicked shows the same cells.
+	 */
+	private static boolean isNoGuessStart(MineSweeper game){
+		if (game.flaggedCount() != 0 || !game.getStatus().equals("IN_GAME"))
+			return false;
+		int rows = game.rowCount();
+		int cols = game.colCount();
+		MineSweeper fresh = newGame(game.getSeed(), game.getLevel(), rows, cols, game.mineCount(), game.getTopology());
+		fresh.setFirstClickSafe(game.isFirstClickSafe());
+		int start = NoGuessGenerator.startCell(rows, cols);
+		fresh.clickAt(start / cols, start % cols);
+		if (fresh.clickedCount() != game.clickedCount())
+			return false;
+		for (int i = 0; i < rows * cols; i++)
+			if (fresh.isVisible(i / cols, i % cols) != game.isVisible(i / cols, i % cols))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Reads the status of a game from its public methods.
+	 * @param game Game to read.
+	 * @return Its status.
+	 */
+	private static MineSweeper.Status statusOf(MineSweeper game){
+		for (int i = 0; i < MineSweeper.Status_STRINGS.length; i++)
+			if (MineSweeper.Status_STRINGS[i].equals(game.getStatus()))
+				return MineSweeper.Status.values()[i];
+		throw new IllegalStateException("Unknown status " + game.getStatus());
+	}
+
+	/**
+	 * Outcome of a replay.
+	 */
+	public static final class Replay {
+
+		/**
+		 * The game after the last event.
+		 */
+		private final MineSweeper game;
+
+		/**
+		 * Number of events applied.
+		 */
+		private final long events;
+
+		/**
+		 * Whether a trailer was found.
+		 */
+		private final boolean finished;
+
+		/**
+		 * Whether status and counters match the trailer.
+		 */
+		private final boolean verified;
+
+		/**
+		 * Constructor.
+		 * @param game The game after the last event.
+		 * @param events Number of events applied.
+		 * @param finished Whether a trailer was found.
+		 * @param verified Whether status and counters match the trailer.
+		 */
+		Replay(MineSweeper game, long events, boolean finished, boolean verified){
+			this.game = game;
+			this.events = events;
+			this.finished = finished;
+			this.verified = verified;
+		}
+
+		/**
+		 * Reports the replayed game.
+		 * @return The game after the last event.
+		 */
+		public MineSweeper game() { return game; }
+
+		/**
+		 * Reports the number of events applied.
+		 * @return Number of events.
+		 */
+		public long events() { return events; }
+
+		/**
+		 * Reports whether the journal had a trailer.
+		 * @return false for a journal that was cut short.
+		 */
+		public boolean finished() { return finished; }
+
+		/**
+		 * Reports whether the replay ended as the recorded game did.
+		 * @return true if status, clickedCount, flaggedCount and event count match the trailer.
+		 */
+		public boolean verified() { return verified; }
+	}
+
+	/**
+	 * Replays a journal file, mapping it into memory.
+	 * @param path Journal file.
+	 * @return Outcome of the replay.
+	 * @throws IOException if the file cannot be read or is not a journal.
+	 */
+	public static Replay replay(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+			return replay(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Replays a journal held in a buffer, from its position to its limit.
+	 * @param buffer Journal bytes.
+	 * @return Outcome of the replay.
+	 * @throws IOException if the bytes are not a journal.
+	 */
+	public static Replay replay(ByteBuffer buffer) throws IOException {
+		try {
+			for (byte b : MAGIC)
+				if (buffer.get() != b)
+					throw new IOException("Not a MineSweeper journal");
+			MineSweeper.Level level = MineSweeper.Level.values()[buffer.get()];
+			int flags = buffer.get();
+			int rows = (int) getVarint(buffer);
+			int cols = (int) getVarint(buffer);
+			int mines = (int) getVarint(buffer);
+			long zigzag = getVarint(buffer);
+			int seed = (int) ((zigzag >>> 1) ^ -(zigzag & 1));
+			getVarint(buffer);
+
+			Topology topology = Topology.values()[flags >> 1 & 3];
+			MineSweeper game = newGame(seed, level, rows, cols, mines, topology);
+			game.setFirstClickSafe((flags & 1) != 0);
+
+			long events = 0;
+			while (buffer.hasRemaining()){
+				long event = getVarint(buffer);
+				int type = (int) (event & 3);
+				if (type == END){
+					MineSweeper.Status status = MineSweeper.Status.values()[buffer.get()];
+					boolean verified = statusOf(game) == status
+						&& getVarint(buffer) == game.clickedCount()
+						&& getVarint(buffer) == game.flaggedCount()
+						&& getVarint(buffer) == events;
+					return new Replay(game, events, true, verified);
+				}
+				getVarint(buffer);
+				int index = (int) (event >>> 2);
+				int row = index / cols;
+				int col = index % cols;
+				if (type == CLICK)
+					game.clickAt(row, col);
+				else if (type == FLAG)
+					game.flagAt(row, col);
+				else
+					game.unFlagAt(row, col);
+				events++;
+			}
+			return new Replay(game, events, false, false);
+		}
+		catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e){
+			throw new IOException("Truncated or damaged journal", e);
+		}
+	}
+
+	/**
+	 * Tests the GameJournal class.
+	 * @param args Not used.
+	 * @throws IOException if the temporary files cannot be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		java.util.Random random = new java.util.Random(17);
+		Path file = Files.createTempFile("journal", ".msj");
+
+		//record HARD-sized games on every topology played at random, then replay and verify them
+		boolean verified = true;
+		long moves = 0;
+		long bytes = 0;
+		for (int g = 0; g < 200; g++){
+			MineSweeper game = g % 4 == 3
+				? new MineSweeper(random.nextInt(), MineSweeper.Level.CUSTOM, 16, 30, 99, Topology.values()[g / 4 % 3])
+				: new MineSweeper(random.nextInt(), MineSweeper.Level.HARD);
+			game.setFirstClickSafe(true);
+			long millis = 1_700_000_000_000L;
+			try (Writer writer = new Writer(file, game, millis)){
+				bytes -= writer.size();
+				while (!game.isSolved() && !game.isExploded()){
+					int index = random.nextInt(16 * 30);
+					int type = random.nextInt(10) < 7 ? CLICK : game.isFlagged(index / 30, index % 30) ? UNFLAG : FLAG;
+					millis += random.nextInt(2000);
+					if (type == CLICK)
+						game.clickAt(index / 30, index % 30);
+					else if (type == FLAG)
+						game.flagAt(index / 30, index % 30);
+					else
+						game.unFlagAt(index / 30, index % 30);
+					writer.record(type, index, millis);
+					moves++;
+				}
+				bytes += writer.size();
+				writer.finish(game);
+			}
+			Replay replay = replay(file);
+			if (!replay.finished() || !replay.verified() || replay.game().getTopology() != game.getTopology()
+				|| !replay.game().boardToString().equals(game.boardToString()))
+				verified = false;
+		}
+		//a few bytes per move, without header and trailer
+		if (verified && bytes < 5 * moves)
+			System.out.println("Yay 1");
+
+		//a cut-off journal replays as unverified, a damaged one fails
+		try (Writer writer = new Writer(file, new MineSweeper(1, MineSweeper.Level.EASY), 0)){
+			writer.record(CLICK, 40, 5);
+		}
+		Replay partial = replay(file);
+		boolean damaged = false;
+		try {
+			replay(ByteBuffer.wrap(new byte[] { 'M', 'S', 'J' }));
+		}
+		catch (IOException e){
+			damaged = true;
+		}
+		if (!partial.finished() && partial.events() == 1 && damaged)
+			System.out.println("Yay 2");
+
+		//a long flag/unflag/click stream over a big board replays verified
+		MineSweeper big = new MineSweeper(5, MineSweeper.Level.CUSTOM, 1000, 1000, 1000);
+		try (Writer writer = new Writer(file, big, 0)){
+			for (int i = 0; i < 3_000_000; i++){
+				int index = random.nextInt(1_000_000);
+				int type = i % 3 == 2 ? CLICK : (i % 3 == 0 ? FLAG : UNFLAG);
+				if (type == CLICK && big.hasMine(index / 1000, index % 1000))
+					continue;
+				if (type == CLICK)
+					big.clickAt(index / 1000, index % 1000);
+				else if (type == FLAG)
+					big.flagAt(index / 1000, index % 1000);
+				else
+					big.unFlagAt(index / 1000, index % 1000);
+				writer.record(type, index, i);
+			}
+			writer.finish(big);
+		}
+		Replay fast = replay(file);
+		if (fast.verified() && fast.events() > 2_900_000)
+			System.out.println("Yay 3");
+
+		//a no-guess game records its start click and replays to the same board;
+		//a game played past its start is still refused
+		MineSweeper noGuess = new MineSweeper(1, MineSweeper.Level.HARD, true);
+		try (Writer writer = new Writer(file, noGuess, 0)){
+			for (int i = 0; i < 16 * 30 && !noGuess.isSolved(); i++)
+				if (!noGuess.hasMine(i / 30, i % 30) && !noGuess.isVisible(i / 30, i % 30)){
+					noGuess.clickAt(i / 30, i % 30);
+					writer.record(CLICK, i, i);
+				}
+			writer.finish(noGuess);
+		}
+		Replay replayed = replay(file);
+		boolean refused = false;
+		try {
+			new Writer(file, noGuess, 0).close();
+		}
+		catch (IllegalArgumentException e){
+			refused = true;
+		}
+		if (replayed.verified() && replayed.game().isSolved() && refused
+			&& replayed.game().boardToString().equals(noGuess.boardToString()))
+			System.out.println("Yay 4");
+		Files.delete(file);
+	}
+}
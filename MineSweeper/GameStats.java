@@ -0,0 +1,156 @@
+/**
+ * Win/loss counters of simulated games, kept per level. Not thread-safe:
+ * each worker fills its own instance and the results are merged at the end.
+ */
+public class GameStats {
+
+	/**
+	 * Number of levels tracked.
+	 */
+	private static final int LEVELS = MineSweeper.Level.values().length;
+
+	/**
+	 * Games played per level.
+	 */
+	private final long[] games = new long[LEVELS];
+
+	/**
+	 * Games solved per level.
+	 */
+	private final long[] wins = new long[LEVELS];
+
+	/**
+	 * Games exploded per level.
+	 */
+	private final long[] losses = new long[LEVELS];
+
+	/**
+	 * Clicks made per level.
+	 */
+	private final long[] clicks = new long[LEVELS];
+
+	/**
+	 * Cells opened without exploding per level.
+	 */
+	private final long[] revealed = new long[LEVELS];
+
+	/**
+	 * Records one finished game.
+	 * @param level Level of the game.
+	 * @param game The game after the last move.
+	 * @param clickCount Number of clicks made.
+	 * @param openedCells Number of safe cells opened.
+	 */
+	public void record(MineSweeper.Level level, MineSweeper game, long clickCount, long openedCells){
+		int i = level.ordinal();
+		games[i]++;
+		if (game.isSolved())
+			wins[i]++;
+		else if (game.isExploded())
+			losses[i]++;
+		clicks[i] += clickCount;
+		revealed[i] += openedCells;
+	}
+
+	/**
+	 * Adds the counters of another instance to this one.
+	 * @param other Counters to add.
+	 * @return This instance.
+	 */
+	public GameStats merge(GameStats other){
+		for (int i = 0; i < LEVELS; i++){
+			games[i] += other.games[i];
+			wins[i] += other.wins[i];
+			losses[i] += other.losses[i];
+			clicks[i] += other.clicks[i];
+			revealed[i] += other.revealed[i];
+		}
+		return this;
+	}
+
+	/**
+	 * Reports games played at a level.
+	 * @param level Level.
+	 * @return Number of games.
+	 */
+	public long games(MineSweeper.Level level) { return games[level.ordinal()]; }
+
+	/**
+	 * Reports games solved at a level.
+	 * @param level Level.
+	 * @return Number of wins.
+	 */
+	public long wins(MineSweeper.Level level) { return wins[level.ordinal()]; }
+
+	/**
+	 * Reports games exploded at a level.
+	 * @param level Level.
+	 * @return Number of losses.
+	 */
+	public long losses(MineSweeper.Level level) { return losses[level.ordinal()]; }
+
+	/**
+	 * Reports clicks made at a level.
+	 * @param level Level.
+	 * @return Number of clicks.
+	 */
+	public long clicks(MineSweeper.Level level) { return clicks[level.ordinal()]; }
+
+	/**
+	 * Reports safe cells opened at a level.
+	 * @param level Level.
+	 * @return Number of cells.
+	 */
+	public long revealed(MineSweeper.Level level) { return revealed[level.ordinal()]; }
+
+	/**
+	 * Reports the fraction of games solved at a level.
+	 * @param level Level.
+	 * @return Win rate, 0 if no games were played.
+	 */
+	public double winRate(MineSweeper.Level level){
+		long n = games(level);
+		return n == 0 ? 0 : (double) wins(level) / n;
+	}
+
+	/**
+	 * Compares all counters.
+	 * @param o Object to compare with.
+	 * @return true if o is a GameStats with the same counters.
+	 */
+	@Override
+	public boolean equals(Object o){
+		if (!(o instanceof GameStats))
+			return false;
+		GameStats other = (GameStats) o;
+		return java.util.Arrays.equals(games, other.games) && java.util.Arrays.equals(wins, other.wins)
+			&& java.util.Arrays.equals(losses, other.losses) && java.util.Arrays.equals(clicks, other.clicks)
+			&& java.util.Arrays.equals(revealed, other.revealed);
+	}
+
+	/**
+	 * Hash of the counters, consistent with equals.
+	 * @return Hash code.
+	 */
+	@Override
+	public int hashCode(){
+		return java.util.Arrays.hashCode(games) * 31 + java.util.Arrays.hashCode(wins);
+	}
+
+	/**
+	 * Displays one line per level that has games.
+	 * @return A string representation of the counters.
+	 */
+	@Override
+	public String toString(){
+		StringBuilder sb = new StringBuilder();
+		for (MineSweeper.Level level : MineSweeper.Level.values()){
+			if (games(level) == 0)
+				continue;
+			sb.append(String.format("%-7s games=%d wins=%d losses=%d winRate=%.4f clicks/game=%.2f%n",
+				level, games(level), wins(level), losses(level), winRate(level),
+				(double) clicks(level) / games(level)));
+		}
+		return sb.toString().trim();
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ * A 2d dynamic array of non-null cells whose rows and columns can be inserted
+ * and removed. DynGrid310 keeps a list of row lists; FlatGrid310 keeps one
+ * contiguous array and is faster at column edits.
+ *
+ * The two differ in ownership: DynGrid310 stores the row passed to addRow and
+ * hands the stored row back from removeRow, so the caller and the grid share
+ * it. FlatGrid310 copies cells in and out, so neither sees the other's later
+ * changes. Code that must work on both should not change a row after adding it.
+ * @param <T> Generic object type.
+ */
+public interface Grid310<T> {
+
+	/**
+	 * Report number of rows with contents in the grid.
+	 * @return Number of rows.
+	 */
+	int getNumRow();
+
+	/**
+	 * Report number of columns with contents in the grid.
+	 * @return Number of columns.
+	 */
+	int getNumCol();
+
+	/**
+	* Checks whether (row,col) corresponds to a cell with content.
+	* @param row Row of the cell.
+	* @param col Column of the cell.
+	* @return Returns true if valid cell, false otherwise.
+	*/
+	boolean isValidCell(int row, int col);
+
+	/**
+	 * Reports cell value at (row, col). Throws IndexOutOfBoundsException if any index is not valid.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return Returns the cell at (row, col).
+	 */
+	T get(int row, int col);
+
+	/**
+	 * Changes cell value at (row, col) to be value, and returns the old cell value.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @param value Value to set the cell to, can't be null.
+	 * @return Returns the old value of the cell.
+	 */
+	T set(int row, int col, T value);
+
+	/**
+	 * Inserts newRow into the grid at index.
+	 * @param index Index to insert to.
+	 * @param newRow Row to insert.
+	 * @return Returns false if invalid index, newRow is null or empty, the number of items in newRow does not match existing rows, otherwise true.
+	 */
+	boolean addRow(int index, DynArr310<T> newRow);
+
+	/**
+	 * Inserts newCol as a new column into the grid at index.
+	 * @param index Index to insert to.
+	 * @param newCol Coulmn to insert.
+	 * @return Returns false if invalid index, newCol is null or empty, the number of items in newCol does not match existing columns.
+	 */
+	boolean addCol(int index, DynArr310<T> newCol);
+
+	/**
+	 * Removes and returns a row at index, shifts rows as to remove the gap.
+	 * @param index Index to remove.
+	 * @return Retuns removed row, if invalid index returns null.
+	 */
+	DynArr310<T> removeRow(int index);
+
+	/**
+	 * Removes and returns a column at index, shifts cols to remove the gap.
+	 * @param index Index to remove.
+	 * @return Returns removed column, if invalid index returns null.
+	 */
+	DynArr310<T> removeCol(int index);
+}
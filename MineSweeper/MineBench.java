@@ -0,0 +1,501 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Micro-benchmarks for the hot paths of DynArr310, DynGrid310, FlatGrid310, MineSweeper and BitBoard,
+ * and timings of the solvers, generators and services built on them.
+ *
+ * Each benchmark runs warm-up rounds, then timed rounds, and reports the mean
+ * time per operation and the bytes allocated per operation by the benchmark
+ * thread (the same figure the JMH GC profiler reports as gc.alloc.rate.norm).
+ * Board benchmarks run over every combination of SIZES and DENSITIES.
+ *
+ * Usage: java MineBench [filter], where filter keeps benchmarks whose name
+ * contains it, e.g. "java MineBench clickAt".
+ */
+public class MineBench {
+
+	/**
+	 * Board sizes as {rows, cols}.
+	 */
+	private static final int[][] SIZES = { {16, 30}, {100, 100}, {500, 500} };
+
+	/**
+	 * Mine densities as a fraction of the cells.
+	 */
+	private static final double[] DENSITIES = { 0.01, 0.15, 0.206 };
+
+	/**
+	 * Element counts for the DynArr310 and DynGrid310 benchmarks.
+	 */
+	private static final int[] LENGTHS = { 100, 10000 };
+
+	/**
+	 * Warm-up rounds before measuring.
+	 */
+	private static final int WARMUP_ROUNDS = 5;
+
+	/**
+	 * Measured rounds.
+	 */
+	private static final int MEASURE_ROUNDS = 10;
+
+	/**
+	 * Smallest time one round should take, in nanoseconds.
+	 */
+	private static final long MIN_ROUND_NANOS = 50_000_000L;
+
+	/**
+	 * Sink for benchmark results so the JIT cannot drop the work.
+	 */
+	private static volatile long sink;
+
+	/**
+	 * One benchmark: run() does a batch of operations and returns a value to sink.
+	 */
+	private interface Bench {
+		/**
+		 * Runs the benchmark once.
+		 * @return Any value derived from the work done.
+		 */
+		long run();
+	}
+
+	/**
+	 * Thread MX bean that can report allocated bytes, or null if not supported.
+	 */
+	private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+	/**
+	 * Looks up the allocation-reporting thread bean.
+	 * @return The bean, or null if this JVM does not provide one.
+	 */
+	private static com.sun.management.ThreadMXBean threadBean(){
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean){
+			com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+			if (sunBean.isThreadAllocatedMemorySupported()){
+				sunBean.setThreadAllocatedMemoryEnabled(true);
+				return sunBean;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Reports bytes allocated so far by the current thread.
+	 * @return Allocated bytes, or 0 if not supported.
+	 */
+	private static long allocated(){
+		return THREADS == null ? 0 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Name filter from the command line.
+	 */
+	private static String filter = "";
+
+	/**
+	 * Measures one benchmark and prints a result line.
+	 * @param name Name of the benchmark including its parameters.
+	 * @param opsPerRun Number of operations one run() performs.
+	 * @param bench Benchmark to measure.
+	 */
+	private static void measure(String name, long opsPerRun, Bench bench){
+		if (!name.contains(filter))
+			return;
+
+		//find how many runs fill one round
+		int runs = 1;
+		long start = System.nanoTime();
+		sink += bench.run();
+		long once = Math.max(1, System.nanoTime() - start);
+		runs = (int) Math.max(1, Math.min(1_000_000, MIN_ROUND_NANOS / once));
+
+		for (int round = 0; round < WARMUP_ROUNDS; round++)
+			for (int i = 0; i < runs; i++)
+				sink += bench.run();
+
+		long nanos = 0;
+		long bytes = 0;
+		for (int round = 0; round < MEASURE_ROUNDS; round++){
+			long allocStart = allocated();
+			start = System.nanoTime();
+			for (int i = 0; i < runs; i++)
+				sink += bench.run();
+			nanos += System.nanoTime() - start;
+			bytes += allocated() - allocStart;
+		}
+
+		double ops = (double) opsPerRun * runs * MEASURE_ROUNDS;
+		double nsPerOp = nanos / ops;
+		double bytesPerOp = bytes / ops;
+		double mbPerSec = bytes / (nanos / 1e9) / (1 << 20);
+		System.out.printf("%-54s %14.1f ns/op %14.1f B/op %10.1f MB/s%n",
+			name, nsPerOp, bytesPerOp, mbPerSec);
+	}
+
+	/**
+	 * Builds a DynArr310 of n Integers.
+	 * @param n Number of elements.
+	 * @return The array.
+	 */
+	private static DynArr310<Integer> filledArr(int n){
+		DynArr310<Integer> arr = new DynArr310<>();
+		for (int i = 0; i < n; i++)
+			arr.add(i);
+		return arr;
+	}
+
+	/**
+	 * Fills an empty grid with rows x cols Integers.
+	 * @param grid Empty grid.
+	 * @param rows Number of rows.
+	 * @param cols Number of columns.
+	 * @return The grid.
+	 */
+	private static <G extends Grid310<Integer>> G filledGrid(G grid, int rows, int cols){
+		for (int i = 0; i < rows; i++){
+			DynArr310<Integer> row = new DynArr310<>();
+			for (int j = 0; j < cols; j++)
+				row.add(i * cols + j);
+			grid.addRow(i, row);
+		}
+		return grid;
+	}
+
+	/**
+	 * Runs the DynArr310 benchmarks.
+	 */
+	private static void benchDynArr(){
+		for (int n : LENGTHS){
+			measure("DynArr310.add n=" + n, n, () -> filledArr(n).size());
+
+			DynArr310<Integer> arr = filledArr(n);
+			measure("DynArr310.insert+remove(mid) n=" + n, 2, () -> {
+				arr.insert(n / 2, 7);
+				return arr.remove(n / 2);
+			});
+			measure("DynArr310.remove(all,front) n=" + n, n, () -> {
+				DynArr310<Integer> a = filledArr(n);
+				long sum = 0;
+				while (a.size() > 0)
+					sum += a.remove(0);
+				return sum;
+			});
+		}
+	}
+
+	/**
+	 * Runs the DynGrid310 and FlatGrid310 benchmarks.
+	 */
+	private static void benchDynGrid(){
+		for (int n : LENGTHS){
+			int side = (int) Math.sqrt(n);
+			DynGrid310<Integer> grid = filledGrid(new DynGrid310<>(), side, side);
+			measure("DynGrid310.get " + side + "x" + side, (long) side * side, () -> {
+				long sum = 0;
+				for (int i = 0; i < side; i++)
+					for (int j = 0; j < side; j++)
+						sum += grid.get(i, j);
+				return sum;
+			});
+
+			DynArr310<Integer> col = filledArr(side);
+			measure("DynGrid310.addCol+removeCol(0) " + side + "x" + side, 2, () -> {
+				grid.addCol(0, col);
+				return grid.removeCol(0).size();
+			});
+
+			FlatGrid310<Integer> flat = filledGrid(new FlatGrid310<>(), side, side);
+			measure("FlatGrid310.addCol+removeCol(0) " + side + "x" + side, 2, () -> {
+				flat.addCol(0, col);
+				return flat.removeCol(0).size();
+			});
+		}
+	}
+
+	/**
+	 * Runs the MineSweeper benchmarks.
+	 */
+	private static void benchMineSweeper(){
+		for (int[] size : SIZES){
+			int rows = size[0];
+			int cols = size[1];
+			for (double density : DENSITIES){
+				int mines = Math.max(1, (int) (rows * cols * density));
+				String params = " " + rows + "x" + cols + " d=" + density;
+				Random seeds = new Random(42);
+
+				measure("MineSweeper.initBoard" + params, 1, () ->
+					new MineSweeper(seeds.nextInt(), MineSweeper.Level.CUSTOM, rows, cols, mines).mineLeft());
+
+				MineSweeper game = new MineSweeper(7, MineSweeper.Level.CUSTOM, rows, cols, mines);
+				measure("MineSweeper.countNbrMines" + params, (long) rows * cols, () -> {
+					long sum = 0;
+					for (int i = 0; i < rows; i++)
+						for (int j = 0; j < cols; j++)
+							sum += game.countNbrMines(i, j);
+					return sum;
+				});
+
+				measure("MineSweeper.initBoard+clickAt(cascade)" + params, 1, () -> {
+					MineSweeper fresh = new MineSweeper(seeds.nextInt(), MineSweeper.Level.CUSTOM, rows, cols, mines);
+					for (int i = 0; i < rows; i++)
+						for (int j = 0; j < cols; j++)
+							if (fresh.getCount(i, j) == 0)
+								return fresh.clickAt(i, j) + fresh.getRevealed().size();
+					return 0;
+				});
+
+				MineSweeper undoable = new MineSweeper(7, MineSweeper.Level.CUSTOM, rows, cols, mines);
+				undoable.setHistoryDepth(4);
+				int zero = 0;
+				while (zero < rows * cols - 1 && (undoable.hasMine(zero / cols, zero % cols) || undoable.getCount(zero / cols, zero % cols) != 0))
+					zero++;
+				int start = zero;
+				measure("MineSweeper.clickAt(cascade)+undo" + params, 2, () -> {
+					int opened = undoable.clickAt(start / cols, start % cols);
+					undoable.undo();
+					return opened;
+				});
+
+				measure("MineSweeper.boardToString" + params, 1, () -> game.boardToString().length());
+
+				PackedBoard packed = PackedBoard.fromGrid(game.getBoard());
+				measure("ZeroRegionIndex.threeBV" + params, 1, () -> new ZeroRegionIndex(packed).threeBV());
+			}
+		}
+	}
+
+	/**
+	 * Runs the BitBoard benchmarks, on the same boards as benchMineSweeper.
+	 */
+	private static void benchBitBoard(){
+		for (int[] size : SIZES){
+			int rows = size[0];
+			int cols = size[1];
+			for (double density : DENSITIES){
+				int mines = Math.max(1, (int) (rows * cols * density));
+				String params = " " + rows + "x" + cols + " d=" + density;
+				Random seeds = new Random(42);
+
+				measure("BitBoard.generate" + params, 1, () ->
+					BitBoard.generate(seeds.nextInt(), rows, cols, mines).mineCount());
+
+				measure("BitBoard.generate+openZeroRegions" + params, 1, () -> {
+					BitBoard fresh = BitBoard.generate(seeds.nextInt(), rows, cols, mines);
+					return fresh.openZeroRegions() + fresh.clickedCount();
+				});
+
+				measure("MineSweeper.initBoard+clickAt(every zero)" + params, 1, () -> {
+					MineSweeper fresh = new MineSweeper(seeds.nextInt(), MineSweeper.Level.CUSTOM, rows, cols, mines);
+					for (int i = 0; i < rows * cols; i++)
+						if (!fresh.hasMine(i / cols, i % cols) && fresh.getCount(i / cols, i % cols) == 0)
+							fresh.clickAt(i / cols, i % cols);
+					return fresh.clickedCount();
+				});
+			}
+		}
+	}
+
+	/**
+	 * Runs the MineSweeperND benchmarks on a 200^3 board.
+	 */
+	private static void benchND(){
+		measure("MineSweeperND.new 200^3", 1, () -> new MineSweeperND(3, 40000, 200, 200, 200).size());
+
+		measure("MineSweeperND.new+clickAt(cascade) 200^3", 1, () -> {
+			MineSweeperND big = new MineSweeperND(3, 40000, 200, 200, 200);
+			int click = 0;
+			while (big.getCount(click) != 0)
+				click++;
+			return big.clickAt(click);
+		});
+	}
+
+	/**
+	 * Runs the solver, probability, simulator and no-guess generator benchmarks.
+	 */
+	private static void benchSolvers(){
+		Random random = new Random(3);
+		measure("MineSolver.clickDelta+update+solve (game) HARD", 1, () -> {
+			MineSweeper game = new MineSweeper(random.nextInt(), MineSweeper.Level.HARD);
+			MineSolver solver = new MineSolver(game);
+			while (!game.isSolved() && !game.isExploded()){
+				int index = solver.nextSafe();
+				if (index < 0)
+					index = solver.guess(random);
+				solver.update(game.clickDelta(index / game.colCount(), index % game.colCount()));
+				solver.solve();
+			}
+			return game.clickedCount();
+		});
+
+		//compute() where the solver is stuck, on boards at HARD density
+		MineProbability engine = new MineProbability();
+		for (int side : new int[] { 30, 50 }){
+			MineSweeper[] stuck = new MineSweeper[40];
+			int n = 0;
+			for (int g = 0; g < stuck.length; g++){
+				MineSweeper game = new MineSweeper(g, MineSweeper.Level.CUSTOM, side, side, side * side / 5);
+				MineSolver solver = new MineSolver(game);
+				int index = 0;
+				while (!game.isSolved() && !game.isExploded() && index >= 0){
+					solver.reveal(game.getRevealed());
+					solver.solve();
+					index = solver.nextSafe();
+					if (index < 0 && game.clickedCount() == 0)
+						index = side / 2 * side + side / 2;
+					if (index >= 0)
+						game.clickAt(index / side, index % side);
+				}
+				if (index < 0)
+					stuck[n++] = game;
+			}
+			int count = n;
+			measure("MineProbability.compute (stuck) " + side + "x" + side, count, () -> {
+				long sum = 0;
+				for (int i = 0; i < count; i++)
+					sum += engine.compute(stuck[i]).length;
+				return sum;
+			});
+		}
+
+		MineSimulator simulator = new MineSimulator(42, Runtime.getRuntime().availableProcessors());
+		measure("MineSimulator.run HARD random", 400, () ->
+			simulator.run(MineSweeper.Level.HARD, 400, () -> MoveStrategy.RANDOM).games(MineSweeper.Level.HARD));
+		measure("MineSimulator.run HARD MineSolver", 400, () ->
+			simulator.run(MineSweeper.Level.HARD, 400, MineSolver::strategy).games(MineSweeper.Level.HARD));
+		measure("MineSimulator.run HARD MineProbability", 400, () ->
+			simulator.run(MineSweeper.Level.HARD, 400, () -> MineProbability.strategy(engine)).games(MineSweeper.Level.HARD));
+		simulator.shutdown();
+
+		int[] master = { 100 };
+		measure("NoGuessGenerator.find HARD", 1, () ->
+			NoGuessGenerator.find(master[0]++, MineSweeper.Level.HARD, 0, 0, 0, ForkJoinPool.commonPool()));
+	}
+
+	/**
+	 * Runs the BoardPool, GameJournal, ConcurrentMineSweeper and MineServer benchmarks.
+	 * @throws IOException If a journal file or the server socket fails.
+	 */
+	private static void benchServices() throws IOException {
+		BoardPool pool = new BoardPool(10, 4);
+		pool.prefill(MineSweeper.Level.HARD);
+		measure("BoardPool.take HARD", 1, () -> pool.take(MineSweeper.Level.HARD).rowCount());
+		pool.shutdown();
+
+		//a long flag/unflag/click stream over a 1000x1000 board
+		Random random = new Random(17);
+		MineSweeper big = new MineSweeper(5, MineSweeper.Level.CUSTOM, 1000, 1000, 1000);
+		Path file = Files.createTempFile("bench", ".msj");
+		try (GameJournal.Writer writer = new GameJournal.Writer(file, big, 0)){
+			for (int i = 0; i < 300_000; i++){
+				int index = random.nextInt(1_000_000);
+				int type = i % 3 == 2 ? GameJournal.CLICK : (i % 3 == 0 ? GameJournal.FLAG : GameJournal.UNFLAG);
+				if (type == GameJournal.CLICK && big.hasMine(index / 1000, index % 1000))
+					continue;
+				if (type == GameJournal.CLICK)
+					big.clickAt(index / 1000, index % 1000);
+				else if (type == GameJournal.FLAG)
+					big.flagAt(index / 1000, index % 1000);
+				else
+					big.unFlagAt(index / 1000, index % 1000);
+				writer.record(type, index, i);
+			}
+			writer.finish(big);
+		}
+		byte[] journal = Files.readAllBytes(file);
+		Files.delete(file);
+		long events = GameJournal.replay(ByteBuffer.wrap(journal)).events();
+		measure("GameJournal.replay (event) 1000x1000", events, () -> {
+			try {
+				return GameJournal.replay(ByteBuffer.wrap(journal)).events();
+			}
+			catch (IOException e){
+				throw new UncheckedIOException(e);
+			}
+		});
+
+		//32 players open every safe cell of a 500x500 board in their own orders
+		int players = 32;
+		int side = 500;
+		int[] safe = new int[side * side - 25000];
+		ConcurrentMineSweeper layout = new ConcurrentMineSweeper(7, side, side, 25000);
+		int n = 0;
+		for (int i = 0; i < side * side; i++)
+			if (!layout.hasMine(i / side, i % side))
+				safe[n++] = i;
+		int[][] orders = new int[players][];
+		for (int p = 0; p < players; p++){
+			Random order = new Random(p);
+			orders[p] = safe.clone();
+			for (int i = orders[p].length - 1; i > 0; i--){
+				int j = order.nextInt(i + 1);
+				int t = orders[p][i];
+				orders[p][i] = orders[p][j];
+				orders[p][j] = t;
+			}
+		}
+		ExecutorService threads = Executors.newFixedThreadPool(players);
+		measure("ConcurrentMineSweeper.clickAt (cell) 32 players 500x500", safe.length, () -> {
+			ConcurrentMineSweeper game = new ConcurrentMineSweeper(7, side, side, 25000);
+			Future<?>[] done = new Future<?>[players];
+			for (int p = 0; p < players; p++){
+				int[] cells = orders[p];
+				done[p] = threads.submit(() -> {
+					DynIntArr310 opened = new DynIntArr310();
+					for (int cell : cells)
+						game.clickAt(cell / side, cell % side, opened);
+				});
+			}
+			try {
+				for (Future<?> f : done)
+					f.get();
+			}
+			catch (Exception e){
+				throw new IllegalStateException(e);
+			}
+			return game.clickedCount();
+		});
+		threads.shutdown();
+
+		MineServer server = new MineServer(0, 1000);
+		try (MineClient client = new MineClient(server.port())){
+			int[] seed = { 0 };
+			measure("MineServer NEW EASY (round trip)", 1, () -> client.newGame(MineSweeper.Level.EASY, seed[0]++));
+		}
+		server.shutdown();
+	}
+
+	/**
+	 * Runs all benchmarks.
+	 * @param args Optional name filter.
+	 * @throws IOException If a journal file or the server socket fails.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length > 0)
+			filter = args[0];
+		if (THREADS == null)
+			System.out.println("(allocation counting not supported by this JVM, B/op shows 0)");
+
+		benchDynArr();
+		benchDynGrid();
+		benchMineSweeper();
+		benchBitBoard();
+		benchND();
+		benchSolvers();
+		benchServices();
+		System.out.println("done, checksum " + sink);
+	}
+}
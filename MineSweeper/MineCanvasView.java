@@ -0,0 +1,292 @@
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.TextAlignment;
+import javafx.beans.InvalidationListener;
+import javafx.geometry.Bounds;
+import javafx.geometry.VPos;
+
+import java.util.function.Consumer;
+
+/**
+ * A minesweeper board view that paints cells onto a single Canvas instead of
+ * creating one node per cell. The canvas only covers the viewport of the
+ * ScrollPane and follows it as the user scrolls, so the node count stays the
+ * same for any board size. Mouse positions map to cells arithmetically.
+ */
+public class MineCanvasView {
+
+	/**
+	 * Width and height of one cell in pixels.
+	 */
+	public static final int CELL_SIZE = 30;
+
+	/**
+	 * Largest viewport width shown without scrolling.
+	 */
+	private static final int MAX_VIEWPORT_WIDTH = 1200;
+
+	/**
+	 * Largest viewport height shown without scrolling.
+	 */
+	private static final int MAX_VIEWPORT_HEIGHT = 720;
+
+	/**
+	 * Scroll pane the view lives in.
+	 */
+	private final ScrollPane scrollPane;
+
+	/**
+	 * Empty pane sized to the whole board, which gives the scroll bars their range.
+	 */
+	private final Pane content;
+
+	/**
+	 * Canvas covering the viewport only.
+	 */
+	private final Canvas canvas;
+
+	/**
+	 * Font for cell labels.
+	 */
+	private final Font font = Font.font("Verdana", FontWeight.BOLD, 14);
+
+	/**
+	 * Game to display.
+	 */
+	private MineSweeper game;
+
+	/**
+	 * Called after each move with what changed.
+	 */
+	private final Consumer<RevealDelta> onMove;
+
+	/**
+	 * Relays scrolling and viewport changes to relayout() while the view is shown.
+	 */
+	private final InvalidationListener follow = o -> relayout();
+
+	/**
+	 * Whether follow listens to the scroll pane.
+	 */
+	private boolean attached;
+
+	/**
+	 * Board x coordinate shown at the left edge of the canvas.
+	 */
+	private double originX;
+
+	/**
+	 * Board y coordinate shown at the top edge of the canvas.
+	 */
+	private double originY;
+
+	/**
+	 * Constructor, sets up the canvas inside the given scroll pane.
+	 * @param scrollPane scroll pane to display the board in
+	 * @param game game to display
+	 * @param onMove called after each left or right click with what changed
+	 */
+	public MineCanvasView(ScrollPane scrollPane, MineSweeper game, Consumer<RevealDelta> onMove){
+		this.scrollPane = scrollPane;
+		this.onMove = onMove;
+		content = new Pane();
+		canvas = new Canvas();
+		content.getChildren().add(canvas);
+
+		canvas.setOnMousePressed(mouseEvent -> {
+			int col = (int) ((originX + mouseEvent.getX()) / CELL_SIZE);
+			int row = (int) ((originY + mouseEvent.getY()) / CELL_SIZE);
+			if (this.game.isSolved() || this.game.isExploded() || row >= this.game.rowCount() || col >= this.game.colCount())
+				return;
+
+			RevealDelta delta;
+			if (mouseEvent.isPrimaryButtonDown())
+				delta = this.game.clickDelta(row, col);
+			else if (mouseEvent.isSecondaryButtonDown()){
+				if (this.game.isFlagged(row, col))
+					delta = this.game.unFlagDelta(row, col);
+				else
+					delta = this.game.flagDelta(row, col);
+			}
+			else
+				return;
+
+			repaint(delta);
+			this.onMove.accept(delta);
+		});
+
+		setGame(game);
+	}
+
+	/**
+	 * Displays a new game in the scroll pane, resizing the scrollable area to the new board,
+	 * and follows the scroll pane until detach().
+	 * @param game game to display
+	 */
+	public void setGame(MineSweeper game){
+		this.game = game;
+		scrollPane.setContent(content);
+		if (!attached){
+			scrollPane.hvalueProperty().addListener(follow);
+			scrollPane.vvalueProperty().addListener(follow);
+			scrollPane.viewportBoundsProperty().addListener(follow);
+			attached = true;
+		}
+		double width = (double) game.colCount() * CELL_SIZE;
+		double height = (double) game.rowCount() * CELL_SIZE;
+		content.setMinSize(width, height);
+		content.setPrefSize(width, height);
+		content.setMaxSize(width, height);
+		scrollPane.setPrefViewportWidth(Math.min(width, MAX_VIEWPORT_WIDTH));
+		scrollPane.setPrefViewportHeight(Math.min(height, MAX_VIEWPORT_HEIGHT));
+		scrollPane.setHvalue(scrollPane.getHmin());
+		scrollPane.setVvalue(scrollPane.getVmin());
+		relayout();
+	}
+
+	/**
+	 * Stops following the scroll pane, once it shows something else. setGame()
+	 * attaches the view again.
+	 */
+	public void detach(){
+		if (!attached)
+			return;
+		scrollPane.hvalueProperty().removeListener(follow);
+		scrollPane.vvalueProperty().removeListener(follow);
+		scrollPane.viewportBoundsProperty().removeListener(follow);
+		attached = false;
+	}
+
+	/**
+	 * Moves and resizes the canvas to cover the current viewport, then repaints it;
+	 * does nothing while the scroll pane shows something else.
+	 */
+	private void relayout(){
+		if (scrollPane.getContent() != content)
+			return;
+		Bounds viewport = scrollPane.getViewportBounds();
+		double boardWidth = (double) game.colCount() * CELL_SIZE;
+		double boardHeight = (double) game.rowCount() * CELL_SIZE;
+		double width = Math.min(viewport.getWidth(), boardWidth);
+		double height = Math.min(viewport.getHeight(), boardHeight);
+
+		originX = scrollOffset(scrollPane.getHvalue(), scrollPane.getHmin(), scrollPane.getHmax(), boardWidth - width);
+		originY = scrollOffset(scrollPane.getVvalue(), scrollPane.getVmin(), scrollPane.getVmax(), boardHeight - height);
+
+		canvas.setWidth(width);
+		canvas.setHeight(height);
+		canvas.relocate(originX, originY);
+		repaint();
+	}
+
+	/**
+	 * Converts a scroll bar value to a pixel offset into the board.
+	 * @param value scroll bar value
+	 * @param min scroll bar minimum
+	 * @param max scroll bar maximum
+	 * @param range largest possible offset
+	 * @return offset in pixels
+	 */
+	private static double scrollOffset(double value, double min, double max, double range){
+		if (max <= min || range <= 0)
+			return 0;
+		return Math.floor((value - min) / (max - min) * range);
+	}
+
+	/**
+	 * Repaints every cell in the viewport.
+	 */
+	public void repaint(){
+		int firstRow = (int) (originY / CELL_SIZE);
+		int firstCol = (int) (originX / CELL_SIZE);
+		int lastRow = Math.min(game.rowCount() - 1, (int) ((originY + canvas.getHeight()) / CELL_SIZE));
+		int lastCol = Math.min(game.colCount() - 1, (int) ((originX + canvas.getWidth()) / CELL_SIZE));
+
+		GraphicsContext gc = canvas.getGraphicsContext2D();
+		gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+		for (int row = firstRow; row <= lastRow; row++)
+			for (int col = firstCol; col <= lastCol; col++)
+				paintCell(gc, row, col);
+	}
+
+	/**
+	 * Repaints only the cells changed by a move, or the whole viewport when the
+	 * move ended the game (all mines are shown then).
+	 * @param delta changes made by the move
+	 */
+	public void repaint(RevealDelta delta){
+		if (delta.statusChanged() && (game.isSolved() || game.isExploded())){
+			repaint();
+			return;
+		}
+		GraphicsContext gc = canvas.getGraphicsContext2D();
+		repaintCells(gc, delta.revealed());
+		repaintCells(gc, delta.flagged());
+		repaintCells(gc, delta.unflagged());
+	}
+
+	/**
+	 * Repaints the listed cells that fall inside the viewport.
+	 * @param gc graphics context of the canvas
+	 * @param cells flat indexes of the cells
+	 */
+	private void repaintCells(GraphicsContext gc, DynIntArr310 cells){
+		for (int i = 0; i < cells.size(); i++){
+			int row = cells.get(i) / game.colCount();
+			int col = cells.get(i) % game.colCount();
+			double x = (double) col * CELL_SIZE - originX;
+			double y = (double) row * CELL_SIZE - originY;
+			if (x + CELL_SIZE > 0 && y + CELL_SIZE > 0 && x < canvas.getWidth() && y < canvas.getHeight())
+				paintCell(gc, row, col);
+		}
+	}
+
+	/**
+	 * Paints one cell at its position in the viewport.
+	 * @param gc graphics context of the canvas
+	 * @param row row index of the cell
+	 * @param col col index of the cell
+	 */
+	private void paintCell(GraphicsContext gc, int row, int col){
+		double x = (double) col * CELL_SIZE - originX;
+		double y = (double) row * CELL_SIZE - originY;
+		boolean over = game.isSolved() || game.isExploded();
+
+		String text = "";
+		Color textFill = Color.BLACK;
+		Color fill = Color.SILVER;
+		if (game.isVisible(row, col)){
+			fill = Color.WHITESMOKE;
+			if (game.hasMine(row, col)){
+				fill = Color.CORAL;
+				text = "X";
+				textFill = Color.RED;
+			}
+			else if (game.getCount(row, col) > 0)
+				text = game.getCount(row, col) + "";
+		}
+		else if (over && game.hasMine(row, col)){
+			text = "X";
+			textFill = Color.RED;
+		}
+		else if (game.isFlagged(row, col))
+			text = "F";
+
+		gc.setFill(fill);
+		gc.fillRect(x, y, CELL_SIZE, CELL_SIZE);
+		gc.setStroke(Color.GRAY);
+		gc.strokeRect(x + 0.5, y + 0.5, CELL_SIZE - 1, CELL_SIZE - 1);
+		if (!text.isEmpty()){
+			gc.setFill(textFill);
+			gc.setFont(font);
+			gc.setTextAlign(TextAlignment.CENTER);
+			gc.setTextBaseline(VPos.CENTER);
+			gc.fillText(text, x + CELL_SIZE / 2.0, y + CELL_SIZE / 2.0);
+		}
+	}
+}
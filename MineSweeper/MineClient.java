@@ -0,0 +1,221 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Client of a MineServer on the loopback address. One client is one connection;
+ * it sends one request at a time and is not meant to be shared by threads.
+ */
+public class MineClient implements AutoCloseable {
+
+	/**
+	 * Answer to a click: its result, the status after it and the opened cells.
+	 */
+	public static class Reply {
+
+		/**
+		 * clickAt return value.
+		 */
+		private final int result;
+
+		/**
+		 * Game status after the click.
+		 */
+		private final String status;
+
+		/**
+		 * Flat indexes of the opened cells, in the order they were opened.
+		 */
+		private final int[] cells;
+
+		/**
+		 * Count of each opened cell, -1 for a mine.
+		 */
+		private final int[] counts;
+
+		/**
+		 * Constructor.
+		 * @param result clickAt return value.
+		 * @param status Game status after the click.
+		 * @param cells Opened cells.
+		 * @param counts Their counts.
+		 */
+		Reply(int result, String status, int[] cells, int[] counts){
+			this.result = result;
+			this.status = status;
+			this.cells = cells;
+			this.counts = counts;
+		}
+
+		/**
+		 * Reports the clickAt return value.
+		 * @return -2 for no change, -1 for a mine, the count of the cell otherwise.
+		 */
+		public int result() { return result; }
+
+		/**
+		 * Reports the game status after the click.
+		 * @return One of MineSweeper.Status_STRINGS.
+		 */
+		public String status() { return status; }
+
+		/**
+		 * Reports the opened cells.
+		 * @return Flat indexes, row * cols + col.
+		 */
+		public int[] cells() { return cells; }
+
+		/**
+		 * Reports the counts of the opened cells.
+		 * @return Count of each cell of cells(), -1 for a mine.
+		 */
+		public int[] counts() { return counts; }
+	}
+
+	/**
+	 * Connection to the server.
+	 */
+	private final Socket socket;
+
+	/**
+	 * Reply reader.
+	 */
+	private final BufferedReader in;
+
+	/**
+	 * Request writer.
+	 */
+	private final PrintWriter out;
+
+	/**
+	 * Constructor, connects to a server on this machine.
+	 * @param port Port of the server.
+	 * @throws IOException If the server cannot be reached.
+	 */
+	public MineClient(int port) throws IOException {
+		socket = new Socket(InetAddress.getLoopbackAddress(), port);
+		socket.setTcpNoDelay(true);
+		in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+		out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII), true);
+	}
+
+	/**
+	 * Sends one request line and waits for the reply.
+	 * @param line Request line.
+	 * @return Reply line.
+	 */
+	public String send(String line){
+		out.println(line);
+		try {
+			String reply = in.readLine();
+			if (reply == null)
+				throw new IOException("Server closed the connection");
+			return reply;
+		} catch (IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Sends a request that must succeed.
+	 * @param line Request line.
+	 * @return Words of the reply after "OK".
+	 */
+	private String[] ok(String line){
+		String reply = send(line);
+		if (!reply.startsWith("OK"))
+			throw new IllegalStateException(reply);
+		return reply.split(" ");
+	}
+
+	/**
+	 * Starts a game of a standard level.
+	 * @param level Level of the game.
+	 * @param seed Seed of the board.
+	 * @return Session id.
+	 */
+	public long newGame(MineSweeper.Level level, int seed){
+		return Long.parseLong(ok("NEW " + level + " " + seed)[1]);
+	}
+
+	/**
+	 * Starts a customized game.
+	 * @param rows Number of rows.
+	 * @param cols Number of columns.
+	 * @param mines Number of mines.
+	 * @param seed Seed of the board.
+	 * @return Session id.
+	 */
+	public long newGame(int rows, int cols, int mines, int seed){
+		return Long.parseLong(ok("NEW " + rows + " " + cols + " " + mines + " " + seed)[1]);
+	}
+
+	/**
+	 * Clicks a cell.
+	 * @param id Session id.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return What the click changed.
+	 */
+	public Reply click(long id, int row, int col){
+		String[] words = ok("CLICK " + id + " " + row + " " + col);
+		int n = words.length - 3;
+		int[] cells = new int[n];
+		int[] counts = new int[n];
+		for (int i = 0; i < n; i++){
+			String cell = words[i + 3];
+			int colon = cell.indexOf(':');
+			cells[i] = Integer.parseInt(cell, 0, colon, 10);
+			counts[i] = Integer.parseInt(cell, colon + 1, cell.length(), 10);
+		}
+		return new Reply(Integer.parseInt(words[1]), words[2], cells, counts);
+	}
+
+	/**
+	 * Flags a cell.
+	 * @param id Session id.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return Returns true if the flag was placed.
+	 */
+	public boolean flag(long id, int row, int col){
+		return ok("FLAG " + id + " " + row + " " + col)[1].equals("1");
+	}
+
+	/**
+	 * Removes a flag.
+	 * @param id Session id.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return Returns true if the flag was removed.
+	 */
+	public boolean unFlag(long id, int row, int col){
+		return ok("UNFLAG " + id + " " + row + " " + col)[1].equals("1");
+	}
+
+	/**
+	 * Ends a session.
+	 * @param id Session id.
+	 */
+	public void close(long id){
+		ok("CLOSE " + id);
+	}
+
+	/**
+	 * Closes the connection; the sessions stay until closed or evicted.
+	 */
+	@Override
+	public void close(){
+		try {
+			socket.close();
+		} catch (IOException e){
+			//already closed
+		}
+	}
+}
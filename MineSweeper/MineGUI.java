@@ -4,6 +4,7 @@ import javafx.application.Application;
 import javafx.stage.Stage;
 import javafx.scene.Scene;
 import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.scene.control.ScrollPane;
@@ -26,11 +27,66 @@ public class MineGUI extends Application{
 	 */  
 	private Stage mineStage;
 	
+	/**
+	 * Scroll pane holding the grid pane or the canvas view.
+	 */  
+	private ScrollPane wrapperPane;
+	
 	/**
 	 * Grid pane for grid display.
 	 */  
 	private GridPane mineGrid;
 	
+	/**
+	 * Pooled buttons of the grid pane, one per cell of the current board in row-major order.
+	 */  
+	private DynArr310<ToggleButton> buttons;
+	
+	/**
+	 * Default text color of a button.
+	 */  
+	private Paint buttonTextFill;
+	
+	/**
+	 * Canvas view for boards too large for one button per cell, created when first needed.
+	 */  
+	private MineCanvasView canvasView;
+	
+	/**
+	 * Whether the current board is drawn on the canvas view instead of the buttons.
+	 */  
+	private boolean useCanvas;
+	
+	/**
+	 * Menu item for the customized level.
+	 */  
+	private RadioMenuItem customItem;
+	
+	/**
+	 * Largest number of rows displayed with one button per cell.
+	 */  
+	private static final int MAX_BUTTON_ROWS = 30;
+	
+	/**
+	 * Largest number of columns displayed with one button per cell.
+	 */  
+	private static final int MAX_BUTTON_COLS = 60;
+	
+	/**
+	 * Largest number of rows of a customized game.
+	 */  
+	private static final int MAX_CUSTOM_ROWS = 1000;
+	
+	/**
+	 * Largest number of columns of a customized game.
+	 */  
+	private static final int MAX_CUSTOM_COLS = 1000;
+	
+	/**
+	 * Ready-made games kept per level by the board pool.
+	 */  
+	private static final int POOL_CAPACITY = 3;
+	
 	/**
 	 * Label to show game status.
 	 */  
@@ -61,6 +117,11 @@ public class MineGUI extends Application{
 	 * Random number generator used to create minesweeper games.
 	 */  
 	private Random random;
+	
+	/**
+	 * Pool of ready-made games, filled in the background.
+	 */  
+	private BoardPool pool;
 
 	/**
 	 * Number of rows for a customized game.
@@ -97,12 +158,25 @@ public class MineGUI extends Application{
 	public void init(){
 		random = new Random(10);
 		level = MineSweeper.Level.TINY;
-		game = new MineSweeper(random.nextInt(),level);
+		pool = new BoardPool(random.nextLong(), POOL_CAPACITY);
+		for (MineSweeper.Level standard : new MineSweeper.Level[] {
+				MineSweeper.Level.TINY, MineSweeper.Level.EASY, MineSweeper.Level.MEDIUM, MineSweeper.Level.HARD })
+			pool.prefill(standard);
+		game = pool.take(level);
+	}
+	
+	/**
+	 * The method to stop the background board pool when the window closes.
+	 */
+	@Override
+	public void stop(){
+		pool.shutdown();
 	}
 
 	
 	/**
-	 * The method to set up the stage for display.
+	 * The method to set up the stage for display. The scene is built once;
+	 * new games reuse it through newGame().
 	 * @param stage new stage to use
 	 */
 	@Override
@@ -110,93 +184,16 @@ public class MineGUI extends Application{
 		// Create a pane and set its properties
 		mineStage = stage;
 		
-		ScrollPane wrapperPane = new ScrollPane();
+		wrapperPane = new ScrollPane();
 		wrapperPane.setHbarPolicy(ScrollPane.ScrollBarPolicy.AS_NEEDED);
 		VBox mainPane = new VBox();
 		
 		//menu
 		setUpMenu();
 		
-		//grid for the board
+		//grid for the board, filled by newGame()
 		mineGrid = new GridPane();
-		for(int row = 0; row < game.rowCount(); row++){
-			for (int col = 0; col < game.colCount(); col++){
-				ToggleButton button = new ToggleButton();
-				button.setText(" ");
-				button.setMinWidth(30);
-				final int rowV = row;
-				final int colV = col;
-				button.setOnMousePressed(
-					mouseEvent -> {
-						//left click: click/open
-						if (mouseEvent.isPrimaryButtonDown()){
-							if (game.isFlagged(rowV, colV)){
-								button.setSelected(true);
-								return;
-							}
-							
-							if (game.isVisible(rowV, colV)){
-								button.setSelected(false);
-								return;
-							}
-							
-							final int count = game.clickAt(rowV, colV);
-							if (count>0){
-								button.setText(count+""); //nbr count>0
-							}
-							if (count>=0){
-								button.setSelected(false);
-								//button.setDisable(true);
-							}
-							
-							if (count == -1){
-								button.setText("X"); //exploded
-								button.setTextFill(Color.RED);
-								button.setStyle("-fx-background-color: coral");
-							}
-							
-							if (count == 0){
-								//need to repaint some nbr buttons
-								updateButtons(rowV, colV);
-							}
-							
-							//otherwise no button change
-							updateStatus();
-							
-						}else if (mouseEvent.isSecondaryButtonDown()){
-							//right click: flag or unflag
-							
-							if (game.isVisible(rowV,colV))
-								return;
-							
-							if (game.isFlagged(rowV, colV)){
-								game.unFlagAt(rowV, colV);
-								button.setText(" ");
-							}
-							else{
-								game.flagAt(rowV,colV);
-								button.setText("F");
-								button.setSelected(false);
-							}
-							updateStatus();
-						}
-
-					}
-				);
-				
-				button.setOnMouseReleased(
-					mouseEvent -> {
-						if (game.isVisible(rowV, colV))
-							button.setSelected(true);
-						if (game.isFlagged(rowV, colV))
-							button.setSelected(false);
-					}
-				);
-				mineGrid.add(button, col, row);
-			}
-		}
-		
-		wrapperPane.setContent(mineGrid);
+		buttons = new DynArr310<>();
 		
 		//add Status 
 		statusLabel = new Label("INIT");	   
@@ -212,9 +209,156 @@ public class MineGUI extends Application{
 		Scene scene = new Scene(mainPane);
 		mineStage.setTitle("MineSweeper");
 		mineStage.setScene(scene); 
+		newGame();
 		mineStage.show();
 	}
 	
+	/**
+	 * The method to display the current game in the existing scene: buttons for
+	 * small boards, a canvas for large ones.
+	 */
+	private void newGame(){
+		game.setFirstClickSafe(true);
+		useCanvas = game.rowCount() > MAX_BUTTON_ROWS || game.colCount() > MAX_BUTTON_COLS;
+		if (useCanvas){
+			if (canvasView == null)
+				canvasView = new MineCanvasView(wrapperPane, game, delta -> updateStatus(delta));
+			else
+				canvasView.setGame(game);
+		}
+		else{
+			if (canvasView != null)
+				canvasView.detach();
+			resetButtons();
+			wrapperPane.setContent(mineGrid);
+			//let the scroll pane size itself to the grid again
+			wrapperPane.setPrefViewportWidth(0);
+			wrapperPane.setPrefViewportHeight(0);
+		}
+		
+		statusLabel.setText("INIT");
+		statusLabel.setTextFill(Color.BLACK);
+		mineCountLabel.setText("MINES: "+game.mineLeft());
+		mineStage.sizeToScene();
+	}
+	
+	/**
+	 * The method to grow or shrink the button pool to the board size, place the
+	 * buttons in the grid pane and reset them to hidden cells.
+	 */
+	private void resetButtons(){
+		int cells = game.rowCount() * game.colCount();
+		
+		//grow
+		while (buttons.size() < cells){
+			ToggleButton button = createButton(buttons.size());
+			buttons.add(button);
+			mineGrid.getChildren().add(button);
+		}
+		
+		//shrink
+		if (buttons.size() > cells){
+			mineGrid.getChildren().remove(cells, buttons.size());
+			while (buttons.size() > cells)
+				buttons.remove(buttons.size()-1);
+		}
+		
+		for (int pos=0; pos<cells; pos++){
+			ToggleButton button = buttons.get(pos);
+			GridPane.setConstraints(button, pos % game.colCount(), pos / game.colCount());
+			button.setText(" ");
+			button.setSelected(false);
+			button.setDisable(false);
+			button.setStyle("");
+			button.setTextFill(buttonTextFill);
+		}
+	}
+	
+	/**
+	 *  The method to create the toggle button for one cell.
+	 *  @param pos row-major position of the cell; the button keeps it across games
+	 *  @return the button
+	 */
+	private ToggleButton createButton(int pos){
+		ToggleButton button = new ToggleButton();
+		button.setText(" ");
+		button.setMinWidth(30);
+		buttonTextFill = button.getTextFill();
+		button.setOnMousePressed(
+			mouseEvent -> {
+				final int rowV = pos / game.colCount();
+				final int colV = pos % game.colCount();
+				//left click: click/open
+				if (mouseEvent.isPrimaryButtonDown()){
+					if (game.isFlagged(rowV, colV)){
+						button.setSelected(true);
+						return;
+					}
+					
+					if (game.isVisible(rowV, colV)){
+						button.setSelected(false);
+						return;
+					}
+					
+					RevealDelta delta = game.clickDelta(rowV, colV);
+					final int count = delta.result();
+					if (count>0){
+						button.setText(count+""); //nbr count>0
+					}
+					if (count>=0){
+						button.setSelected(false);
+						//button.setDisable(true);
+					}
+					
+					if (count == -1){
+						button.setText("X"); //exploded
+						button.setTextFill(Color.RED);
+						button.setStyle("-fx-background-color: coral");
+					}
+					
+					if (count == 0){
+						//need to repaint some nbr buttons
+						updateButtons(delta, rowV, colV);
+					}
+					
+					//otherwise no button change
+					updateStatus(delta);
+					
+				}else if (mouseEvent.isSecondaryButtonDown()){
+					//right click: flag or unflag
+					
+					if (game.isVisible(rowV,colV))
+						return;
+					
+					RevealDelta delta;
+					if (game.isFlagged(rowV, colV)){
+						delta = game.unFlagDelta(rowV, colV);
+						button.setText(" ");
+					}
+					else{
+						delta = game.flagDelta(rowV,colV);
+						button.setText("F");
+						button.setSelected(false);
+					}
+					updateStatus(delta);
+				}
+
+			}
+		);
+		
+		button.setOnMouseReleased(
+			mouseEvent -> {
+				final int rowV = pos / game.colCount();
+				final int colV = pos % game.colCount();
+				if (game.isVisible(rowV, colV))
+					button.setSelected(true);
+				if (game.isFlagged(rowV, colV))
+					button.setSelected(false);
+			}
+		);
+		return button;
+	}
+	
 	/**
 	 *  The method to set up the menu and menu actions.
 	 */	
@@ -224,10 +368,10 @@ public class MineGUI extends Application{
 		MenuItem repeat = new MenuItem("New Game (Current Setting)");
 		repeat.setOnAction(e ->{
 			if (level!= MineSweeper.Level.CUSTOM)
-				game = new MineSweeper(random.nextInt(),level);
+				game = pool.take(level);
 			else
-				game = new MineSweeper(random.nextInt(),level,customRow, customCol, customMine);
-			start(mineStage);
+				game = pool.take(customRow, customCol, customMine);
+			newGame();
 		});
 		
 		SeparatorMenuItem separator = new SeparatorMenuItem();
@@ -235,32 +379,33 @@ public class MineGUI extends Application{
 		RadioMenuItem tiny = new RadioMenuItem("Tiny (5x5, 3)");
 		tiny.setOnAction(e ->{
 			level = MineSweeper.Level.TINY;
-			game = new MineSweeper(random.nextInt(),level);
-			start(mineStage);
+			game = pool.take(level);
+			newGame();
 		});
 		
 		RadioMenuItem easy = new RadioMenuItem("Easy (9x9, 10)");
 		easy.setOnAction(e ->{
 			level = MineSweeper.Level.EASY;
-			game = new MineSweeper(random.nextInt(),level);
-			start(mineStage);
+			game = pool.take(level);
+			newGame();
 		});
 		
 		RadioMenuItem middle = new RadioMenuItem("Medium (16x16, 40)");
 		middle.setOnAction(e ->{
 			level = MineSweeper.Level.MEDIUM;
-			game = new MineSweeper(random.nextInt(),level);
-			start(mineStage);
+			game = pool.take(level);
+			newGame();
 		});
 		
 		RadioMenuItem hard = new RadioMenuItem("Hard (16x30, 99)");
 		hard.setOnAction(e ->{
 			level = MineSweeper.Level.HARD;
-			game = new MineSweeper(random.nextInt(),level);
-			start(mineStage);
+			game = pool.take(level);
+			newGame();
 		});
 		
 		RadioMenuItem custom = new RadioMenuItem("Custom "+customText);
+		customItem = custom;
 		custom.setOnAction(e ->{
 			level = MineSweeper.Level.CUSTOM;
 			getCustomedSetting();
@@ -307,10 +452,10 @@ public class MineGUI extends Application{
 
 		Label message = new Label("Customize");
 
-		Label row = new Label("Number of rows (1-30): ");
+		Label row = new Label("Number of rows (1-"+MAX_CUSTOM_ROWS+"): ");
 		TextField rowInput = new TextField();
 		rowInput.setMaxWidth(50);
-		Label col = new Label("Number of columns (1-60): ");
+		Label col = new Label("Number of columns (1-"+MAX_CUSTOM_COLS+"): ");
 		TextField colInput = new TextField();
 		colInput.setMaxWidth(50);
 		Label mine = new Label("Number of mines: ");
@@ -325,7 +470,7 @@ public class MineGUI extends Application{
 				customCol = Integer.parseInt(colInput.getCharacters().toString());
 				customMine = Integer.parseInt(mineInput.getCharacters().toString());
 				if (customRow<=0 || customCol<=0 || customMine <=0 ||
-						customRow>30 || customCol>60 ||
+						customRow>MAX_CUSTOM_ROWS || customCol>MAX_CUSTOM_COLS ||
 						customMine>customRow*customCol){
 					//check mine num <= col*row
 					message.setTextFill(Color.RED);
@@ -341,8 +486,9 @@ public class MineGUI extends Application{
 						}
 					}
 					customText = String.format("(%dx%d, %d)", customRow, customCol, customMine);
-					game = new MineSweeper(random.nextInt(),level,customRow, customCol, customMine);
-					start(mineStage);
+					customItem.setText("Custom "+customText);
+					game = pool.take(customRow, customCol, customMine);
+					newGame();
 					dimensionSettings.close();
 				}
 			}catch (NumberFormatException ex) {
@@ -360,25 +506,24 @@ public class MineGUI extends Application{
 	}
 
 	/**
-	 * The method to update buttons (cells) that are visible after one left-click.
+	 * The method to update buttons (cells) opened by one left-click.
+	 * Only the cells listed in the delta are touched.
+	 * @param delta changes made by the click
 	 * @param row row index of cell clicked
 	 * @param col col index of cell clicked
 	 */   
-	private void updateButtons(int row, int col){
+	private void updateButtons(RevealDelta delta, int row, int col){
 		
-		for (int i=0; i<game.rowCount(); i++){
-			for (int j=0; j<game.colCount();j++){
-				if (game.isVisible(i,j) && game.getCount(i,j)>=0){
-					int pos = j + i * game.colCount();
-					ToggleButton button = (ToggleButton) mineGrid.getChildren().get(pos);
-					if (i!=row || j!=col){
-						button.setSelected(true);
-						if (game.getCount(i,j)>0)
-							button.setText(game.getCount(i,j)+"");
-					}
-					
-				}
-					
+		DynIntArr310 revealed = delta.revealed();
+		for (int k=0; k<revealed.size(); k++){
+			int pos = revealed.get(k);
+			int i = pos / game.colCount();
+			int j = pos % game.colCount();
+			if (game.getCount(i,j)>=0 && (i!=row || j!=col)){
+				ToggleButton button = buttons.get(pos);
+				button.setSelected(true);
+				if (game.getCount(i,j)>0)
+					button.setText(game.getCount(i,j)+"");
 			}
 		}
 		
@@ -387,20 +532,22 @@ public class MineGUI extends Application{
 	
 	/**
 	 *  The method to update game status and mine count.
+	 *  @param delta changes made by the last move
 	 */   
-	private void updateStatus(){
+	private void updateStatus(RevealDelta delta){
 		statusLabel.setText(game.getStatus());
 		if (game.isSolved())
 			statusLabel.setTextFill(Color.FORESTGREEN);
 		if (game.isExploded())
 			statusLabel.setTextFill(Color.RED);
 		
-		//disable all buttons if solved or exploded
-		if (game.isSolved() || game.isExploded()){
+		//disable all buttons once the game becomes solved or exploded
+		//(the canvas view repaints the mines itself)
+		if (!useCanvas && delta.statusChanged() && (game.isSolved() || game.isExploded())){
 			for (int i=0; i<game.rowCount(); i++){
 				for (int j=0; j<game.colCount();j++){
 					int pos = j + i * game.colCount();
-					ToggleButton button = (ToggleButton) mineGrid.getChildren().get(pos);
+					ToggleButton button = buttons.get(pos);
 					button.setDisable(true);
 					if (game.hasMine(i,j)){
 						//mark mines
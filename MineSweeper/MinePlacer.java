@@ -0,0 +1,107 @@
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Uniform random mine placement with a bounded number of random draws.
+ *
+ * Mapping from a random sequence to a board:
+ *   1. If mineCount is at most half of the cells, mines are drawn exactly as the
+ *      original MineSweeper.initBoard did: nextInt(rowCount) then nextInt(colCount),
+ *      skipping cells that already have a mine. Boards of the standard levels are
+ *      therefore the same as before for the same seed.
+ *   2. That loop gives up after 2 * mineCount + 16 (row, col) draws. The mines still
+ *      missing are then picked by a partial Fisher-Yates shuffle over the free cell
+ *      indexes in row-major order, one nextInt per mine.
+ *   3. If mineCount is more than half of the cells, steps 1 and 2 pick the
+ *      rowCount * colCount - mineCount cells that stay free instead, and every
+ *      other cell gets a mine.
+ * Every step is uniform over the remaining cells, so the whole board is too, and at
+ * most 5 * min(mineCount, cells - mineCount) + 32 random numbers are drawn.
+ */
+public class MinePlacer {
+
+	/**
+	 * Extra (row, col) draws allowed on top of two per cell picked.
+	 */
+	private static final int DRAW_SLACK = 16;
+
+	/**
+	 * Not meant to be instantiated.
+	 */
+	private MinePlacer(){ }
+
+	/**
+	 * Picks mineCount distinct cells of a rowCount x colCount board.
+	 * @param random Random number sequence to draw from.
+	 * @param rowCount Number of rows.
+	 * @param colCount Number of columns.
+	 * @param mineCount Number of mines, clamped to the number of cells.
+	 * @return Flat row-major indexes of the mine cells.
+	 */
+	public static DynIntArr310 place(Random random, int rowCount, int colCount, int mineCount){
+		int cells = rowCount * colCount;
+		mineCount = Math.max(0, Math.min(mineCount, cells));
+
+		DynIntArr310 mines = new DynIntArr310(Math.max(mineCount, 2));
+		BitSet picked = new BitSet(cells);
+
+		if(2 * mineCount <= cells)
+		{
+			pick(random, rowCount, colCount, mineCount, picked, mines);
+			return mines;
+		}
+
+		//dense board: pick the free cells, the rest are mines
+		pick(random, rowCount, colCount, cells - mineCount, picked, new DynIntArr310());
+		for(int index=picked.nextClearBit(0); index<cells; index=picked.nextClearBit(index+1))
+			mines.add(index);
+		return mines;
+	}
+
+	/**
+	 * Picks count distinct cells not yet in picked, marks them and appends them to out.
+	 * @param random Random number sequence to draw from.
+	 * @param rowCount Number of rows.
+	 * @param colCount Number of columns.
+	 * @param count Number of cells to pick.
+	 * @param picked Cells already picked.
+	 * @param out List the picked cells are appended to.
+	 */
+	private static void pick(Random random, int rowCount, int colCount, int count,
+			BitSet picked, DynIntArr310 out){
+
+		//same draws as the original retry loop, with a bounded budget
+		int budget = 2 * count + DRAW_SLACK;
+		int placed = 0;
+		for(int draws=0; placed<count && draws<budget; draws++)
+		{
+			int row = random.nextInt(rowCount);
+			int col = random.nextInt(colCount);
+			int index = col + row * colCount;
+			if(!picked.get(index))
+			{
+				picked.set(index);
+				out.add(index);
+				placed++;
+			}
+		}
+		if(placed == count)
+			return;
+
+		//partial Fisher-Yates over the cells still free
+		int cells = rowCount * colCount;
+		int[] free = new int[cells - picked.cardinality()];
+		for(int i=0, index=picked.nextClearBit(0); index<cells; index=picked.nextClearBit(index+1))
+			free[i++] = index;
+
+		for(int i=0; placed<count; i++, placed++)
+		{
+			int j = i + random.nextInt(free.length - i);
+			int index = free[j];
+			free[j] = free[i];
+			free[i] = index;
+			picked.set(index);
+			out.add(index);
+		}
+	}
+}
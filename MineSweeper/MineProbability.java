@@ -0,0 +1,913 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Exact probability that each hidden cell of a MineSweeper game holds a mine, given
+ * the visible numbers and the total number of mines. Like MineSolver it only reads
+ * what a player sees, and flags are not taken as evidence. Neighbors come from
+ * the game's topology, so square, torus and hexagonal boards are all counted.
+ *
+ * Hidden cells next to a visible number form the frontier. Numbers that share a
+ * hidden cell tie their cells together, and union-find splits the frontier into
+ * components that can be counted independently:
+ *   - each component is counted by a dynamic program over its cells in BFS order,
+ *     whose state is the mines placed so far around the numbers that are still
+ *     open. A forward and a backward pass give, for each number m of mines, the
+ *     layouts using m mines and the layouts where each cell is a mine.
+ *   - components run in parallel on a ForkJoinPool, and results are cached by the
+ *     shape of the component, so unchanged parts of the board cost nothing on the
+ *     next call.
+ *   - components are combined with the binomial count of ways to place the other
+ *     mines in the cells away from the frontier, computed in log space.
+ */
+public class MineProbability {
+
+	/**
+	 * Component results kept before the cache is cleared.
+	 */
+	private static final int CACHE_LIMIT = 4096;
+
+	/**
+	 * Forward and backward values are scaled down by 2^SCALE_STEP when they pass 2^SCALE_STEP.
+	 */
+	private static final int SCALE_STEP = 600;
+
+	/**
+	 * Pool the components are counted on.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Counted components by shape.
+	 */
+	private final ConcurrentHashMap<Shape, Counts> cache = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor, counts components on the common pool.
+	 */
+	public MineProbability(){
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructor.
+	 * @param pool Pool to count components on.
+	 */
+	public MineProbability(ForkJoinPool pool){
+		this.pool = pool;
+	}
+
+	/**
+	 * Computes the mine probability of every cell.
+	 * @param game Game in progress, not exploded.
+	 * @return Probabilities in row-major order; 0 for visible cells.
+	 * @throws IllegalStateException if the game exploded or no layout fits the numbers.
+	 */
+	public double[] compute(MineSweeper game){
+		if (game.isExploded())
+			throw new IllegalStateException("Game is over");
+		int rows = game.rowCount();
+		int cols = game.colCount();
+		int cells = rows * cols;
+		double[] result = new double[cells];
+
+		//numbers with hidden neighbors, and union-find over their hidden neighbors
+		int[] parent = new int[cells];
+		Arrays.fill(parent, -1);
+		List<int[]> numbers = new ArrayList<>();
+		int[] nbrs = new int[8];
+		Topology.Table table = game.getTopology().table(rows, cols);
+		int hidden = 0;
+		for (int index = 0; index < cells; index++){
+			int row = index / cols;
+			int col = index % cols;
+			if (!game.isVisible(row, col)){
+				hidden++;
+				continue;
+			}
+			int count = game.getCount(row, col);
+			int n = hiddenNeighbors(game, table, index, nbrs);
+			if (n == 0)
+				continue;
+			int[] number = new int[n + 1];
+			number[0] = count;
+			for (int k = 0; k < n; k++){
+				number[k + 1] = nbrs[k];
+				if (parent[nbrs[k]] < 0)
+					parent[nbrs[k]] = nbrs[k];
+				union(parent, nbrs[0], nbrs[k]);
+			}
+			numbers.add(number);
+		}
+
+		//group cells and numbers by component, both in row-major order
+		Map<Integer, Component> byRoot = new HashMap<>();
+		List<Component> components = new ArrayList<>();
+		int frontier = 0;
+		for (int index = 0; index < cells; index++){
+			if (parent[index] < 0)
+				continue;
+			frontier++;
+			Component component = byRoot.computeIfAbsent(find(parent, index), root -> {
+				Component created = new Component();
+				components.add(created);
+				return created;
+			});
+			component.cells.add(index);
+		}
+		for (int[] number : numbers)
+			byRoot.get(find(parent, number[1])).numbers.add(number);
+
+		//count the components in parallel
+		List<RecursiveTask<Counts>> tasks = new ArrayList<>();
+		for (Component component : components){
+			component.order();
+			tasks.add(new RecursiveTask<Counts>() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected Counts compute(){
+					return count(component);
+				}
+			});
+		}
+		if (tasks.size() == 1)
+			tasks.get(0).invoke();
+		else if (tasks.size() > 1)
+			pool.invoke(new RecursiveTask<Void>() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected Void compute(){
+					ForkJoinTask.invokeAll(tasks);
+					return null;
+				}
+			});
+		if (cache.size() > CACHE_LIMIT)
+			cache.clear();
+
+		int interior = hidden - frontier;
+		double interiorProbability = combine(components, tasks, interior, game.mineCount(), result);
+		for (int index = 0; index < cells; index++)
+			if (parent[index] < 0 && !game.isVisible(index / cols, index % cols))
+				result[index] = interiorProbability;
+		return result;
+	}
+
+	/**
+	 * Combines the component counts with the cells away from the frontier.
+	 * @param components Components of the frontier.
+	 * @param tasks Finished count of each component.
+	 * @param interior Number of hidden cells away from the frontier.
+	 * @param mines Total number of mines.
+	 * @param result Probabilities to fill in for the frontier cells.
+	 * @return Mine probability of an interior cell.
+	 */
+	private double combine(List<Component> components, List<RecursiveTask<Counts>> tasks,
+			int interior, int mines, double[] result){
+		int parts = components.size();
+		double[][] weights = new double[parts][];
+		for (int i = 0; i < parts; i++)
+			weights[i] = tasks.get(i).join().weights;
+
+		//prefix[i] = product of weights before i, suffix[i] = product from i on
+		double[][] prefix = new double[parts + 1][];
+		double[][] suffix = new double[parts + 1][];
+		prefix[0] = new double[] { 1 };
+		suffix[parts] = new double[] { 1 };
+		for (int i = 0; i < parts; i++)
+			prefix[i + 1] = convolve(prefix[i], weights[i]);
+		for (int i = parts - 1; i >= 0; i--)
+			suffix[i] = convolve(weights[i], suffix[i + 1]);
+		double[] total = prefix[parts];
+
+		//ways[s]: ways to put the other mines - s in the interior, scaled
+		double[] ways = interiorWays(interior, mines, total.length - 1);
+		double norm = 0;
+		double interiorMines = 0;
+		for (int s = 0; s < total.length; s++){
+			norm += total[s] * ways[s];
+			interiorMines += total[s] * ways[s] * (mines - s);
+		}
+		if (!(norm > 0))
+			throw new IllegalStateException("No mine layout fits the board");
+
+		for (int i = 0; i < parts; i++){
+			double[] others = convolve(prefix[i], suffix[i + 1]);
+			double[] weight = new double[weights[i].length];
+			for (int m = 0; m < weight.length; m++)
+				for (int r = 0; r < others.length; r++)
+					weight[m] += others[r] * ways[m + r];
+
+			Component component = components.get(i);
+			double[][] marginals = tasks.get(i).join().marginals;
+			for (int k = 0; k < component.cells.size(); k++){
+				double p = 0;
+				for (int m = 0; m < weight.length; m++)
+					p += marginals[k][m] * weight[m];
+				result[component.order[k]] = p / norm;
+			}
+		}
+		return interior == 0 ? 0 : interiorMines / norm / interior;
+	}
+
+	/**
+	 * Computes the scaled number of ways to put mines - s mines in the interior.
+	 * @param interior Number of interior cells.
+	 * @param mines Total number of mines.
+	 * @param maxFrontier Most mines the frontier can hold.
+	 * @return ways[s] for s in [0, maxFrontier], scaled so the largest is 1.
+	 */
+	static double[] interiorWays(int interior, int mines, int maxFrontier){
+		double[] log = new double[maxFrontier + 1];
+		double max = Double.NEGATIVE_INFINITY;
+		for (int s = 0; s <= maxFrontier; s++){
+			int k = mines - s;
+			log[s] = k < 0 || k > interior ? Double.NEGATIVE_INFINITY : logBinomial(interior, k);
+			max = Math.max(max, log[s]);
+		}
+		double[] ways = new double[maxFrontier + 1];
+		if (max == Double.NEGATIVE_INFINITY)
+			return ways;
+		for (int s = 0; s <= maxFrontier; s++)
+			ways[s] = Math.exp(log[s] - max);
+		return ways;
+	}
+
+	/**
+	 * Computes log(n choose k).
+	 * @param n Number of items.
+	 * @param k Number chosen, 0 <= k <= n.
+	 * @return Natural log of the binomial coefficient.
+	 */
+	static double logBinomial(int n, int k){
+		k = Math.min(k, n - k);
+		double log = 0;
+		for (int i = 0; i < k; i++)
+			log += Math.log((double) (n - i) / (i + 1));
+		return log;
+	}
+
+	/**
+	 * Multiplies two polynomials given by their coefficients.
+	 * @param a Coefficients of the first polynomial.
+	 * @param b Coefficients of the second polynomial.
+	 * @return Coefficients of the product.
+	 */
+	static double[] convolve(double[] a, double[] b){
+		double[] c = new double[a.length + b.length - 1];
+		for (int i = 0; i < a.length; i++)
+			if (a[i] != 0)
+				for (int j = 0; j < b.length; j++)
+					c[i + j] += a[i] * b[j];
+		return c;
+	}
+
+	/**
+	 * Lists the hidden neighbors of a cell in row-major order.
+	 * @param game Game to read.
+	 * @param table Neighbor table of the game's topology and size.
+	 * @param index Flat index of the cell.
+	 * @param out Array of 8 slots for the neighbors.
+	 * @return Number of hidden neighbors.
+	 */
+	private static int hiddenNeighbors(MineSweeper game, Topology.Table table, int index, int[] out){
+		int cols = game.colCount();
+		int m = table.neighbors(index, out);
+		int n = 0;
+		for (int k = 0; k < m; k++)
+			if (!game.isVisible(out[k] / cols, out[k] % cols))
+				out[n++] = out[k];
+		return n;
+	}
+
+	/**
+	 * Finds the root of a cell in the union-find forest, halving the path.
+	 * @param parent Parent of each cell.
+	 * @param index Cell to look up.
+	 * @return Root of the cell's set.
+	 */
+	private static int find(int[] parent, int index){
+		while (parent[index] != index){
+			parent[index] = parent[parent[index]];
+			index = parent[index];
+		}
+		return index;
+	}
+
+	/**
+	 * Joins the sets of two cells.
+	 * @param parent Parent of each cell.
+	 * @param a First cell.
+	 * @param b Second cell.
+	 */
+	private static void union(int[] parent, int a, int b){
+		int ra = find(parent, a);
+		int rb = find(parent, b);
+		if (ra != rb)
+			parent[Math.max(ra, rb)] = Math.min(ra, rb);
+	}
+
+	/**
+	 * Counts a component, or takes its counts from the cache.
+	 * @param component Component to count.
+	 * @return Counts of the component, in the component's BFS order.
+	 */
+	private Counts count(Component component){
+		Shape shape = component.shape();
+		Counts counts = cache.get(shape);
+		if (counts == null){
+			counts = new Counts(component);
+			cache.putIfAbsent(shape, counts);
+		}
+		return counts;
+	}
+
+	/**
+	 * Hidden frontier cells tied together by numbers, and those numbers.
+	 */
+	private static class Component {
+
+		/**
+		 * Cells, in row-major order.
+		 */
+		final DynIntArr310 cells = new DynIntArr310();
+
+		/**
+		 * Numbers as {count, hidden neighbors...}, in row-major order of the number.
+		 */
+		final List<int[]> numbers = new ArrayList<>();
+
+		/**
+		 * Cells in BFS order, set by order().
+		 */
+		int[] order;
+
+		/**
+		 * Numbers with their cells as positions in order, each sorted.
+		 */
+		int[][] local;
+
+		/**
+		 * Mine count of each number.
+		 */
+		int[] targets;
+
+		/**
+		 * Orders the cells breadth first from the first cell, so numbers close
+		 * up soon after they open. Depends only on the shape, not its position.
+		 */
+		void order(){
+			int n = cells.size();
+			Map<Integer, Integer> position = new HashMap<>();
+			Map<Integer, List<int[]>> touching = new HashMap<>();
+			for (int[] number : numbers)
+				for (int k = 1; k < number.length; k++)
+					touching.computeIfAbsent(number[k], key -> new ArrayList<>()).add(number);
+
+			order = new int[n];
+			int head = 0;
+			int tail = 0;
+			order[tail++] = cells.get(0);
+			position.put(cells.get(0), 0);
+			while (head < tail){
+				int cell = order[head++];
+				for (int[] number : touching.get(cell))
+					for (int k = 1; k < number.length; k++)
+						if (!position.containsKey(number[k])){
+							position.put(number[k], tail);
+							order[tail++] = number[k];
+						}
+			}
+
+			local = new int[numbers.size()][];
+			targets = new int[numbers.size()];
+			for (int i = 0; i < numbers.size(); i++){
+				int[] number = numbers.get(i);
+				targets[i] = number[0];
+				local[i] = new int[number.length - 1];
+				for (int k = 1; k < number.length; k++)
+					local[i][k - 1] = position.get(number[k]);
+				Arrays.sort(local[i]);
+			}
+		}
+
+		/**
+		 * Describes the component without its position on the board.
+		 * @return Shape of the component.
+		 */
+		Shape shape(){
+			int length = 2;
+			for (int[] cellsOf : local)
+				length += 2 + cellsOf.length;
+			int[] key = new int[length];
+			int at = 0;
+			key[at++] = order.length;
+			key[at++] = local.length;
+			for (int i = 0; i < local.length; i++){
+				key[at++] = targets[i];
+				key[at++] = local[i].length;
+				for (int cell : local[i])
+					key[at++] = cell;
+			}
+			return new Shape(key);
+		}
+	}
+
+	/**
+	 * Position-free description of a component, used as a cache key.
+	 */
+	private static final class Shape {
+
+		/**
+		 * Cell count, number count, then each number's count, size and cell positions.
+		 */
+		private final int[] key;
+
+		/**
+		 * Cached hash of key.
+		 */
+		private final int hash;
+
+		/**
+		 * Constructor.
+		 * @param key Description of the component.
+		 */
+		Shape(int[] key){
+			this.key = key;
+			this.hash = Arrays.hashCode(key);
+		}
+
+		@Override
+		public boolean equals(Object o){
+			return o instanceof Shape && Arrays.equals(key, ((Shape) o).key);
+		}
+
+		@Override
+		public int hashCode() { return hash; }
+	}
+
+	/**
+	 * Open-number state of the dynamic program: mines placed so far around each
+	 * number that has cells both before and after the current position.
+	 */
+	private static final class State {
+
+		/**
+		 * Mines placed around each open number.
+		 */
+		final int[] placed;
+
+		/**
+		 * Cached hash of placed.
+		 */
+		private final int hash;
+
+		/**
+		 * Constructor.
+		 * @param placed Mines placed around each open number.
+		 */
+		State(int[] placed){
+			this.placed = placed;
+			this.hash = Arrays.hashCode(placed);
+		}
+
+		@Override
+		public boolean equals(Object o){
+			return o instanceof State && Arrays.equals(placed, ((State) o).placed);
+		}
+
+		@Override
+		public int hashCode() { return hash; }
+	}
+
+	/**
+	 * Layout counts of one component: weights[m] layouts use m mines, and in
+	 * marginals[k][m] of them cell k (in BFS order) is a mine. Both are scaled by
+	 * the same factor so the largest weight is 1.
+	 */
+	private static final class Counts {
+
+		/**
+		 * Layouts per number of mines.
+		 */
+		final double[] weights;
+
+		/**
+		 * Layouts per cell and number of mines where the cell is a mine.
+		 */
+		final double[][] marginals;
+
+		/**
+		 * Number of cells.
+		 */
+		private final int n;
+
+		/**
+		 * Numbers with their cells as positions.
+		 */
+		private final int[][] local;
+
+		/**
+		 * Mine count of each number.
+		 */
+		private final int[] targets;
+
+		/**
+		 * Numbers open before each position, in increasing number order.
+		 */
+		private final int[][] open;
+
+		/**
+		 * For each position, the numbers that contain it, in increasing order.
+		 */
+		private final int[][] at;
+
+		/**
+		 * For each position and each number in at, cells of the number after the position.
+		 */
+		private final int[][] after;
+
+		/**
+		 * Counts a component.
+		 * @param component Ordered component.
+		 */
+		Counts(Component component){
+			n = component.order.length;
+			local = component.local;
+			targets = component.targets;
+			int numbers = local.length;
+
+			//numbers are visited in increasing order, so every list comes out sorted
+			DynIntArr310[] atList = new DynIntArr310[n];
+			DynIntArr310[] afterList = new DynIntArr310[n];
+			DynIntArr310[] openList = new DynIntArr310[n + 1];
+			for (int p = 0; p < n; p++){
+				atList[p] = new DynIntArr310();
+				afterList[p] = new DynIntArr310();
+			}
+			for (int p = 0; p <= n; p++)
+				openList[p] = new DynIntArr310();
+			for (int k = 0; k < numbers; k++){
+				int[] cellsOf = local[k];
+				for (int i = 0; i < cellsOf.length; i++){
+					atList[cellsOf[i]].add(k);
+					afterList[cellsOf[i]].add(cellsOf.length - 1 - i);
+				}
+				for (int p = cellsOf[0] + 1; p <= cellsOf[cellsOf.length - 1]; p++)
+					openList[p].add(k);
+			}
+			at = new int[n][];
+			after = new int[n][];
+			open = new int[n + 1][];
+			for (int p = 0; p < n; p++){
+				at[p] = atList[p].toArray();
+				after[p] = afterList[p].toArray();
+			}
+			for (int p = 0; p <= n; p++)
+				open[p] = openList[p].toArray();
+
+			//forward pass: layouts of cells before p reaching each state
+			List<Map<State, double[]>> forward = new ArrayList<>();
+			int[] forwardScale = new int[n + 1];
+			Map<State, double[]> layer = new HashMap<>();
+			layer.put(new State(new int[0]), new double[] { 1 });
+			forward.add(layer);
+			for (int p = 0; p < n; p++){
+				Map<State, double[]> next = new HashMap<>();
+				for (Map.Entry<State, double[]> entry : layer.entrySet())
+					for (int mine = 0; mine <= 1; mine++){
+						State to = step(p, entry.getKey(), mine);
+						if (to == null)
+							continue;
+						int length = p + 2;
+						double[] sum = next.computeIfAbsent(to, key -> new double[length]);
+						double[] from = entry.getValue();
+						for (int m = low(from), high = high(from); m <= high; m++)
+							sum[m + mine] += from[m];
+					}
+				forwardScale[p + 1] = forwardScale[p] + rescale(next);
+				forward.add(next);
+				layer = next;
+			}
+
+			//backward pass: layouts of cells from p on completing each state
+			List<Map<State, double[]>> backward = new ArrayList<>();
+			int[] backwardScale = new int[n + 1];
+			for (int p = 0; p <= n; p++)
+				backward.add(null);
+			Map<State, double[]> end = new HashMap<>();
+			end.put(new State(new int[0]), new double[] { 1 });
+			backward.set(n, end);
+			marginals = new double[n][];
+			for (int p = n - 1; p >= 0; p--){
+				Map<State, double[]> later = backward.get(p + 1);
+				Map<State, double[]> here = new HashMap<>();
+				double[] marginal = new double[n + 1];
+				for (Map.Entry<State, double[]> entry : forward.get(p).entrySet()){
+					double[] sum = new double[n - p + 1];
+					for (int mine = 0; mine <= 1; mine++){
+						State to = step(p, entry.getKey(), mine);
+						double[] rest = to == null ? null : later.get(to);
+						if (rest == null)
+							continue;
+						int restLow = low(rest);
+						int restHigh = high(rest);
+						for (int m = restLow; m <= restHigh; m++)
+							sum[m + mine] += rest[m];
+						if (mine == 1){
+							//layouts through this state with a mine at p, by total mines
+							double[] before = entry.getValue();
+							for (int i = low(before), high = high(before); i <= high; i++)
+								for (int j = restLow; j <= restHigh; j++)
+									marginal[i + j + 1] += before[i] * rest[j];
+						}
+					}
+					here.put(entry.getKey(), sum);
+				}
+				backwardScale[p] = backwardScale[p + 1] + rescale(here);
+				backward.set(p, here);
+				int shift = forwardScale[p] + backwardScale[p + 1];
+				for (int m = 0; m <= n; m++)
+					marginal[m] = Math.scalb(marginal[m], shift);
+				marginals[p] = marginal;
+			}
+
+			//scale everything so the largest weight is 1
+			double[] total = backward.get(0).values().iterator().next();
+			weights = new double[n + 1];
+			double max = 0;
+			for (int m = 0; m <= n; m++){
+				weights[m] = Math.scalb(total[m], backwardScale[0]);
+				max = Math.max(max, weights[m]);
+			}
+			if (max > 0){
+				for (int m = 0; m <= n; m++)
+					weights[m] /= max;
+				for (double[] marginal : marginals)
+					for (int m = 0; m <= n; m++)
+						marginal[m] /= max;
+			}
+		}
+
+		/**
+		 * Finds the first nonzero coefficient. Layouts of a component only use a
+		 * narrow range of mine counts, so loops run from low() to high().
+		 * @param values Coefficients.
+		 * @return Index of the first nonzero value, values.length if all are zero.
+		 */
+		private static int low(double[] values){
+			int i = 0;
+			while (i < values.length && values[i] == 0)
+				i++;
+			return i;
+		}
+
+		/**
+		 * Finds the last nonzero coefficient.
+		 * @param values Coefficients.
+		 * @return Index of the last nonzero value, -1 if all are zero.
+		 */
+		private static int high(double[] values){
+			int i = values.length - 1;
+			while (i >= 0 && values[i] == 0)
+				i--;
+			return i;
+		}
+
+		/**
+		 * Scales a layer down when its values grow too large for doubles.
+		 * @param layer Layer to check.
+		 * @return Power of two the layer was divided by.
+		 */
+		private static int rescale(Map<State, double[]> layer){
+			double max = 0;
+			for (double[] values : layer.values())
+				for (double value : values)
+					max = Math.max(max, value);
+			if (max < Math.scalb(1.0, SCALE_STEP))
+				return 0;
+			for (double[] values : layer.values())
+				for (int m = 0; m < values.length; m++)
+					values[m] = Math.scalb(values[m], -SCALE_STEP);
+			return SCALE_STEP;
+		}
+
+		/**
+		 * Places a mine or not at position p.
+		 * @param p Position of the cell.
+		 * @param state State before p.
+		 * @param mine 1 to place a mine, 0 not to.
+		 * @return State after p, or null if some number can no longer be met.
+		 */
+		private State step(int p, State state, int mine){
+			int[] from = open[p];
+			int[] to = open[p + 1];
+			int[] placed = new int[to.length];
+
+			//numbers at p: check them, whether they stay open or close here
+			for (int a = 0; a < at[p].length; a++){
+				int k = at[p][a];
+				int i = Arrays.binarySearch(from, k);
+				int before = i >= 0 ? state.placed[i] : 0;
+				int now = before + mine;
+				if (now > targets[k] || now + after[p][a] < targets[k])
+					return null;
+			}
+
+			for (int j = 0, i = 0; j < to.length; j++){
+				int k = to[j];
+				while (i < from.length && from[i] < k)
+					i++;
+				int before = i < from.length && from[i] == k ? state.placed[i] : 0;
+				placed[j] = before + (Arrays.binarySearch(at[p], k) >= 0 ? mine : 0);
+			}
+			return new State(placed);
+		}
+	}
+
+	/**
+	 * Creates a strategy that opens cells MineSolver proves safe and otherwise
+	 * the cell least likely to be a mine.
+	 * @param engine Probability engine to use.
+	 * @return A new strategy, meant for one game.
+	 */
+	public static MoveStrategy strategy(MineProbability engine){
+		return new MoveStrategy() {
+			/**
+			 * Solver of the game, created on the first move.
+			 */
+			private MineSolver solver;
+
+			@Override
+			public int nextMove(MineSweeper game, Random random){
+				if (solver == null)
+					solver = new MineSolver(game);
+				else
+					solver.reveal(game.getRevealed());
+				solver.solve();
+				int index = solver.nextSafe();
+				return index >= 0 ? index : safest(engine.compute(game), game, random);
+			}
+		};
+	}
+
+	/**
+	 * Picks the hidden cell least likely to hold a mine, breaking ties at random.
+	 * @param probabilities Mine probability of each cell.
+	 * @param game Game the probabilities belong to.
+	 * @param random Random numbers for ties.
+	 * @return Flat index of the cell, or -1 if every cell is visible.
+	 */
+	public static int safest(double[] probabilities, MineSweeper game, Random random){
+		int cols = game.colCount();
+		int best = -1;
+		int ties = 0;
+		for (int index = 0; index < probabilities.length; index++){
+			if (game.isVisible(index / cols, index % cols))
+				continue;
+			if (best < 0 || probabilities[index] < probabilities[best] - 1e-12){
+				best = index;
+				ties = 1;
+			}
+			else if (Math.abs(probabilities[index] - probabilities[best]) <= 1e-12 && random.nextInt(++ties) == 0)
+				best = index;
+		}
+		return best;
+	}
+
+	/**
+	 * Counts mine layouts one by one, for checking compute() on small boards.
+	 * @param game Game to read.
+	 * @return Mine probability of every cell.
+	 */
+	private static double[] bruteForce(MineSweeper game){
+		int cols = game.colCount();
+		int cells = game.rowCount() * cols;
+		DynIntArr310 hidden = new DynIntArr310();
+		for (int index = 0; index < cells; index++)
+			if (!game.isVisible(index / cols, index % cols))
+				hidden.add(index);
+		double[] mines = new double[cells];
+		long layouts = 0;
+		boolean[] mine = new boolean[cells];
+		Topology.Table table = game.getTopology().table(game.rowCount(), cols);
+		int[] nbrs = new int[8];
+		int h = hidden.size();
+		for (long set = 0; set < 1L << h; set++){
+			if (Long.bitCount(set) != game.mineCount())
+				continue;
+			for (int k = 0; k < h; k++)
+				mine[hidden.get(k)] = (set >> k & 1) != 0;
+			boolean fits = true;
+			for (int index = 0; index < cells && fits; index++){
+				int row = index / cols;
+				int col = index % cols;
+				if (!game.isVisible(row, col))
+					continue;
+				int count = 0;
+				int n = table.neighbors(index, nbrs);
+				for (int k = 0; k < n; k++)
+					if (mine[nbrs[k]])
+						count++;
+				fits = count == game.getCount(row, col);
+			}
+			if (!fits)
+				continue;
+			layouts++;
+			for (int k = 0; k < h; k++)
+				if (mine[hidden.get(k)])
+					mines[hidden.get(k)]++;
+		}
+		for (int index = 0; index < cells; index++)
+			mines[index] /= layouts;
+		return mines;
+	}
+
+	/**
+	 * Tests the MineProbability class.
+	 * @param args Not used.
+	 */
+	public static void main(String[] args){
+		MineProbability engine = new MineProbability();
+		Random random = new Random(11);
+
+		//exact on small boards, against counting every layout
+		boolean exact = true;
+		int checked = 0;
+		for (int g = 0; g < 60; g++){
+			MineSweeper game = new MineSweeper(random.nextInt(), MineSweeper.Level.CUSTOM, 5, 6, 6);
+			while (!game.isSolved()){
+				int hidden = 0;
+				for (int index = 0; index < 30; index++)
+					if (!game.isVisible(index / 6, index % 6))
+						hidden++;
+				if (hidden <= 24){
+					double[] fast = engine.compute(game);
+					double[] slow = bruteForce(game);
+					for (int index = 0; index < 30; index++)
+						if (Math.abs(fast[index] - slow[index]) > 1e-9)
+							exact = false;
+					checked++;
+				}
+				int index;
+				do
+					index = random.nextInt(30);
+				while (game.isVisible(index / 6, index % 6) || game.hasMine(index / 6, index % 6));
+				game.clickAt(index / 6, index % 6);
+			}
+		}
+		if (exact && checked > 100)
+			System.out.println("Yay 1");
+
+		//probabilities of a fresh board are all mines / cells
+		MineSweeper fresh = new MineSweeper(3, MineSweeper.Level.HARD);
+		double[] uniform = engine.compute(fresh);
+		if (Math.abs(uniform[0] - 99.0 / 480) < 1e-12 && Math.abs(uniform[479] - 99.0 / 480) < 1e-12)
+			System.out.println("Yay 2");
+
+		//solver plus probabilities beats the solver with random guesses
+		MineSimulator simulator = new MineSimulator(42, 4);
+		GameStats guessing = simulator.run(MineSweeper.Level.HARD, 400, MineSolver::strategy);
+		GameStats weighing = simulator.run(MineSweeper.Level.HARD, 400, () -> strategy(engine));
+		if (weighing.winRate(MineSweeper.Level.HARD) > guessing.winRate(MineSweeper.Level.HARD))
+			System.out.println("Yay 3");
+		simulator.shutdown();
+
+		//exact on small torus and hex boards too
+		boolean shaped = true;
+		checked = 0;
+		for (int g = 0; g < 40; g++){
+			Topology topology = g % 2 == 0 ? Topology.TORUS : Topology.HEX;
+			MineSweeper game = new MineSweeper(random.nextInt(), MineSweeper.Level.CUSTOM, 5, 6, 6, topology);
+			while (!game.isSolved()){
+				int hidden = 0;
+				for (int index = 0; index < 30; index++)
+					if (!game.isVisible(index / 6, index % 6))
+						hidden++;
+				if (hidden <= 24){
+					double[] fast = engine.compute(game);
+					double[] slow = bruteForce(game);
+					for (int index = 0; index < 30; index++)
+						shaped &= Math.abs(fast[index] - slow[index]) <= 1e-9;
+					checked++;
+				}
+				int index;
+				do
+					index = random.nextInt(30);
+				while (game.isVisible(index / 6, index % 6) || game.hasMine(index / 6, index % 6));
+				game.clickAt(index / 6, index % 6);
+			}
+		}
+		if (shaped && checked > 50)
+			System.out.println("Yay 4");
+	}
+}
@@ -0,0 +1,497 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hosts many independent MineSweeper sessions behind a line protocol on a
+ * loopback TCP port. Every request is one line and gets one line back, either
+ * "OK ..." or "ERR message":
+ *
+ *   NEW level [seed]                 -> OK id rows cols mines
+ *   NEW rows cols mines [seed]       -> OK id rows cols mines, at most MAX_CELLS cells
+ *   CLICK id row col                 -> OK result status index:count ...
+ *   FLAG id row col                  -> OK changed status
+ *   UNFLAG id row col                -> OK changed status
+ *   CLOSE id                         -> OK closed
+ *   STATS                            -> OK sessions=... evicted=... command=count/mean/max ...
+ *
+ * A click answers with its RevealDelta only: the cells it opened with their
+ * counts (-1 for a mine), never the whole board.
+ *
+ * Each connection is served by its own thread. Sessions live in SHARDS
+ * ConcurrentHashMaps picked by session id, so players in different shards never
+ * touch the same map; a session is locked only while one of its moves runs.
+ * Sessions unused for idleMillis are evicted by a background sweep. Every
+ * command keeps its count, total and largest latency in LongAdders.
+ */
+public class MineServer {
+
+	/**
+	 * Number of session map shards, a power of two.
+	 */
+	static final int SHARDS = 16;
+
+	/**
+	 * Commands of the protocol, in the order of the metric arrays.
+	 */
+	static final String[] COMMANDS = { "NEW", "CLICK", "FLAG", "UNFLAG", "CLOSE", "STATS" };
+
+	/**
+	 * Most cells of a custom board, the largest board the GUI offers (1000x1000).
+	 */
+	static final long MAX_CELLS = 1000L * 1000;
+
+	/**
+	 * One hosted game and the last time it was used.
+	 */
+	private static class Session {
+
+		/**
+		 * The game, guarded by the session.
+		 */
+		final MineSweeper game;
+
+		/**
+		 * System.nanoTime() of the last request.
+		 */
+		volatile long lastUsed;
+
+		/**
+		 * Constructor.
+		 * @param game The game.
+		 */
+		Session(MineSweeper game){
+			this.game = game;
+			lastUsed = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Session maps, picked by the low bits of the session id.
+	 */
+	private final ConcurrentHashMap<Long, Session>[] shards;
+
+	/**
+	 * Next session id.
+	 */
+	private final AtomicLong nextId = new AtomicLong(1);
+
+	/**
+	 * Sessions are evicted after this long without a request.
+	 */
+	private final long idleNanos;
+
+	/**
+	 * Listening socket.
+	 */
+	private final ServerSocket socket;
+
+	/**
+	 * Threads serving the connections.
+	 */
+	private final ExecutorService connections;
+
+	/**
+	 * Runs the idle sweep.
+	 */
+	private final ScheduledExecutorService sweeper;
+
+	/**
+	 * Seeds of games created without one.
+	 */
+	private final Random seeds = new Random();
+
+	/**
+	 * Sessions evicted for being idle.
+	 */
+	private final LongAdder evicted = new LongAdder();
+
+	/**
+	 * Requests served per command.
+	 */
+	private final LongAdder[] counts = new LongAdder[COMMANDS.length];
+
+	/**
+	 * Total latency per command, in nanoseconds.
+	 */
+	private final LongAdder[] nanos = new LongAdder[COMMANDS.length];
+
+	/**
+	 * Largest latency per command, in nanoseconds.
+	 */
+	private final LongAccumulator[] maxNanos = new LongAccumulator[COMMANDS.length];
+
+	/**
+	 * Constructor, starts listening on the loopback address.
+	 * @param port Port to listen on, 0 for any free port.
+	 * @param idleMillis Sessions unused this long are evicted.
+	 * @throws IOException If the port cannot be opened.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public MineServer(int port, long idleMillis) throws IOException {
+		shards = new ConcurrentHashMap[SHARDS];
+		for (int i = 0; i < SHARDS; i++)
+			shards[i] = new ConcurrentHashMap<>();
+		for (int i = 0; i < COMMANDS.length; i++){
+			counts[i] = new LongAdder();
+			nanos[i] = new LongAdder();
+			maxNanos[i] = new LongAccumulator(Math::max, 0);
+		}
+		idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+		socket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+		connections = Executors.newCachedThreadPool(task -> {
+			Thread thread = new Thread(task, "mine-server");
+			thread.setDaemon(true);
+			return thread;
+		});
+		sweeper = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread thread = new Thread(task, "mine-server-sweep");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long period = Math.max(1, idleMillis / 2);
+		sweeper.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+		connections.execute(this::accept);
+	}
+
+	/**
+	 * Reports the port the server listens on.
+	 * @return Local port.
+	 */
+	public int port() { return socket.getLocalPort(); }
+
+	/**
+	 * Accepts connections until the server shuts down.
+	 */
+	private void accept(){
+		while (!socket.isClosed()){
+			try {
+				Socket client = socket.accept();
+				connections.execute(() -> serve(client));
+			} catch (IOException e){
+				//closed by shutdown
+			}
+		}
+	}
+
+	/**
+	 * Answers the requests of one connection until it closes.
+	 * @param client Connected socket.
+	 */
+	private void serve(Socket client){
+		try (Socket s = client;
+				BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+				PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.US_ASCII))){
+			String line;
+			while ((line = in.readLine()) != null){
+				out.println(handle(line));
+				if (!in.ready())
+					out.flush();
+			}
+		} catch (IOException e){
+			//the client went away
+		}
+	}
+
+	/**
+	 * Answers one request line and records its latency.
+	 * @param line Request line.
+	 * @return Reply line.
+	 */
+	String handle(String line){
+		long start = System.nanoTime();
+		String[] words = line.trim().split("\\s+");
+		int command = -1;
+		for (int i = 0; i < COMMANDS.length; i++)
+			if (COMMANDS[i].equalsIgnoreCase(words[0]))
+				command = i;
+		String reply;
+		try {
+			reply = command < 0 ? "ERR unknown command " + words[0] : run(command, words);
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e){
+			reply = "ERR bad arguments";
+		} catch (IllegalArgumentException e){
+			reply = "ERR " + e.getMessage();
+		}
+		if (command >= 0){
+			long took = System.nanoTime() - start;
+			counts[command].increment();
+			nanos[command].add(took);
+			maxNanos[command].accumulate(took);
+		}
+		return reply;
+	}
+
+	/**
+	 * Runs one command.
+	 * @param command Index in COMMANDS.
+	 * @param words Request words, the command first.
+	 * @return Reply line.
+	 */
+	private String run(int command, String[] words){
+		if (command == 0)
+			return create(words);
+		if (command == 5)
+			return stats();
+		long id = Long.parseLong(words[1]);
+		if (command == 4)
+			return shard(id).remove(id) != null ? "OK closed" : "ERR no session " + id;
+		Session session = shard(id).get(id);
+		if (session == null)
+			return "ERR no session " + id;
+		session.lastUsed = System.nanoTime();
+		int row = Integer.parseInt(words[2]);
+		int col = Integer.parseInt(words[3]);
+		synchronized (session){
+			MineSweeper game = session.game;
+			if (command == 1)
+				return click(game, row, col);
+			boolean changed = command == 2 ? game.flagAt(row, col) : game.unFlagAt(row, col);
+			return "OK " + (changed ? 1 : 0) + " " + game.getStatus();
+		}
+	}
+
+	/**
+	 * Creates a session.
+	 * @param words NEW level [seed] or NEW rows cols mines [seed], at most MAX_CELLS cells.
+	 * @return Reply with the session id and board size.
+	 */
+	private String create(String[] words){
+		MineSweeper game;
+		if (words.length <= 3){
+			MineSweeper.Level level = MineSweeper.Level.valueOf(words[1].toUpperCase());
+			if (level == MineSweeper.Level.CUSTOM)
+				throw new IllegalArgumentException("custom games need rows cols mines");
+			game = new MineSweeper(words.length == 3 ? Integer.parseInt(words[2]) : nextSeed(), level);
+		} else {
+			int rows = Integer.parseInt(words[1]);
+			int cols = Integer.parseInt(words[2]);
+			int mines = Integer.parseInt(words[3]);
+			if (rows <= 0 || cols <= 0 || (long) rows * cols > MAX_CELLS || mines < 0 || mines > (long) rows * cols)
+				throw new IllegalArgumentException("bad board size");
+			int seed = words.length == 5 ? Integer.parseInt(words[4]) : nextSeed();
+			game = new MineSweeper(seed, MineSweeper.Level.CUSTOM, rows, cols, mines);
+		}
+		long id = nextId.getAndIncrement();
+		shard(id).put(id, new Session(game));
+		return "OK " + id + " " + game.rowCount() + " " + game.colCount() + " " + game.mineCount();
+	}
+
+	/**
+	 * Draws a seed for a game created without one.
+	 * @return Seed.
+	 */
+	private int nextSeed(){
+		synchronized (seeds){
+			return seeds.nextInt();
+		}
+	}
+
+	/**
+	 * Clicks a cell and encodes what changed.
+	 * @param game Game, locked by the caller.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return Reply with the click result, the status and each opened cell as index:count.
+	 */
+	private static String click(MineSweeper game, int row, int col){
+		RevealDelta delta = game.clickDelta(row, col);
+		DynIntArr310 opened = delta.revealed();
+		StringBuilder reply = new StringBuilder(16 + opened.size() * 6);
+		reply.append("OK ").append(delta.result()).append(' ').append(game.getStatus());
+		int cols = game.colCount();
+		for (int i = 0; i < opened.size(); i++){
+			int cell = opened.get(i);
+			reply.append(' ').append(cell).append(':').append(game.getCount(cell / cols, cell % cols));
+		}
+		return reply.toString();
+	}
+
+	/**
+	 * Reports the metrics.
+	 * @return Reply with the session counts and count/mean/max microseconds per command.
+	 */
+	private String stats(){
+		StringBuilder reply = new StringBuilder("OK sessions=").append(sessionCount())
+			.append(" evicted=").append(evicted.sum());
+		for (int i = 0; i < COMMANDS.length; i++){
+			long n = counts[i].sum();
+			reply.append(' ').append(COMMANDS[i]).append('=').append(n).append('/')
+				.append(n == 0 ? 0 : nanos[i].sum() / n / 1000).append('/')
+				.append(maxNanos[i].get() / 1000);
+		}
+		return reply.toString();
+	}
+
+	/**
+	 * Picks the shard of a session.
+	 * @param id Session id.
+	 * @return Its map.
+	 */
+	private ConcurrentHashMap<Long, Session> shard(long id){
+		return shards[(int) (id & (SHARDS - 1))];
+	}
+
+	/**
+	 * Removes every session idle for longer than idleNanos.
+	 */
+	void evictIdle(){
+		long now = System.nanoTime();
+		for (ConcurrentHashMap<Long, Session> shard : shards)
+			for (Iterator<Session> it = shard.values().iterator(); it.hasNext(); )
+				if (now - it.next().lastUsed > idleNanos){
+					it.remove();
+					evicted.increment();
+				}
+	}
+
+	/**
+	 * Reports the live sessions.
+	 * @return Number of sessions.
+	 */
+	public int sessionCount(){
+		int n = 0;
+		for (ConcurrentHashMap<Long, Session> shard : shards)
+			n += shard.size();
+		return n;
+	}
+
+	/**
+	 * Reports the sessions evicted for being idle.
+	 * @return Evicted sessions.
+	 */
+	public long evictedCount() { return evicted.sum(); }
+
+	/**
+	 * Reports how many requests a command served.
+	 * @param command Command name.
+	 * @return Requests served, 0 for an unknown command.
+	 */
+	public long requestCount(String command){
+		for (int i = 0; i < COMMANDS.length; i++)
+			if (COMMANDS[i].equals(command))
+				return counts[i].sum();
+		return 0;
+	}
+
+	/**
+	 * Stops listening and drops every session.
+	 */
+	public void shutdown(){
+		try {
+			socket.close();
+		} catch (IOException e){
+			//already closed
+		}
+		sweeper.shutdownNow();
+		connections.shutdownNow();
+		for (ConcurrentHashMap<Long, Session> shard : shards)
+			shard.clear();
+	}
+
+	/**
+	 * Self-checks over loopback: deltas match a local game, thousands of sessions
+	 * are hosted and evicted when idle, and the metrics count every request.
+	 * @param args Not used.
+	 */
+	public static void main(String[] args) throws Exception {
+		MineServer server = new MineServer(0, 60_000);
+
+		//players on their own connections get the same deltas as a local game
+		int players = 16;
+		ExecutorService pool = Executors.newFixedThreadPool(players);
+		Future<?>[] done = new Future<?>[players];
+		boolean[] same = new boolean[players];
+		for (int p = 0; p < players; p++){
+			int player = p;
+			done[p] = pool.submit(() -> {
+				try (MineClient client = new MineClient(server.port())){
+					Random random = new Random(player);
+					boolean ok = true;
+					for (int g = 0; g < 20; g++){
+						int seed = random.nextInt();
+						long id = client.newGame(MineSweeper.Level.HARD, seed);
+						MineSweeper local = new MineSweeper(seed, MineSweeper.Level.HARD);
+						while (!local.isSolved() && !local.isExploded()){
+							int r = random.nextInt(16);
+							int c = random.nextInt(30);
+							MineClient.Reply reply = client.click(id, r, c);
+							int result = local.clickAt(r, c);
+							DynIntArr310 opened = local.getRevealed();
+							ok &= reply.result() == result && reply.status().equals(local.getStatus())
+								&& reply.cells().length == opened.size();
+							for (int i = 0; ok && i < opened.size(); i++){
+								int cell = opened.get(i);
+								ok &= reply.cells()[i] == cell && reply.counts()[i] == local.getCount(cell / 30, cell % 30);
+							}
+						}
+						client.close(id);
+					}
+					same[player] = ok;
+				}
+				return null;
+			});
+		}
+		for (Future<?> f : done)
+			f.get();
+		boolean all = true;
+		for (boolean ok : same)
+			all &= ok;
+		if (all && server.sessionCount() == 0){
+			System.out.println("Yay 1");
+		}
+
+		//thousands of sessions, then an idle sweep evicts all of them
+		try (MineClient client = new MineClient(server.port())){
+			for (int i = 0; i < 5000; i++)
+				client.newGame(MineSweeper.Level.EASY, i);
+		}
+		int hosted = server.sessionCount();
+		MineServer quick = new MineServer(0, 10);
+		try (MineClient client = new MineClient(quick.port())){
+			for (int i = 0; i < 1000; i++)
+				client.newGame(MineSweeper.Level.EASY, i);
+			Thread.sleep(200);
+			if (hosted == 5000 && quick.sessionCount() == 0 && quick.evictedCount() == 1000
+				&& client.send("CLICK 1 0 0").startsWith("ERR")){
+				System.out.println("Yay 2");
+			}
+		}
+
+		//every request is counted; bad requests get an error line
+		try (MineClient client = new MineClient(server.port())){
+			long clicks = server.requestCount("CLICK");
+			long id = client.newGame(MineSweeper.Level.TINY, 1);
+			client.click(id, 0, 0);
+			String stats = client.send("STATS");
+			if (server.requestCount("CLICK") == clicks + 1 && server.requestCount("NEW") == players * 20 + 5001
+				&& stats.startsWith("OK sessions=5001") && client.send("NEW").startsWith("ERR")
+				&& client.send("JUMP 1").startsWith("ERR") && client.send("NEW CUSTOM 1").startsWith("ERR")
+				&& client.send("NEW 70000 70000 1 5").equals("ERR bad board size")
+				&& client.send("NEW 1001 1000 1 5").equals("ERR bad board size")
+				&& client.send("NEW 1000 1000 1 5").startsWith("OK")){
+				System.out.println("Yay 3");
+			}
+		}
+		pool.shutdown();
+		server.shutdown();
+		quick.shutdown();
+	}
+}
@@ -0,0 +1,235 @@
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Headless batch simulator: plays many MineSweeper games with a MoveStrategy and
+ * aggregates the results in a GameStats.
+ *
+ * Games are split into index ranges across a ForkJoinPool. Every leaf task fills
+ * its own GameStats and the results are merged as the tasks join, so workers never
+ * share a counter. Game i is seeded from a hash of (masterSeed, i) alone, and its
+ * strategy gets its own Random from the same hash, so the totals for a master seed
+ * are the same for any number of threads.
+ */
+public class MineSimulator {
+
+	/**
+	 * Games below which a range is played by one task instead of being split.
+	 */
+	private static final int SPLIT_THRESHOLD = 64;
+
+	/**
+	 * Master seed all game seeds are derived from.
+	 */
+	private final long masterSeed;
+
+	/**
+	 * Pool the games run on.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Constructor.
+	 * @param masterSeed Master seed all game seeds are derived from.
+	 * @param parallelism Number of worker threads.
+	 */
+	public MineSimulator(long masterSeed, int parallelism){
+		this.masterSeed = masterSeed;
+		this.pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * Mixes a 64-bit value (the SplitMix64 finalizer).
+	 * @param z Value to mix.
+	 * @return Mixed value.
+	 */
+	static long mix(long z){
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Derives the seed of one game.
+	 * @param masterSeed Master seed.
+	 * @param gameIndex Index of the game in the batch.
+	 * @return Seed of the game's board.
+	 */
+	public static int gameSeed(long masterSeed, long gameIndex){
+		return (int) mix(mix(masterSeed) + gameIndex * 0x9e3779b97f4a7c15L);
+	}
+
+	/**
+	 * Plays games of a standard level.
+	 * @param level Level of the games, not CUSTOM.
+	 * @param games Number of games.
+	 * @param strategies Creates a strategy for each game.
+	 * @return Results of the games.
+	 */
+	public GameStats run(MineSweeper.Level level, long games, Supplier<? extends MoveStrategy> strategies){
+		if (level == MineSweeper.Level.CUSTOM)
+			throw new IllegalArgumentException("Custom level needs a board size");
+		return pool.invoke(new Batch(level, 0, 0, 0, strategies, 0, games));
+	}
+
+	/**
+	 * Plays games of a custom size.
+	 * @param rowCount Number of rows.
+	 * @param colCount Number of columns.
+	 * @param mineCount Number of mines.
+	 * @param games Number of games.
+	 * @param strategies Creates a strategy for each game.
+	 * @return Results of the games, recorded under CUSTOM.
+	 */
+	public GameStats run(int rowCount, int colCount, int mineCount, long games, Supplier<? extends MoveStrategy> strategies){
+		return pool.invoke(new Batch(MineSweeper.Level.CUSTOM, rowCount, colCount, mineCount, strategies, 0, games));
+	}
+
+	/**
+	 * Stops the worker threads.
+	 */
+	public void shutdown(){
+		pool.shutdown();
+	}
+
+	/**
+	 * Plays one game to the end.
+	 * @param game Fresh game.
+	 * @param strategy Strategy to play with.
+	 * @param random Random numbers for the strategy.
+	 * @param level Level the result is recorded under.
+	 * @param stats Counters to record the result in.
+	 */
+	static void play(MineSweeper game, MoveStrategy strategy, Random random,
+			MineSweeper.Level level, GameStats stats){
+		int cols = game.colCount();
+		long clicks = 0;
+		long opened = 0;
+		long maxMoves = (long) game.rowCount() * cols;
+		while (!game.isSolved() && !game.isExploded() && clicks < maxMoves){
+			int index = strategy.nextMove(game, random);
+			if (index < 0)
+				break;
+			int result = game.clickAt(index / cols, index % cols);
+			clicks++;
+			if (result >= 0)
+				opened += game.getRevealed().size();
+		}
+		stats.record(level, game, clicks, opened);
+	}
+
+	/**
+	 * Plays the games with indexes in [from, to), splitting the range while it is large.
+	 */
+	private class Batch extends RecursiveTask<GameStats> {
+
+		/**
+		 * Serialization version, required by RecursiveTask.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Level the games are recorded under.
+		 */
+		private final MineSweeper.Level level;
+
+		/**
+		 * Rows, columns and mines of a CUSTOM board, unused otherwise.
+		 */
+		private final int rowCount, colCount, mineCount;
+
+		/**
+		 * Creates a strategy for each game.
+		 */
+		private final Supplier<? extends MoveStrategy> strategies;
+
+		/**
+		 * First game index, inclusive.
+		 */
+		private final long from;
+
+		/**
+		 * Last game index, exclusive.
+		 */
+		private final long to;
+
+		/**
+		 * Constructor.
+		 * @param level Level of the games.
+		 * @param rowCount Rows of a CUSTOM board.
+		 * @param colCount Columns of a CUSTOM board.
+		 * @param mineCount Mines of a CUSTOM board.
+		 * @param strategies Creates a strategy for each game.
+		 * @param from First game index, inclusive.
+		 * @param to Last game index, exclusive.
+		 */
+		Batch(MineSweeper.Level level, int rowCount, int colCount, int mineCount,
+				Supplier<? extends MoveStrategy> strategies, long from, long to){
+			this.level = level;
+			this.rowCount = rowCount;
+			this.colCount = colCount;
+			this.mineCount = mineCount;
+			this.strategies = strategies;
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * Plays the range, or splits it in two and merges the halves.
+		 * @return Results of the games in the range.
+		 */
+		@Override
+		protected GameStats compute(){
+			if (to - from > SPLIT_THRESHOLD){
+				long mid = (from + to) >>> 1;
+				Batch left = new Batch(level, rowCount, colCount, mineCount, strategies, from, mid);
+				Batch right = new Batch(level, rowCount, colCount, mineCount, strategies, mid, to);
+				left.fork();
+				GameStats stats = right.compute();
+				return stats.merge(left.join());
+			}
+
+			GameStats stats = new GameStats();
+			for (long i = from; i < to; i++){
+				int seed = gameSeed(masterSeed, i);
+				MineSweeper game = level == MineSweeper.Level.CUSTOM
+					? new MineSweeper(seed, level, rowCount, colCount, mineCount)
+					: new MineSweeper(seed, level);
+				play(game, strategies.get(), new Random(mix(seed)), level, stats);
+			}
+			return stats;
+		}
+	}
+
+	/**
+	 * Runs a batch and checks that the totals do not depend on the thread count.
+	 * @param args Optional: number of games per level (default 2000).
+	 */
+	public static void main(String[] args){
+		long games = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+		int cores = Runtime.getRuntime().availableProcessors();
+
+		MineSimulator single = new MineSimulator(42, 1);
+		MineSimulator multi = new MineSimulator(42, Math.max(4, cores));
+
+		GameStats one = new GameStats();
+		GameStats many = new GameStats();
+		for (MineSweeper.Level level : new MineSweeper.Level[] {
+				MineSweeper.Level.TINY, MineSweeper.Level.EASY, MineSweeper.Level.MEDIUM, MineSweeper.Level.HARD }){
+			one.merge(single.run(level, games, () -> MoveStrategy.RANDOM));
+			many.merge(multi.run(level, games, () -> MoveStrategy.RANDOM));
+		}
+		if (one.equals(many) && one.games(MineSweeper.Level.HARD) == games)
+			System.out.println("Yay 1");
+
+		GameStats custom = multi.run(30, 30, 20, 500, () -> MoveStrategy.RANDOM);
+		if (custom.equals(single.run(30, 30, 20, 500, () -> MoveStrategy.RANDOM))
+				&& custom.wins(MineSweeper.Level.CUSTOM) + custom.losses(MineSweeper.Level.CUSTOM) == 500)
+			System.out.println("Yay 2");
+
+		single.shutdown();
+		multi.shutdown();
+	}
+}
@@ -0,0 +1,531 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Finds cells of a MineSweeper game that are certainly safe or certainly mines,
+ * looking only at what a player sees: isVisible, getCount and isFlagged. Flags
+ * are not taken as evidence, since the player may have placed them wrongly.
+ *
+ * Two rules are applied to the numbered cells on the frontier:
+ *   - single cell: if the mines still missing around a number are 0, its unknown
+ *     neighbors are safe; if they equal the unknown neighbors, all are mines.
+ *   - pair: for two numbers a and b that share a neighbor, if the mines b still
+ *     misses minus those a misses equal the cells only b touches, those cells are
+ *     mines and the cells only a touches are safe. This includes the subset rule.
+ *
+ * The solver is incremental: reveal() queues only the opened cells and their
+ * visible neighbors, and solve() reworks only queued cells, queueing again the
+ * numbers next to any cell it decides. Nothing is rescanned per move.
+ *
+ * Neighbors come from the game's topology, so square, torus and hexagonal
+ * boards are all solved by the same rules.
+ */
+public class MineSolver {
+
+	/**
+	 * Cell not decided yet.
+	 */
+	private static final byte UNKNOWN = 0;
+
+	/**
+	 * Cell known to be safe (opened, or deduced).
+	 */
+	private static final byte SAFE = 1;
+
+	/**
+	 * Cell known to have a mine.
+	 */
+	private static final byte MINE = 2;
+
+	/**
+	 * Game being solved.
+	 */
+	private final MineSweeper game;
+
+	/**
+	 * Number of rows of the board.
+	 */
+	private final int rowCount;
+
+	/**
+	 * Number of columns of the board.
+	 */
+	private final int colCount;
+
+	/**
+	 * Neighbors of every cell, from the game's topology.
+	 */
+	private final Topology.Table table;
+
+	/**
+	 * What is known about each cell, in row-major order.
+	 */
+	private final byte[] known;
+
+	/**
+	 * Whether each cell is in the work queue.
+	 */
+	private final boolean[] queued;
+
+	/**
+	 * Visible numbered cells to look at again.
+	 */
+	private final DynIntArr310 queue = new DynIntArr310();
+
+	/**
+	 * Hidden cells deduced safe and not yet handed out by nextSafe().
+	 */
+	private final DynIntArr310 safeCells = new DynIntArr310();
+
+	/**
+	 * Number of cells deduced to have a mine.
+	 */
+	private int mineCount;
+
+	/**
+	 * Unknown neighbors of the cell being worked on.
+	 */
+	private final int[] unknownA = new int[8];
+
+	/**
+	 * Unknown neighbors of the other cell of a pair.
+	 */
+	private final int[] unknownB = new int[8];
+
+	/**
+	 * Neighbor buffer.
+	 */
+	private final int[] nbrs = new int[8];
+
+	/**
+	 * Neighbor buffer for mark(), which runs while nbrs may be in use.
+	 */
+	private final int[] around = new int[8];
+
+	/**
+	 * Neighbors of the cell being worked on, while its pairs are looked for.
+	 */
+	private final int[] ring = new int[8];
+
+	/**
+	 * Neighbors of one cell of the ring.
+	 */
+	private final int[] outer = new int[8];
+
+	/**
+	 * Numbers that share a neighbor with the cell being worked on, with repeats.
+	 */
+	private final int[] partners = new int[64];
+
+	/**
+	 * Constructor, reads the visible cells of the game once.
+	 * @param game Game to solve.
+	 */
+	public MineSolver(MineSweeper game){
+		this.game = game;
+		rowCount = game.rowCount();
+		colCount = game.colCount();
+		table = game.getTopology().table(rowCount, colCount);
+		known = new byte[rowCount * colCount];
+		queued = new boolean[rowCount * colCount];
+		for (int index = 0; index < known.length; index++)
+			if (game.isVisible(index / colCount, index % colCount)){
+				known[index] = SAFE;
+				enqueue(index);
+			}
+	}
+
+	/**
+	 * Takes in cells the game has opened since the last call.
+	 * @param cells Flat row-major indexes of the opened cells.
+	 */
+	public void reveal(DynIntArr310 cells){
+		//an exploded mine is not a number, and nothing is left to solve
+		if (game.isExploded())
+			return;
+		for (int i = 0; i < cells.size(); i++){
+			int index = cells.get(i);
+			known[index] = SAFE;
+			enqueue(index);
+			int n = neighbors(index, nbrs);
+			for (int k = 0; k < n; k++)
+				enqueue(nbrs[k]);
+		}
+	}
+
+	/**
+	 * Takes in the cells opened by a move. Flag changes carry no information.
+	 * @param delta Changes made by the move.
+	 */
+	public void update(RevealDelta delta){
+		reveal(delta.revealed());
+	}
+
+	/**
+	 * Applies the rules to the queued cells until nothing more can be decided.
+	 * @return Number of cells decided by this call.
+	 */
+	public int solve(){
+		int decided = 0;
+		while (queue.size() > 0){
+			int index = queue.removeLast();
+			queued[index] = false;
+			decided += solveCell(index);
+		}
+		return decided;
+	}
+
+	/**
+	 * Hands out a hidden cell known to be safe.
+	 * @return Flat index of a safe hidden cell, or -1 if none is known.
+	 */
+	public int nextSafe(){
+		while (safeCells.size() > 0){
+			int index = safeCells.removeLast();
+			if (!game.isVisible(index / colCount, index % colCount))
+				return index;
+		}
+		return -1;
+	}
+
+	/**
+	 * Reports whether a cell is known to be safe, opened or not.
+	 * @param index Flat index of the cell.
+	 * @return true if the cell has no mine for sure.
+	 */
+	public boolean isKnownSafe(int index) { return known[index] == SAFE; }
+
+	/**
+	 * Reports whether a cell is known to have a mine.
+	 * @param index Flat index of the cell.
+	 * @return true if the cell has a mine for sure.
+	 */
+	public boolean isKnownMine(int index) { return known[index] == MINE; }
+
+	/**
+	 * Reports how many mines have been deduced.
+	 * @return Number of cells known to have a mine.
+	 */
+	public int knownMineCount() { return mineCount; }
+
+	/**
+	 * Queues a visible numbered cell for another look.
+	 * @param index Flat index of the cell.
+	 */
+	private void enqueue(int index){
+		if (queued[index] || !game.isVisible(index / colCount, index % colCount)
+				|| game.getCount(index / colCount, index % colCount) <= 0)
+			return;
+		queued[index] = true;
+		queue.add(index);
+	}
+
+	/**
+	 * Lists the neighbors of a cell in the game's topology.
+	 * @param index Flat index of the cell.
+	 * @param out Array of at least 8 slots to write the neighbors to.
+	 * @return Number of neighbors written, in row-major order.
+	 */
+	private int neighbors(int index, int[] out){
+		return table.neighbors(index, out);
+	}
+
+	/**
+	 * Collects the unknown neighbors of a numbered cell.
+	 * @param index Flat index of a visible numbered cell.
+	 * @param out Array of 8 slots for the unknown neighbors, in row-major order.
+	 * @return Number of unknown neighbors in the low 4 bits, and the mines still
+	 * missing around the cell shifted left by 4.
+	 */
+	private int unknowns(int index, int[] out){
+		int n = neighbors(index, nbrs);
+		int mines = 0;
+		int count = 0;
+		for (int k = 0; k < n; k++){
+			byte state = known[nbrs[k]];
+			if (state == MINE)
+				mines++;
+			else if (state == UNKNOWN)
+				out[count++] = nbrs[k];
+		}
+		int missing = game.getCount(index / colCount, index % colCount) - mines;
+		return count | missing << 4;
+	}
+
+	/**
+	 * Applies the single-cell and pair rules around one numbered cell.
+	 * @param index Flat index of the cell.
+	 * @return Number of cells decided.
+	 */
+	private int solveCell(int index){
+		int a = unknowns(index, unknownA);
+		int sizeA = a & 15;
+		int missingA = a >> 4;
+		if (sizeA == 0)
+			return 0;
+		if (missingA == 0)
+			return markAll(unknownA, sizeA, SAFE);
+		if (missingA == sizeA)
+			return markAll(unknownA, sizeA, MINE);
+
+		//pairs with the numbers that share a neighbor with this one, in row-major order
+		int p = 0;
+		int m = neighbors(index, ring);
+		for (int k = 0; k < m; k++){
+			int o = neighbors(ring[k], outer);
+			for (int j = 0; j < o; j++)
+				if (outer[j] != index)
+					partners[p++] = outer[j];
+		}
+		Arrays.sort(partners, 0, p);
+		for (int i = 0; i < p; i++){
+			int other = partners[i];
+			int r = other / colCount;
+			int c = other % colCount;
+			if ((i > 0 && partners[i - 1] == other) || !game.isVisible(r, c) || game.getCount(r, c) <= 0)
+				continue;
+			int b = unknowns(other, unknownB);
+			int sizeB = b & 15;
+			if (sizeB == 0)
+				continue;
+			int decided = solvePair(unknownA, sizeA, missingA, unknownB, sizeB, b >> 4);
+			if (decided == 0)
+				decided = solvePair(unknownB, sizeB, b >> 4, unknownA, sizeA, missingA);
+			if (decided > 0){
+				//the cell may have more to give, look at it again
+				enqueue(index);
+				return decided;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Pair rule: if b misses exactly as many more mines than a as there are cells
+	 * only b touches, those cells are mines and the cells only a touches are safe.
+	 * @param cellsA Unknown neighbors of a, in row-major order.
+	 * @param sizeA Number of unknown neighbors of a.
+	 * @param missingA Mines a still misses.
+	 * @param cellsB Unknown neighbors of b, in row-major order.
+	 * @param sizeB Number of unknown neighbors of b.
+	 * @param missingB Mines b still misses.
+	 * @return Number of cells decided.
+	 */
+	private int solvePair(int[] cellsA, int sizeA, int missingA, int[] cellsB, int sizeB, int missingB){
+		int shared = 0;
+		for (int i = 0, j = 0; i < sizeA && j < sizeB; ){
+			if (cellsA[i] == cellsB[j]){
+				shared++;
+				i++;
+				j++;
+			}
+			else if (cellsA[i] < cellsB[j])
+				i++;
+			else
+				j++;
+		}
+		if (shared == 0)
+			return 0;
+
+		int onlyB = sizeB - shared;
+		int onlyA = sizeA - shared;
+		if (missingB - missingA != onlyB || onlyA + onlyB == 0)
+			return 0;
+		return markExcept(cellsB, sizeB, cellsA, sizeA, MINE) + markExcept(cellsA, sizeA, cellsB, sizeB, SAFE);
+	}
+
+	/**
+	 * Marks the cells of one list that are not in another.
+	 * @param cells Cells to mark, in row-major order.
+	 * @param size Number of cells.
+	 * @param except Cells to skip, in row-major order.
+	 * @param exceptSize Number of cells to skip.
+	 * @param state SAFE or MINE.
+	 * @return Number of cells marked.
+	 */
+	private int markExcept(int[] cells, int size, int[] except, int exceptSize, byte state){
+		int marked = 0;
+		for (int i = 0, j = 0; i < size; i++){
+			while (j < exceptSize && except[j] < cells[i])
+				j++;
+			if (j < exceptSize && except[j] == cells[i])
+				continue;
+			marked += mark(cells[i], state);
+		}
+		return marked;
+	}
+
+	/**
+	 * Marks all cells of a list.
+	 * @param cells Cells to mark.
+	 * @param size Number of cells.
+	 * @param state SAFE or MINE.
+	 * @return Number of cells marked.
+	 */
+	private int markAll(int[] cells, int size, byte state){
+		int marked = 0;
+		for (int i = 0; i < size; i++)
+			marked += mark(cells[i], state);
+		return marked;
+	}
+
+	/**
+	 * Records a deduction and queues the numbers around the cell.
+	 * @param index Flat index of the cell.
+	 * @param state SAFE or MINE.
+	 * @return 1 if the cell was unknown, 0 otherwise.
+	 */
+	private int mark(int index, byte state){
+		if (known[index] != UNKNOWN)
+			return 0;
+		known[index] = state;
+		if (state == SAFE)
+			safeCells.add(index);
+		else
+			mineCount++;
+		int n = neighbors(index, around);
+		for (int k = 0; k < n; k++)
+			enqueue(around[k]);
+		return 1;
+	}
+
+	/**
+	 * Creates a strategy that opens cells the solver proves safe and otherwise
+	 * guesses a random cell not known to be a mine.
+	 * @return A new strategy, meant for one game.
+	 */
+	public static MoveStrategy strategy(){
+		return new MoveStrategy() {
+			/**
+			 * Solver of the current game, created on the first move.
+			 */
+			private MineSolver solver;
+
+			@Override
+			public int nextMove(MineSweeper game, Random random){
+				if (solver == null || solver.game != game)
+					solver = new MineSolver(game);
+				else
+					solver.reveal(game.getRevealed());
+				solver.solve();
+				int index = solver.nextSafe();
+				return index >= 0 ? index : solver.guess(random);
+			}
+		};
+	}
+
+	/**
+	 * Picks a random hidden cell that is not known to be a mine.
+	 * @param random Random numbers to pick with.
+	 * @return Flat index of the cell, or -1 if there is none.
+	 */
+	int guess(Random random){
+		int cells = known.length;
+		for (int tries = 0; tries < 16; tries++){
+			int index = random.nextInt(cells);
+			if (known[index] == UNKNOWN)
+				return index;
+		}
+		int start = random.nextInt(cells);
+		for (int k = 0; k < cells; k++){
+			int index = (start + k) % cells;
+			if (known[index] == UNKNOWN)
+				return index;
+		}
+		return -1;
+	}
+
+	/**
+	 * Tests the MineSolver class.
+	 * @param args Not used.
+	 */
+	public static void main(String[] args){
+		Random random = new Random(7);
+
+		//every deduction matches the board, and incremental equals a fresh scan
+		boolean sound = true;
+		boolean same = true;
+		for (int g = 0; g < 300; g++){
+			MineSweeper game = new MineSweeper(random.nextInt(), MineSweeper.Level.HARD);
+			MineSolver solver = new MineSolver(game);
+			while (!game.isSolved() && !game.isExploded()){
+				int index = solver.nextSafe();
+				if (index < 0)
+					index = solver.guess(random);
+				RevealDelta delta = game.clickDelta(index / game.colCount(), index % game.colCount());
+				solver.update(delta);
+				solver.solve();
+			}
+			MineSolver fresh = new MineSolver(game);
+			fresh.solve();
+			for (int i = 0; i < game.rowCount() * game.colCount(); i++){
+				boolean mine = game.hasMine(i / game.colCount(), i % game.colCount());
+				if ((solver.isKnownMine(i) && !mine) || (solver.isKnownSafe(i) && mine && !game.isExploded()))
+					sound = false;
+				if (!game.isExploded() && solver.isKnownMine(i) != fresh.isKnownMine(i))
+					same = false;
+			}
+		}
+		if (sound)
+			System.out.println("Yay 1");
+		if (same)
+			System.out.println("Yay 2");
+
+		//numbers 1 1 2 1 under four hidden cells: no single rule applies, the pair rule does
+		MineSweeper game = new MineSweeper(1, MineSweeper.Level.CUSTOM, 2, 4, 2);
+		DynGrid310<Cell> board = MineSweeper.genEmptyBoard(2, 4);
+		board.get(0, 1).setMine();
+		board.get(0, 3).setMine();
+		int[] counts = { 1, 1, 2, 1, 1, 1, 2, 1 };
+		for (int i = 0; i < counts.length; i++)
+			board.get(i / 4, i % 4).setCount(counts[i]);
+		game.setBoard(board, 2);
+		for (int col = 0; col < 4; col++)
+			game.clickAt(1, col);
+		MineSolver solver = new MineSolver(game);
+		solver.solve();
+		int safe = solver.nextSafe();
+		if (solver.isKnownMine(1) && solver.isKnownMine(3) && solver.isKnownSafe(0) && solver.isKnownSafe(2)
+				&& (safe == 0 || safe == 2) && solver.knownMineCount() == 2)
+			System.out.println("Yay 3");
+
+		//the solver strategy wins far more than random clicks
+		MineSimulator simulator = new MineSimulator(42, 4);
+		GameStats solved = simulator.run(MineSweeper.Level.EASY, 2000, MineSolver::strategy);
+		GameStats guessed = simulator.run(MineSweeper.Level.EASY, 2000, () -> MoveStrategy.RANDOM);
+		if (solved.winRate(MineSweeper.Level.EASY) > 5 * guessed.winRate(MineSweeper.Level.EASY) + 0.1)
+			System.out.println("Yay 4");
+		simulator.shutdown();
+
+		//on torus and hex boards, cells handed out as safe never explode and deduced mines are mines
+		boolean shaped = true;
+		int safeClicks = 0;
+		for (int g = 0; g < 400; g++){
+			Topology topology = g % 2 == 0 ? Topology.TORUS : Topology.HEX;
+			game = new MineSweeper(g, MineSweeper.Level.CUSTOM, 16, 30, 99, topology);
+			int start = 0;
+			while (start < 16 * 30 && (game.hasMine(start / 30, start % 30) || game.getCount(start / 30, start % 30) != 0))
+				start++;
+			if (start == 16 * 30)
+				continue;
+			game.clickAt(start / 30, start % 30);
+			solver = new MineSolver(game);
+			while (!game.isSolved()){
+				solver.solve();
+				int index = solver.nextSafe();
+				if (index < 0)
+					break;
+				game.clickAt(index / 30, index % 30);
+				safeClicks++;
+				shaped &= !game.isExploded();
+				if (game.isExploded())
+					break;
+				solver.reveal(game.getRevealed());
+			}
+			for (int i = 0; i < 16 * 30; i++)
+				shaped &= !solver.isKnownMine(i) || game.hasMine(i / 30, i % 30);
+		}
+		if (shaped && safeClicks > 1000)
+			System.out.println("Yay 5");
+	}
+}
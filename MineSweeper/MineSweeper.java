@@ -1,4 +1,6 @@
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * The implementation of a Minesweeper game.
@@ -91,9 +93,14 @@ public class MineSweeper{
     private static int MINES_HARD = 99;
 
     /**
-     * The 2d board of cells.
+     * The 2d board of cells, packed one byte per cell in row-major order.
      */
-    private DynGrid310<Cell> board;
+    private PackedBoard board;
+
+    /**
+     * Cell views of the board handed out by getBoard(), built on first request.
+     */
+    private DynGrid310<Cell> boardView;
 
     /**
      * Number of rows of the board.
@@ -164,6 +171,7 @@ public class MineSweeper{
         //if level is customized, need more details (number of rows/columns/mines)
         if (level==Level.CUSTOM)
             throw new IllegalArgumentException("Customized games need more parameters!");
+        this.level = level;
             
         //set number of rows, columns, mines based on the pre-defined levels
         switch(level){
@@ -195,7 +203,7 @@ public class MineSweeper{
 		}
         
         //create an empty board of the needed size
-        board = genEmptyBoard(rowCount, colCount);
+        board = new PackedBoard(rowCount, colCount);
         
         //place mines, and initialize cells
         initBoard(seed);
@@ -210,9 +218,24 @@ public class MineSweeper{
      * @param mineCount Amount of mines in the game.
      */
     public MineSweeper(int seed, Level level, int rowCount, int colCount, int mineCount){
+        this(seed, level, rowCount, colCount, mineCount, Topology.SQUARE);
+    }
+
+    /**
+     * Constructor for customized games on any topology: the rules of clickAt,
+     * flagAt and the win check are the same, only which cells touch changes.
+     * @param seed Seed for the random numbers.
+     * @param level Level of the game, should only be Custom.
+     * @param rowCount Amount of rows in the game.
+     * @param colCount Amount of columns in the game.
+     * @param mineCount Amount of mines in the game.
+     * @param topology How cells touch: square, torus or hexagonal.
+     */
+    public MineSweeper(int seed, Level level, int rowCount, int colCount, int mineCount, Topology topology){
         
         if (level != Level.CUSTOM)
         	throw new IllegalArgumentException("Only customized games need more parameters!");
+        this.level = level;
         
         //set number of rows/columns/mines
         //assume all numbers are valid (check MineGUI for additional checking code)	
@@ -221,60 +244,115 @@ public class MineSweeper{
         this.mineTotalCount = mineCount;
         
         
-        //create an empty board of the needed size: you implement this method
-        board = genEmptyBoard(rowCount, colCount);
+        //create an empty board of the needed size
+        board = new PackedBoard(rowCount, colCount, topology);
         
         //place mines, and initialize cells: you implement part of this method
        	initBoard(seed);
         
     }
        
+    /**
+     * Constructor for a standard level that can optionally be solved without guessing.
+     * A no-guess game searches boards seeded from seed with NoGuessGenerator and
+     * opens the start cell; getSeed() then reports the board seed, and replaying it
+     * with MineSweeper(getSeed(), level) and clicking the start cell gives the same game.
+     * @param seed Seed for the random numbers, or master seed of a no-guess search.
+     * @param level Level of the game (Tiny, Easy, Medium, Hard).
+     * @param noGuess Whether the board must be solvable from the start cell without guessing.
+     */
+    public MineSweeper(int seed, Level level, boolean noGuess){
+        this(noGuess ? NoGuessGenerator.find(seed, level) : seed, level);
+        if (noGuess)
+            openStart();
+    }
+
+    /**
+     * Constructor for a custom game that can optionally be solved without guessing.
+     * @param seed Seed for the random numbers, or master seed of a no-guess search.
+     * @param level Level of the game, should only be Custom.
+     * @param rowCount Amount of rows in the game.
+     * @param colCount Amount of columns in the game.
+     * @param mineCount Amount of mines in the game.
+     * @param noGuess Whether the board must be solvable from the start cell without guessing.
+     */
+    public MineSweeper(int seed, Level level, int rowCount, int colCount, int mineCount, boolean noGuess){
+        this(noGuess ? NoGuessGenerator.find(seed, level, rowCount, colCount, mineCount,
+            ForkJoinPool.commonPool()) : seed, level, rowCount, colCount, mineCount);
+        if (noGuess)
+            openStart();
+    }
+
+    /**
+     * Opens the start cell of a no-guess board.
+     */
+    private void openStart(){
+        int start = NoGuessGenerator.startCell(rowCount, colCount);
+        clickAt(start / colCount, start % colCount);
+    }
+
     /**
      * Method to initialize the game, including placing mines. Should be invoked after creating an empty board.
+     * Mines are placed by MinePlacer from new Random(seed), which keeps the boards of existing
+     * seeds whenever no more than half of the cells are mines.
      * @param seed Seed for the random number.
      */
     public void initBoard(int seed){
         
         //use seed to initialize a random number sequence
+        this.seed = seed;
         Random random = new Random(seed);
         
-        //randomly place mines on board
-        int mineNum = 0;
-        for ( ;mineNum<mineTotalCount;){
-        
-            //generate next (row, col)
-            int row = random.nextInt(rowCount);
-            int col = random.nextInt(colCount);
-            
-             
-            //cell already has a mine: try again
-            if (hasMine(row, col)){
-                continue;
-            }
-            
-            //place mine
-            board.get(row,col).setMine();
-            mineNum++;
+        //randomly place mines on board, with a bounded number of draws
+        DynIntArr310 mines = MinePlacer.place(random, rowCount, colCount, mineTotalCount);
+        for (int i=0; i<mines.size(); i++){
+            board.setMine(mines.get(i));
         }
         //System.out.println(board);
         
-        //calculate nbr counts for each cell
-        for (int row=0; row<rowCount; row++){
-            for (int col=0; col<colCount; col++){
-            
-                int count = countNbrMines(row, col);
-                board.get(row,col).setCount(count);
-            }
-        }
+        //calculate nbr counts for each cell from the mines
+        board.countMines(mines);
         
         //initialize other game settings   
         status = Status.INIT;
            
         flaggedCount = 0;
         clickedCount = 0;
+        if (history != null)
+            history.clear();
 
     }
     	
+    /**
+     * Reports the seed the board was built from.
+     * @return Seed passed to initBoard.
+     */
+    public int getSeed() { return seed; }
+
+    /**
+     * Reports the level the game was created with.
+     * @return Level of the game.
+     */
+    public Level getLevel() { return level; }
+
+    /**
+     * Reports how the cells of the board touch each other.
+     * @return Topology of the board.
+     */
+    public Topology getTopology() { return board.topology(); }
+
+    /**
+     * Reports how many safe cells have been opened.
+     * @return Number of opened cells without a mine.
+     */
+    public int clickedCount() { return clickedCount; }
+
+    /**
+     * Reports how many cells are flagged.
+     * @return Number of flagged cells.
+     */
+    public int flaggedCount() { return flaggedCount; }
+
     /**
      * Reports number of rows.
      * @return Rows.
@@ -308,15 +386,15 @@ public class MineSweeper{
         
         //header of column indexes
         sb.append("- |");
-        for (int j=0; j<board.getNumCol(); j++){
+        for (int j=0; j<colCount; j++){
 			sb.append(j +"|");
 		}
         sb.append("\n");
         
-    	for(int i=0; i<board.getNumRow(); i++){
+    	for(int i=0; i<rowCount; i++){
             sb.append(i+" |");
-    		for (int j=0;j<board.getNumCol(); j++){
-      			sb.append(board.get(i,j).toString());
+    		for (int j=0;j<colCount; j++){
+      			sb.append(PackedCell.toString(board.state(board.index(i,j))));
       		    sb.append("|");
       		}
       		sb.append("\n");
@@ -358,8 +436,7 @@ public class MineSweeper{
             return false;
         }
  
-        Cell cell = board.get(row, col);
-        return (cell.isFlagged());
+        return board.isFlagged(board.index(row, col));
     }
     
     /**
@@ -374,8 +451,7 @@ public class MineSweeper{
             return false;
         }
  
-        Cell cell = board.get(row, col);
-        return (cell.visible());               
+        return board.isVisible(board.index(row, col));               
     }
     
     /**
@@ -390,8 +466,7 @@ public class MineSweeper{
             return false;
         }
  
-        Cell cell = board.get(row, col);
-        return (cell.hasMine());               
+        return board.hasMine(board.index(row, col));               
     }
     
     /**
@@ -406,8 +481,7 @@ public class MineSweeper{
             return -2;
         }
  
-        Cell cell = board.get(row, col);
-        return (cell.getCount());                    
+        return board.getCount(board.index(row, col));                    
     }
     
     //******************************************************
@@ -424,6 +498,12 @@ public class MineSweeper{
     	return mineTotalCount-flaggedCount; 
     	
     }
+
+    /**
+     * Reports how many mines the board has in total, flagged or not.
+     * @return Number of mines on the board.
+     */
+    public int mineCount() { return mineTotalCount; }
     
     /**
      * Reports current game status.
@@ -441,10 +521,14 @@ public class MineSweeper{
     //******************************************************
 
     /**
-     * Returns the game board.
+     * Returns the game board as a grid of Cell views backed by the packed board.
      * @return Game board.
      */
-    public DynGrid310<Cell> getBoard(){ return board;}
+    public DynGrid310<Cell> getBoard(){
+        if (boardView == null)
+            boardView = board.toGrid();
+        return boardView;
+    }
 
     /**
      * Sets game board.
@@ -452,12 +536,13 @@ public class MineSweeper{
      * @param mineCount Number of mines.
      */
     public void setBoard(DynGrid310<Cell> newBoard, int mineCount) {
-		//set board
-		this.board = newBoard;
+		//set board: copy the cells into packed form
+		this.board = PackedBoard.fromGrid(newBoard);
+		boardView = null;
 		
 		//set size
-		rowCount = board.getNumRow();
-		colCount = board.getNumCol();
+		rowCount = board.rowCount();
+		colCount = board.colCount();
 		
         //set other features
         status = Status.INIT;
@@ -465,6 +550,8 @@ public class MineSweeper{
         flaggedCount = 0;
         clickedCount = 0;
         mineTotalCount = mineCount;
+        if (history != null)
+            history.clear();
 	}
 
     //******************************************************
@@ -479,6 +566,53 @@ public class MineSweeper{
 
     // ADD MORE PRIVATE MEMBERS HERE IF NEEDED!
 
+    /**
+     * Flat indexes of the cells opened by the last clickAt, in the order they were opened.
+     */
+    private DynIntArr310 revealed = new DynIntArr310();
+
+    /**
+     * Seed the board was built from.
+     */
+    private int seed;
+
+    /**
+     * Level the game was created with.
+     */
+    private Level level;
+
+    /**
+     * Whether the first click moves mines out of the 3x3 area around it.
+     */
+    private boolean firstClickSafe;
+
+    /**
+     * Random cells tried for a moved mine before scanning for one.
+     */
+    private static final int RELOCATE_TRIES = 64;
+
+    /**
+     * Scratch buffer for neighbor indexes.
+     */
+    private final int[] nbrs = new int[8];
+
+    /**
+     * Zero-count regions of the board once threeBV() built them, else null; stale
+     * once a mine or count changes.
+     */
+    private ZeroRegionIndex zeroIndex;
+
+    /**
+     * Moves that can be undone and redone, or null when undo is off.
+     */
+    private MoveHistory history;
+
+    /**
+     * Bytes of opened-cell runs the history keeps unless told otherwise: about a
+     * hundred cascades over a 1000x1000 board.
+     */
+    public static final long DEFAULT_HISTORY_BUDGET = 4L << 20;
+
     //*******************************************************
     //******* Methods to support board initialization *******
     //*******************************************************
@@ -525,73 +659,217 @@ public class MineSweeper{
         // O(1)
         if(!board.isValidCell(row, col))
     	    return -2;
-        if(hasMine(row, col))
+        int index = board.index(row, col);
+        if(board.hasMine(index))
             return -1;
         
-        int count = 0;
-        if(hasMine(row-1, col-1))
-            count++;
-        if(hasMine(row-1, col))
-            count++;
-        if(hasMine(row-1, col+1))
-            count++;
-        if(hasMine(row, col-1))
-            count++;
-        if(hasMine(row, col+1))
-            count++;
-        if(hasMine(row+1, col-1))
-            count++;
-        if(hasMine(row+1, col))
-            count++;
-        if(hasMine(row+1, col+1))
-            count++;
-    	return count;
+    	return board.countNbrMines(index);
+    }
+    
+
+    /**
+     * Places a mine at the given cell and updates the nearby counts in O(1).
+     * @param row Row of the cell.
+     * @param col Column of the cell.
+     * @return Returns true if a mine was added, false if the cell is invalid or already has a mine.
+     */
+    public boolean placeMine(int row, int col){
+        if(!board.isValidCell(row, col) || !board.placeMine(board.index(row, col)))
+            return false;
+        mineTotalCount++;
+        return true;
+    }
+
+    /**
+     * Removes the mine from the given cell and updates the nearby counts in O(1).
+     * @param row Row of the cell.
+     * @param col Column of the cell.
+     * @return Returns true if a mine was removed, false if the cell is invalid or has no mine.
+     */
+    public boolean removeMine(int row, int col){
+        if(!board.isValidCell(row, col) || !board.clearMine(board.index(row, col)))
+            return false;
+        mineTotalCount--;
+        return true;
     }
     
 
+    /**
+     * Makes the first click of the game safe: it then opens a zero cell whenever
+     * the board has room for the mines of the 3x3 area around it, and otherwise
+     * at least never opens a mine.
+     * @param safe Whether the first click should be safe.
+     */
+    public void setFirstClickSafe(boolean safe) { firstClickSafe = safe; }
+
+    /**
+     * Reports whether the first click is made safe.
+     * @return true if mines are moved away from the first click.
+     */
+    public boolean isFirstClickSafe() { return firstClickSafe; }
+
+    /**
+     * Moves the mines of the 3x3 area around the first click to free cells outside
+     * of it, updating only the counts around the old and new positions. Each new
+     * position is drawn uniformly by rejection from a Random seeded by the board
+     * seed and the clicked cell, so seed plus first click always give the same
+     * game. Expected O(1) while a fair share of the board is free; a scan from a
+     * random cell takes over after RELOCATE_TRIES misses.
+     * @param index Flat index of the clicked cell.
+     * @param moved List each move is appended to as its old and new cell.
+     */
+    private void clearStart(int index, DynIntArr310 moved){
+        Random random = new Random(((long) seed << 32) ^ index);
+        int[] area = new int[9];
+        int n = board.neighbors(index, area);
+        area[n++] = index;
+
+        for(int i=0; i<n; i++)
+        {
+            if(!board.hasMine(area[i]))
+                continue;
+            int target = freeCell(random, index, true);
+            if(target < 0)
+                break;
+            board.clearMine(area[i]);
+            board.placeMine(target);
+            moved.add(area[i]);
+            moved.add(target);
+        }
+
+        //no room outside the area: at least keep the clicked cell clear
+        if(board.hasMine(index))
+        {
+            int target = freeCell(random, index, false);
+            if(target >= 0)
+            {
+                board.clearMine(index);
+                board.placeMine(target);
+                moved.add(index);
+                moved.add(target);
+            }
+        }
+    }
+
+    /**
+     * Picks a cell without a mine for a mine moved away from the first click.
+     * @param random Random numbers to pick with.
+     * @param center Flat index of the clicked cell.
+     * @param outside Whether the cell must be outside the 3x3 area, or just not the clicked cell.
+     * @return Flat index of the cell, or -1 if there is none.
+     */
+    private int freeCell(Random random, int center, boolean outside){
+        int cells = rowCount * colCount;
+        for(int tries=0; tries<RELOCATE_TRIES; tries++)
+        {
+            int cell = random.nextInt(cells);
+            if(canTakeMine(cell, center, outside))
+                return cell;
+        }
+        int start = random.nextInt(cells);
+        for(int k=0; k<cells; k++)
+        {
+            int cell = (start + k) % cells;
+            if(canTakeMine(cell, center, outside))
+                return cell;
+        }
+        return -1;
+    }
+
+    /**
+     * Checks whether a mine moved away from the first click may go to a cell.
+     * @param cell Flat index of the cell.
+     * @param center Flat index of the clicked cell.
+     * @param outside Whether the cell must be outside the 3x3 area, or just not the clicked cell.
+     * @return true if the cell has no mine and is far enough from the click.
+     */
+    private boolean canTakeMine(int cell, int center, boolean outside){
+        if(board.hasMine(cell) || cell == center)
+            return false;
+        return !outside || !board.neighborTable().touches(center, cell);
+    }
+
     //******************************************************
     //*******   Methods to support game operations   *******
     //******************************************************
   
     /**
-     * A recursive function that sets the cells visible to all those that are zero count.
-     * @param row Row of the cell.
-     * @param col Column of the cell.
+     * Opens a zero-count cell and every cell connected to it through zero-count cells,
+     * together with their neighbors. Uses the opened list as its worklist, so it runs in
+     * time proportional to the number of cells opened and never recurses.
+     * @param index Flat index of a hidden zero-count cell.
+     * @param opened List the opened cells are appended to.
      */
-    private void zeroCount(int row, int col)
+    private void zeroCount(int index, DynIntArr310 opened)
     {
-        // Check if the cell is not a zero count and doesn't have a bomb, set it to visible
-        // Else if the cell is a zero count, recursivily call the method again but on adjacent cells
+        int next = opened.size();
+        board.setVisible(index);
+        clickedCount++;
+        opened.add(index);
 
-        if(board.get(row, col).getCount() > 0)
+        while(next < opened.size())
         {
-            board.get(row, col).setVisible();
-            clickedCount++;
-            return;
+            int cell = opened.get(next++);
+            if(board.getCount(cell) != 0)
+                continue;
+
+            //a zero-count cell has no mine around it: open all hidden neighbors
+            int n = board.neighbors(cell, nbrs);
+            for(int k=0; k<n; k++)
+            {
+                int nbr = nbrs[k];
+                if(!board.isVisible(nbr))
+                {
+                    board.setVisible(nbr);
+                    clickedCount++;
+                    opened.add(nbr);
+                }
+            }
         }
-        else if(board.get(row, col).getCount() == 0)
+    }
+
+    /**
+     * Opens the zero-count region of a cell and its numbered border straight from
+     * the region index, with no search: time proportional to the region.
+     * @param index Flat index of a hidden zero-count cell.
+     * @param opened List the opened cells are appended to.
+     */
+    private void openRegion(int index, DynIntArr310 opened)
+    {
+        int[] cells = zeroIndex.cells();
+        int region = zeroIndex.regionOf(index);
+        for(int i=zeroIndex.start(region); i<zeroIndex.end(region); i++)
         {
-            board.get(row, col).setVisible();
-            clickedCount++;
-            if(board.isValidCell(row-1, col-1) && !board.get(row-1, col-1).visible())
-                zeroCount(row-1, col-1);
-            if(board.isValidCell(row-1, col) && !board.get(row-1, col).visible())
-                zeroCount(row-1, col);
-            if(board.isValidCell(row-1, col+1) && !board.get(row-1, col+1).visible())
-                zeroCount(row-1, col+1);
-            if(board.isValidCell(row, col-1) && !board.get(row, col-1).visible())
-                zeroCount(row, col-1);
-            if(board.isValidCell(row, col+1) && !board.get(row, col+1).visible())
-                zeroCount(row, col+1);
-            if(board.isValidCell(row+1, col-1) && !board.get(row+1, col-1).visible())
-                zeroCount(row+1, col-1);
-            if(board.isValidCell(row+1, col) && !board.get(row+1, col).visible())
-                zeroCount(row+1, col);
-            if(board.isValidCell(row+1, col+1) && !board.get(row+1, col+1).visible())
-                zeroCount(row+1, col+1);
+            int cell = cells[i];
+            if(!board.isVisible(cell))
+            {
+                board.setVisible(cell);
+                clickedCount++;
+                opened.add(cell);
+            }
         }
     }
 
+    /**
+     * Reports the 3BV of the board: the fewest clicks that open every safe cell.
+     * Labels the zero-count regions of the board once, in time linear in its size;
+     * from then on until a mine or count changes, a click on a zero cell opens its
+     * region from those labels instead of a flood fill.
+     * @return 3BV of the board.
+     */
+    public int threeBV(){
+        if(zeroIndex == null || !zeroIndex.matches(board))
+            zeroIndex = new ZeroRegionIndex(board);
+        return zeroIndex.threeBV();
+    }
+
+    /**
+     * Returns the cells opened by the last clickAt as flat row-major indexes
+     * (row * colCount() + col), empty if it opened nothing.
+     * @return The region revealed by the last click.
+     */
+    public DynIntArr310 getRevealed() { return revealed; }
+
     /**
      * Opens the cell at given row and col: for a valid cell location - no change if cell is already flagged or exposed - if cell has a mine, open it would explode the mine - otherwise, open this cell and return number of mines adjacent to it, if the cell is not adjacent to any mines also open all zero-count cells that are connected to this cell, as well as all cells that are orthogonally or diagonally adjacent to those zero-count cells.
      * @param row Row of the cell.
@@ -599,6 +877,14 @@ public class MineSweeper{
      * @return Returns if cell is already flagged or exposed, return -2, if cell has a mine return -1, return number of mines adjacent to it.
      */
     public int clickAt(int row, int col){
+        DynIntArr310 moved = null;
+        if(firstClickSafe && status == Status.INIT && board.isValidCell(row, col)
+            && !board.isFlagged(board.index(row, col)))
+        {
+            moved = new DynIntArr310();
+            clearStart(board.index(row, col), moved);
+        }
+
     	// open cell located at (row,col)
     	// for a valid cell location:
     	//	- no change if cell is already flagged or exposed, return -2
@@ -616,29 +902,40 @@ public class MineSweeper{
     	// for an invalid cell location:
     	//	- no change and return -2
     	int result = -2;
-        if(!board.isValidCell(row, col) || board.get(row, col).isFlagged() || board.get(row, col).visible())
+        Status before = status;
+        int opened = clickedCount;
+        revealed = new DynIntArr310();
+        int index = board.index(row, col);
+        if(!board.isValidCell(row, col) || board.isFlagged(index) || board.isVisible(index))
     	    result = -2;
-        else if(board.get(row, col).hasMine())
+        else if(board.hasMine(index))
         {
-            board.get(row, col).setVisible();
+            board.setVisible(index);
+            revealed.add(index);
             status = Status.EXPLODED;
             result = -1;
         }
-        else if(board.get(row, col).getCount() == 0)
+        else if(board.getCount(index) == 0)
         {
-            zeroCount(row, col);
+            if(zeroIndex != null && zeroIndex.matches(board))
+                openRegion(index, revealed);
+            else
+                zeroCount(index, revealed);
             result = 0;
         }
         else
         {
-            board.get(row, col).setVisible();
+            board.setVisible(index);
             clickedCount++;
-            result = board.get(row, col).getCount();
+            revealed.add(index);
+            result = board.getCount(index);
         }
         if(clickedCount + mineTotalCount == rowCount * colCount)
             status = Status.SOLVED;
         else if(status != Status.EXPLODED)
             status = Status.INGAME;
+        if(history != null && result != -2)
+            history.push(MoveHistory.CLICK, index, before, status, clickedCount - opened, revealed, moved);
         return result;
    	}
     
@@ -661,11 +958,15 @@ public class MineSweeper{
         if(!board.isValidCell(row, col))
             return false;
         
-        if(board.get(row, col).visible())
+        int index = board.index(row, col);
+        if(board.isVisible(index))
             return false;
         
-        board.get(row, col).setFlagged();
+        boolean wasFlagged = board.isFlagged(index);
+        board.setFlagged(index);
         flaggedCount++;
+        if(history != null)
+            history.push(MoveHistory.FLAG, index, status, status, wasFlagged ? 0 : 1, null, null);
         return true;
          
     }
@@ -685,15 +986,207 @@ public class MineSweeper{
         
         // - return false for an invalid cell location
         // O(1)
-        if(!board.isValidCell(row, col) || !board.get(row, col).isFlagged())
+        if(!board.isValidCell(row, col) || !board.isFlagged(board.index(row, col)))
             return false;
         
-        board.get(row, col).unFlagged();
+        board.unFlagged(board.index(row, col));
         flaggedCount--;
+        if(history != null)
+            history.push(MoveHistory.UNFLAG, board.index(row, col), status, status, 1, null, null);
         return true;
       
     }
 
+    /**
+     * Keeps the last depth moves of clickAt, flagAt and unFlagAt so they can be
+     * undone and redone. A click is kept as sorted runs of the cells it opened,
+     * so undoing or redoing a cascade takes time in the size of that cascade and
+     * a board of any size costs nothing extra. The runs kept are capped at
+     * DEFAULT_HISTORY_BUDGET bytes. Changing the depth forgets the moves kept so far.
+     * @param depth Most moves kept, 0 turns undo off.
+     */
+    public void setHistoryDepth(int depth){
+        setHistoryDepth(depth, DEFAULT_HISTORY_BUDGET);
+    }
+
+    /**
+     * Keeps the last depth moves for undo, dropping the oldest ones sooner if the
+     * runs and moved mines kept would pass budget bytes. A click over the budget on
+     * its own cannot be undone. Changing either forgets the moves kept so far.
+     * @param depth Most moves kept, 0 turns undo off.
+     * @param budget Most bytes of runs and moved mines kept.
+     */
+    public void setHistoryDepth(int depth, long budget){
+        if(depth < 0)
+            throw new IllegalArgumentException("History depth must not be negative");
+        history = depth == 0 ? null : new MoveHistory(depth, budget);
+    }
+
+    /**
+     * Estimates the memory the game holds: the packed board with its neighbor
+     * table, the cells of the last click, and the undo history and region index
+     * when they exist.
+     * @return Estimated bytes.
+     */
+    public long bytes(){
+        long bytes = 256 + board.bytes() + 4L * revealed.capacity();
+        if(history != null)
+            bytes += history.bytes();
+        if(zeroIndex != null)
+            bytes += zeroIndex.bytes();
+        return bytes;
+    }
+
+    /**
+     * Reports how many moves are kept for undo.
+     * @return History depth, 0 if undo is off.
+     */
+    public int getHistoryDepth() { return history == null ? 0 : history.depth(); }
+
+    /**
+     * Reports the most bytes of runs and moved mines kept for undo.
+     * @return History budget, 0 if undo is off.
+     */
+    public long getHistoryBudget() { return history == null ? 0 : history.budget(); }
+
+    /**
+     * Reports whether a move can be undone.
+     * @return true if undo is on and some move is done.
+     */
+    public boolean canUndo() { return history != null && history.canUndo(); }
+
+    /**
+     * Reports whether a move can be redone.
+     * @return true if undo is on and some move was undone since the last move.
+     */
+    public boolean canRedo() { return history != null && history.canRedo(); }
+
+    /**
+     * Reverts the last move done: a click hides every cell it opened, including a
+     * whole cascade or an exploded mine, and restores the status and counters.
+     * Undoing a safe first click also puts back the mines it moved, so the next
+     * first click builds the same board as in a fresh game.
+     * getRevealed() is empty afterwards.
+     * @return Returns true if a move was undone.
+     */
+    public boolean undo(){
+        int slot = history == null ? -1 : history.undo();
+        if(slot < 0)
+            return false;
+        int cell = history.cell(slot);
+        switch(history.type(slot))
+        {
+            case MoveHistory.CLICK:
+                int[] runs = history.runs(slot);
+                for(int i=0; i<runs.length; i+=2)
+                    for(int j=runs[i]; j<runs[i]+runs[i+1]; j++)
+                        board.setInvisible(j);
+                clickedCount -= history.count(slot);
+                int[] moved = history.moved(slot);
+                for(int i=moved.length-2; i>=0; i-=2)
+                {
+                    board.clearMine(moved[i+1]);
+                    board.placeMine(moved[i]);
+                }
+                break;
+            case MoveHistory.FLAG:
+                if(history.count(slot) == 1)
+                    board.unFlagged(cell);
+                flaggedCount--;
+                break;
+            default:
+                board.setFlagged(cell);
+                flaggedCount++;
+        }
+        status = history.before(slot);
+        revealed = new DynIntArr310();
+        return true;
+    }
+
+    /**
+     * Repeats the last move undone. After a redone click getRevealed() holds the
+     * cells it opened in index order.
+     * @return Returns true if a move was redone.
+     */
+    public boolean redo(){
+        int slot = history == null ? -1 : history.redo();
+        if(slot < 0)
+            return false;
+        int cell = history.cell(slot);
+        revealed = new DynIntArr310();
+        switch(history.type(slot))
+        {
+            case MoveHistory.CLICK:
+                int[] moved = history.moved(slot);
+                for(int i=0; i<moved.length; i+=2)
+                {
+                    board.clearMine(moved[i]);
+                    board.placeMine(moved[i+1]);
+                }
+                int[] runs = history.runs(slot);
+                for(int i=0; i<runs.length; i+=2)
+                    for(int j=runs[i]; j<runs[i]+runs[i+1]; j++)
+                    {
+                        board.setVisible(j);
+                        revealed.add(j);
+                    }
+                clickedCount += history.count(slot);
+                break;
+            case MoveHistory.FLAG:
+                board.setFlagged(cell);
+                flaggedCount++;
+                break;
+            default:
+                board.unFlagged(cell);
+                flaggedCount--;
+        }
+        status = history.after(slot);
+        return true;
+    }
+
+    /**
+     * Opens the cell at (row,col) like clickAt and reports what changed.
+     * @param row Row of the cell.
+     * @param col Column of the cell.
+     * @return The cells opened and the status transition; result() is the clickAt return value.
+     */
+    public RevealDelta clickDelta(int row, int col){
+        Status before = status;
+        int result = clickAt(row, col);
+        return new RevealDelta(result, revealed, new DynIntArr310(), new DynIntArr310(), before, status);
+    }
+
+    /**
+     * Flags the cell at (row,col) like flagAt and reports what changed.
+     * @param row Row of the cell.
+     * @param col Column of the cell.
+     * @return The cell flagged, if it was not flagged before; result() is 1 if flagAt returned true.
+     */
+    public RevealDelta flagDelta(int row, int col){
+        Status before = status;
+        DynIntArr310 flagged = new DynIntArr310();
+        boolean wasFlagged = isFlagged(row, col);
+        boolean result = flagAt(row, col);
+        if (result && !wasFlagged)
+            flagged.add(board.index(row, col));
+        return new RevealDelta(result ? 1 : 0, new DynIntArr310(), flagged, new DynIntArr310(), before, status);
+    }
+
+    /**
+     * Un-flags the cell at (row,col) like unFlagAt and reports what changed.
+     * @param row Row of the cell.
+     * @param col Column of the cell.
+     * @return The cell unflagged, if any; result() is 1 if unFlagAt returned true.
+     */
+    public RevealDelta unFlagDelta(int row, int col){
+        Status before = status;
+        DynIntArr310 unflagged = new DynIntArr310();
+        boolean result = unFlagAt(row, col);
+        if (result)
+            unflagged.add(board.index(row, col));
+        return new RevealDelta(result ? 1 : 0, new DynIntArr310(), new DynIntArr310(), unflagged, before, status);
+    }
+
     
        
 
@@ -800,7 +1293,8 @@ public class MineSweeper{
 		//clicking on a zero-count cell
 		if (game.clickAt(0,0) == 0 && game.isVisible(0,0) && game.isVisible(4,0) &&
 			game.isVisible(0,4) && game.isVisible(3,2) && !game.isVisible(3,4) &&
-			!game.isVisible(4,3)){
+			!game.isVisible(4,3) && game.getRevealed().size() == 19 &&
+			game.getRevealed().get(0) == 0){
         	System.out.println("Yay 6");
         }
         //System.out.println(game);
@@ -817,6 +1311,211 @@ public class MineSweeper{
 			game.getStatus().equals("SOLVED")){
         	System.out.println("Yay 7");
         }
+
+        //deltas: only what changed is reported
+        random = new Random(10);
+        game = new MineSweeper(random.nextInt(),Level.TINY);
+        RevealDelta first = game.clickDelta(3,3);
+        RevealDelta flag = game.flagDelta(2,4);
+        RevealDelta zero = game.clickDelta(0,0);
+        RevealDelta again = game.clickDelta(0,0);
+        RevealDelta boom = game.clickDelta(2,3);
+        if (first.result() == 3 && first.revealed().size() == 1 && first.revealed().get(0) == 18 &&
+            first.before() == Status.INIT && first.after() == Status.INGAME &&
+            flag.flagged().size() == 1 && flag.flagged().get(0) == 14 && !flag.statusChanged() &&
+            zero.revealed().size() == 19 && again.isEmpty() && again.result() == -2 &&
+            boom.result() == -1 && boom.after() == Status.EXPLODED &&
+            game.unFlagDelta(2,4).unflagged().get(0) == 14){
+        	System.out.println("Yay 8");
+        }
+
+        //no-guess boards: the start cell is open and replaying the seed gives the same board
+        game = new MineSweeper(12, Level.HARD, true);
+        MineSweeper replay = new MineSweeper(game.getSeed(), Level.HARD);
+        int start = NoGuessGenerator.startCell(16, 30);
+        replay.clickAt(start / 30, start % 30);
+        if (game.getStatus().equals("IN_GAME") && game.boardToString().equals(replay.boardToString())
+            && NoGuessGenerator.solvable(new MineSweeper(game.getSeed(), Level.HARD))){
+        	System.out.println("Yay 9");
+        }
+
+        //first-click safety: a zero cell, counts kept right, same game for the same seed and click
+        boolean safe = true;
+        for (int g = 0; g < 500; g++){
+            int seed = random.nextInt();
+            int row = random.nextInt(16);
+            int col = random.nextInt(30);
+            MineSweeper one = new MineSweeper(seed, Level.HARD);
+            MineSweeper two = new MineSweeper(seed, Level.HARD);
+            one.setFirstClickSafe(true);
+            two.setFirstClickSafe(true);
+            if (one.clickAt(row, col) != 0 || two.clickAt(row, col) != 0 || one.mineLeft() != 99)
+                safe = false;
+            for (int r = 0; r < 16; r++)
+                for (int c = 0; c < 30; c++)
+                    if (one.hasMine(r, c) != two.hasMine(r, c)
+                        || (!one.hasMine(r, c) && one.getCount(r, c) != one.countNbrMines(r, c)))
+                        safe = false;
+        }
+        //too dense to clear the area: the clicked cell still has no mine
+        game = new MineSweeper(3, Level.CUSTOM, 3, 3, 8);
+        game.setFirstClickSafe(true);
+        if (safe && game.clickAt(1, 1) == 8 && game.isSolved()){
+        	System.out.println("Yay 10");
+        }
+
+        //undo/redo: a cascade, a flag and an explosion are reverted exactly and redone the same
+        game = new MineSweeper(21, Level.HARD);
+        game.setHistoryDepth(8);
+        String fresh = game.boardToString();
+        int open = -1;
+        int mine = -1;
+        for (int i = 0; i < 16 * 30; i++){
+            if (open < 0 && !game.hasMine(i / 30, i % 30) && game.getCount(i / 30, i % 30) == 0)
+                open = i;
+            if (mine < 0 && game.hasMine(i / 30, i % 30))
+                mine = i;
+        }
+        game.clickAt(open / 30, open % 30);
+        String cascade = game.boardToString();
+        int clicked = game.clickedCount();
+        game.flagAt(mine / 30, mine % 30);
+        game.unFlagAt(mine / 30, mine % 30);
+        game.clickAt(mine / 30, mine % 30);
+        String exploded = game.boardToString();
+        boolean undone = game.undo() && game.getStatus().equals("IN_GAME") && game.boardToString().equals(cascade)
+            && game.undo() && game.isFlagged(mine / 30, mine % 30) && game.mineLeft() == 98
+            && game.undo() && game.undo() && game.boardToString().equals(fresh) && game.clickedCount() == 0
+            && game.getStatus().equals("INIT") && !game.undo();
+        boolean redone = game.redo() && game.boardToString().equals(cascade) && game.clickedCount() == clicked
+            && game.getRevealed().size() == clicked && game.redo() && game.redo() && game.redo()
+            && game.boardToString().equals(exploded) && game.getStatus().equals("EXPLODED") && !game.canRedo();
+        //a new move drops the redo tail, a full history drops the oldest move
+        game.undo();
+        game.flagAt(mine / 30, mine % 30);
+        boolean dropped = !game.canRedo();
+        for (int i = 0; i < 10; i++)
+            game.flagAt(mine / 30, mine % 30);
+        int depth = 0;
+        while (game.undo())
+            depth++;
+        if (undone && redone && dropped && depth == 8 && game.mineLeft() == 96 && game.isFlagged(mine / 30, mine % 30)){
+        	System.out.println("Yay 11");
+        }
+
+        //cascades from the region index open the same cells as flood fills, also after a mine moved
+        boolean indexed = true;
+        for (int g = 0; g < 50; g++){
+            MineSweeper flood = new MineSweeper(g, Level.MEDIUM);
+            MineSweeper index = new MineSweeper(g, Level.MEDIUM);
+            index.threeBV();
+            if (g % 2 == 1){
+                flood.placeMine(0, 0);
+                index.placeMine(0, 0);
+            }
+            for (int i = 0; i < 16 * 16; i++)
+                if (!flood.hasMine(i / 16, i % 16) && flood.getCount(i / 16, i % 16) == 0)
+                    indexed &= flood.clickAt(i / 16, i % 16) == index.clickAt(i / 16, i % 16)
+                        && flood.getRevealed().size() == index.getRevealed().size();
+            indexed &= flood.boardToString().equals(index.boardToString()) && flood.clickedCount() == index.clickedCount();
+        }
+        if (indexed){
+        	System.out.println("Yay 12");
+        }
+
+        //torus and hex games: counts follow the topology, cascades open every neighbor of a zero cell,
+        //and clicking every safe cell wins, with or without the region index
+        boolean shaped = true;
+        for (Topology topology : new Topology[] { Topology.TORUS, Topology.HEX }){
+            Topology.Table table = topology.table(16, 30);
+            int[] around = new int[8];
+            for (int g = 0; g < 30; g++){
+                MineSweeper shapedGame = new MineSweeper(g, Level.CUSTOM, 16, 30, 80, topology);
+                shaped &= shapedGame.getTopology() == topology;
+                if (g % 2 == 1)
+                    shapedGame.threeBV();
+                for (int i = 0; i < 16 * 30; i++){
+                    int mines = 0;
+                    int n = table.neighbors(i, around);
+                    for (int k = 0; k < n; k++)
+                        if (shapedGame.hasMine(around[k] / 30, around[k] % 30))
+                            mines++;
+                    shaped &= shapedGame.hasMine(i / 30, i % 30) || shapedGame.getCount(i / 30, i % 30) == mines;
+                }
+                for (int pass = 0; pass < 2; pass++)
+                    for (int i = 0; i < 16 * 30; i++){
+                        if (shapedGame.hasMine(i / 30, i % 30) || shapedGame.isVisible(i / 30, i % 30)
+                            || (pass == 0 && shapedGame.getCount(i / 30, i % 30) != 0))
+                            continue;
+                        shapedGame.clickAt(i / 30, i % 30);
+                        int n = table.neighbors(i, around);
+                        for (int k = 0; k < n && pass == 0; k++)
+                            shaped &= shapedGame.isVisible(around[k] / 30, around[k] % 30);
+                    }
+                shaped &= shapedGame.isSolved();
+            }
+        }
+        if (shaped){
+        	System.out.println("Yay 13");
+        }
+
+        //undoing a safe first click puts its mines back: another first click gives the fresh game's board,
+        //and redoing it gives the first board again
+        boolean reclicked = true;
+        for (int g = 0; g < 200; g++){
+            MineSweeper replayed = new MineSweeper(g, Level.HARD);
+            MineSweeper clean = new MineSweeper(g, Level.HARD);
+            replayed.setFirstClickSafe(true);
+            clean.setFirstClickSafe(true);
+            replayed.setHistoryDepth(4);
+            replayed.clickAt(8, 15);
+            String opening = replayed.boardToString();
+            reclicked &= replayed.undo() && replayed.redo() && replayed.boardToString().equals(opening) && replayed.undo();
+            replayed.clickAt(2, 3);
+            clean.clickAt(2, 3);
+            reclicked &= replayed.boardToString().equals(clean.boardToString());
+            for (int i = 0; i < 16 * 30; i++)
+                reclicked &= replayed.hasMine(i / 30, i % 30) == clean.hasMine(i / 30, i % 30);
+        }
+        if (reclicked){
+        	System.out.println("Yay 14");
+        }
+
+        //runs come out sorted without a sort, and the byte budget drops clicks that do not fit
+        Random shuffle = new Random(5);
+        MoveHistory packer = new MoveHistory(1, 1);
+        boolean packed = true;
+        for (int round = 0; round < 300; round++){
+            int low = shuffle.nextInt(1000);
+            boolean[] taken = new boolean[1 + shuffle.nextInt(round < 100 ? 70 : 700)];
+            DynIntArr310 cells = new DynIntArr310();
+            for (int i = 0; i < taken.length; i++){
+                taken[i] = i == 0 || i == taken.length - 1 || shuffle.nextInt(4) > 0;
+                if (taken[i])
+                    cells.add(low + i);
+            }
+            for (int i = cells.size() - 1; i > 0; i--)
+                cells.set(i, cells.set(shuffle.nextInt(i + 1), cells.get(i)));
+            DynIntArr310 expected = new DynIntArr310();
+            for (int i = 0; i < taken.length; i++)
+                if (taken[i] && (i == 0 || !taken[i - 1])){
+                    int end = i;
+                    while (end < taken.length && taken[end])
+                        end++;
+                    expected.add(low + i);
+                    expected.add(end - i);
+                }
+            packed &= Arrays.equals(packer.toRuns(cells), expected.toArray());
+        }
+        game = new MineSweeper(21, Level.HARD);
+        game.setHistoryDepth(8, 16);
+        game.clickAt(open / 30, open % 30);
+        boolean budgeted = !game.canUndo() && game.getHistoryBudget() == 16 && game.flagAt(mine / 30, mine % 30)
+            && game.undo() && !game.isFlagged(mine / 30, mine % 30) && !game.undo();
+        game.setHistoryDepth(8);
+        if (packed && budgeted && game.getHistoryBudget() == DEFAULT_HISTORY_BUDGET){
+        	System.out.println("Yay 15");
+        }
         //System.out.println(game);
         //expected board:
         //- |0|1|2|3|4|
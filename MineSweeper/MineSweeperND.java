@@ -0,0 +1,527 @@
+import java.util.Random;
+
+/**
+ * A minesweeper game on a board of k dimensions, for example 20x20x20 where an
+ * inner cell has 26 neighbors, with the rules of MineSweeper: a click opens a
+ * cell, a zero-count cell opens every cell around it, and the game is solved
+ * once every safe cell is open.
+ *
+ * Cells are one flat index space in row-major order: the last dimension varies
+ * fastest and a step along dimension d moves the index by stride(d). A count can
+ * reach 3^k - 1, more than the 5 bits of PackedBoard hold once k is 4, so each
+ * cell is a short: the count in bits 0-12 and the mine, visible and flagged bits
+ * above, which covers k up to 8 (3^8 - 1 = 6560).
+ *
+ * Memory and time stay linear in the number of cells: counts come from k sliding
+ * sums of width 3, one along each dimension, and a cascade keeps only the zero
+ * cells still to expand on a stack, each cell being opened once.
+ */
+public class MineSweeperND {
+
+	/**
+	 * Most dimensions a board can have, so that 3^k - 1 fits the count bits.
+	 */
+	public static final int MAX_DIMENSIONS = 8;
+
+	/**
+	 * Bits holding the neighbor count of a cell.
+	 */
+	private static final int COUNT_MASK = 0x1FFF;
+
+	/**
+	 * Bit set on a cell with a mine.
+	 */
+	private static final int MINE = 0x2000;
+
+	/**
+	 * Bit set on an opened cell.
+	 */
+	private static final int VISIBLE = 0x4000;
+
+	/**
+	 * Bit set on a flagged cell.
+	 */
+	private static final int FLAGGED = 0x8000;
+
+	/**
+	 * Size of each dimension, slowest first.
+	 */
+	private final int[] dims;
+
+	/**
+	 * Index step of each dimension.
+	 */
+	private final int[] strides;
+
+	/**
+	 * Index offset of each of the 3^k - 1 neighbors of an inner cell.
+	 */
+	private final int[] offsets;
+
+	/**
+	 * Step, -1, 0 or 1, of each neighbor along each dimension: k entries per neighbor.
+	 */
+	private final byte[] steps;
+
+	/**
+	 * Packed state of each cell.
+	 */
+	private final short[] cells;
+
+	/**
+	 * Number of mines in the board.
+	 */
+	private final int mineTotalCount;
+
+	/**
+	 * Number of safe cells opened.
+	 */
+	private int clickedCount;
+
+	/**
+	 * Number of cells flagged as a mine.
+	 */
+	private int flaggedCount;
+
+	/**
+	 * The status of the game.
+	 */
+	private MineSweeper.Status status;
+
+	/**
+	 * Scratch coordinates of a cell.
+	 */
+	private final int[] coords;
+
+	/**
+	 * Scratch buffer for neighbor indexes.
+	 */
+	private final int[] nbrs;
+
+	/**
+	 * Constructor, places mineCount mines from the seed on a board of the given size.
+	 * A two-dimensional board gets the same mines as a custom MineSweeper game with
+	 * the same seed.
+	 * @param seed Seed for the random numbers.
+	 * @param mineCount Amount of mines, clamped to the number of cells.
+	 * @param dims Size of each dimension, slowest first.
+	 */
+	public MineSweeperND(int seed, int mineCount, int... dims){
+		if (dims.length < 1 || dims.length > MAX_DIMENSIONS)
+			throw new IllegalArgumentException("A board needs 1 to " + MAX_DIMENSIONS + " dimensions!");
+		int k = dims.length;
+		this.dims = dims.clone();
+		strides = new int[k];
+		long size = 1;
+		for (int d = k - 1; d >= 0; d--){
+			if (dims[d] < 1)
+				throw new IllegalArgumentException("Every dimension needs at least one cell!");
+			strides[d] = (int) size;
+			size *= dims[d];
+			if (size > Integer.MAX_VALUE - 8)
+				throw new IllegalArgumentException("Board has too many cells!");
+		}
+		cells = new short[(int) size];
+		coords = new int[k];
+
+		//every step vector but the all-zero one, with its index offset
+		int degree = maxCount();
+		offsets = new int[degree];
+		steps = new byte[degree * k];
+		for (int j = 0, code = 0; code <= degree; code++){
+			int rest = code;
+			int offset = 0;
+			boolean self = true;
+			for (int d = 0; d < k; d++){
+				int step = rest % 3 - 1;
+				rest /= 3;
+				steps[j * k + d] = (byte) step;
+				offset += step * strides[d];
+				self &= step == 0;
+			}
+			if (!self)
+				offsets[j++] = offset;
+		}
+		nbrs = new int[degree];
+
+		int cols = (int) size / dims[0];
+		DynIntArr310 mines = MinePlacer.place(new Random(seed), dims[0], cols, mineCount);
+		mineTotalCount = mines.size();
+		for (int i = 0; i < mines.size(); i++)
+			cells[mines.get(i)] = MINE;
+		countMines();
+		status = MineSweeper.Status.INIT;
+	}
+
+	/**
+	 * Sets the count of every cell: the mines in its 3^k box, made by a sliding
+	 * sum of width 3 along each dimension in turn, less the cell's own mine. O(k * cells).
+	 */
+	private void countMines(){
+		int n = cells.length;
+		for (int i = 0; i < n; i++)
+			cells[i] = (short) ((cells[i] & MINE) != 0 ? MINE | 1 : 0);
+
+		for (int d = 0; d < dims.length; d++){
+			int stride = strides[d];
+			int len = dims[d];
+			int block = stride * len;
+			for (int base = 0; base < n; base += block)
+				for (int first = base; first < base + stride; first++){
+					//walk one line along dimension d, keeping the count before it was summed
+					int prev = 0;
+					for (int t = 0, i = first; t < len; t++, i += stride){
+						int cur = cells[i] & COUNT_MASK;
+						int next = t < len - 1 ? cells[i + stride] & COUNT_MASK : 0;
+						cells[i] = (short) ((cells[i] & ~COUNT_MASK) | (prev + cur + next));
+						prev = cur;
+					}
+				}
+		}
+
+		for (int i = 0; i < n; i++)
+			if ((cells[i] & MINE) != 0)
+				cells[i]--;
+	}
+
+	/**
+	 * Writes the flat indexes of the neighbors of a cell into out.
+	 * @param index Flat index of the cell.
+	 * @param out Array of at least maxCount() slots.
+	 * @return Returns the number of neighbors written.
+	 */
+	public int neighbors(int index, int[] out){
+		int k = dims.length;
+		boolean inner = true;
+		for (int d = k - 1, rest = index; d >= 0; d--){
+			coords[d] = rest % dims[d];
+			rest /= dims[d];
+			inner &= coords[d] > 0 && coords[d] < dims[d] - 1;
+		}
+		if (inner){
+			for (int j = 0; j < offsets.length; j++)
+				out[j] = index + offsets[j];
+			return offsets.length;
+		}
+
+		//on the border, keep the neighbors whose every coordinate stays on the board
+		int n = 0;
+		for (int j = 0; j < offsets.length; j++){
+			boolean valid = true;
+			for (int d = 0; d < k && valid; d++){
+				int c = coords[d] + steps[j * k + d];
+				valid = c >= 0 && c < dims[d];
+			}
+			if (valid)
+				out[n++] = index + offsets[j];
+		}
+		return n;
+	}
+
+	/**
+	 * Computes the flat index of a cell.
+	 * @param coords Coordinate of the cell along each dimension, slowest first.
+	 * @return Flat index, or -1 if the cell is not on the board.
+	 */
+	public int index(int... coords){
+		if (coords.length != dims.length)
+			return -1;
+		int index = 0;
+		for (int d = 0; d < dims.length; d++){
+			if (coords[d] < 0 || coords[d] >= dims[d])
+				return -1;
+			index += coords[d] * strides[d];
+		}
+		return index;
+	}
+
+	/**
+	 * Checks a flat index.
+	 * @param index Flat index.
+	 * @return true if the cell is on the board.
+	 */
+	private boolean isValidCell(int index) { return index >= 0 && index < cells.length; }
+
+	/**
+	 * Reports the number of dimensions.
+	 * @return k.
+	 */
+	public int dimensions() { return dims.length; }
+
+	/**
+	 * Reports the size of one dimension.
+	 * @param d Dimension, 0 for the slowest.
+	 * @return Cells along it.
+	 */
+	public int dimension(int d) { return dims[d]; }
+
+	/**
+	 * Reports the index step of one dimension.
+	 * @param d Dimension, 0 for the slowest.
+	 * @return Index difference of two cells next to each other along it.
+	 */
+	public int stride(int d) { return strides[d]; }
+
+	/**
+	 * Reports the number of cells.
+	 * @return Cells of the board.
+	 */
+	public int size() { return cells.length; }
+
+	/**
+	 * Reports the largest count a cell can have.
+	 * @return 3^k - 1.
+	 */
+	public int maxCount(){
+		int box = 1;
+		for (int d = 0; d < dims.length; d++)
+			box *= 3;
+		return box - 1;
+	}
+
+	/**
+	 * Reports the number of mines.
+	 * @return Mines of the board.
+	 */
+	public int mineCount() { return mineTotalCount; }
+
+	/**
+	 * Reports how many mines have not been flagged.
+	 * @return Mines less flags.
+	 */
+	public int mineLeft() { return mineTotalCount - flaggedCount; }
+
+	/**
+	 * Reports how many safe cells have been opened.
+	 * @return Opened safe cells.
+	 */
+	public int clickedCount() { return clickedCount; }
+
+	/**
+	 * Reports how many cells are flagged.
+	 * @return Flagged cells.
+	 */
+	public int flaggedCount() { return flaggedCount; }
+
+	/**
+	 * Reports the status of the game.
+	 * @return One of MineSweeper.Status_STRINGS.
+	 */
+	public String getStatus() { return MineSweeper.Status_STRINGS[status.ordinal()]; }
+
+	/**
+	 * Reports whether the game is solved.
+	 * @return Solved status of the game.
+	 */
+	public boolean isSolved() { return status == MineSweeper.Status.SOLVED; }
+
+	/**
+	 * Reports whether a mine has exploded.
+	 * @return Exploded status of the game.
+	 */
+	public boolean isExploded() { return status == MineSweeper.Status.EXPLODED; }
+
+	/**
+	 * Checks a cell for a mine.
+	 * @param index Flat index of the cell.
+	 * @return true if the cell is on the board and has a mine.
+	 */
+	public boolean hasMine(int index) { return isValidCell(index) && (cells[index] & MINE) != 0; }
+
+	/**
+	 * Checks whether a cell is open.
+	 * @param index Flat index of the cell.
+	 * @return true if the cell is on the board and open.
+	 */
+	public boolean isVisible(int index) { return isValidCell(index) && (cells[index] & VISIBLE) != 0; }
+
+	/**
+	 * Checks whether a cell is flagged.
+	 * @param index Flat index of the cell.
+	 * @return true if the cell is on the board and flagged.
+	 */
+	public boolean isFlagged(int index) { return isValidCell(index) && (cells[index] & FLAGGED) != 0; }
+
+	/**
+	 * Reports the count of a cell.
+	 * @param index Flat index of the cell.
+	 * @return Mines around the cell, -1 for a mine, -2 for a cell off the board.
+	 */
+	public int getCount(int index){
+		if (!isValidCell(index))
+			return -2;
+		return (cells[index] & MINE) != 0 ? -1 : cells[index] & COUNT_MASK;
+	}
+
+	/**
+	 * Opens a cell with the rules of MineSweeper.clickAt: a mine explodes, a
+	 * numbered cell opens alone, and a zero-count cell opens every zero-count
+	 * cell connected to it and the cells around those. A flagged cell cannot be
+	 * clicked, but a cascade opens flagged cells it reaches and keeps their flags.
+	 * @param index Flat index of the cell.
+	 * @return Returns -2 if the cell is off the board, flagged or already open, -1 if it has a mine, otherwise its count.
+	 */
+	public int clickAt(int index){
+		if (!isValidCell(index) || (cells[index] & (VISIBLE | FLAGGED)) != 0)
+			return -2;
+		int result;
+		cells[index] |= VISIBLE;
+		if ((cells[index] & MINE) != 0){
+			status = MineSweeper.Status.EXPLODED;
+			result = -1;
+		}
+		else {
+			clickedCount++;
+			result = cells[index] & COUNT_MASK;
+			if (result == 0)
+				cascade(index);
+		}
+		if (clickedCount + mineTotalCount == cells.length)
+			status = MineSweeper.Status.SOLVED;
+		else if (status != MineSweeper.Status.EXPLODED)
+			status = MineSweeper.Status.INGAME;
+		return result;
+	}
+
+	/**
+	 * Opens the zero-count region of an opened zero cell and its border. A cell is
+	 * pushed when it opens, so each is expanded at most once.
+	 * @param index Flat index of the zero cell.
+	 */
+	private void cascade(int index){
+		DynIntArr310 stack = new DynIntArr310();
+		stack.add(index);
+		while (stack.size() > 0){
+			int n = neighbors(stack.removeLast(), nbrs);
+			for (int j = 0; j < n; j++){
+				int nbr = nbrs[j];
+				if ((cells[nbr] & VISIBLE) != 0)
+					continue;
+				cells[nbr] |= VISIBLE;
+				clickedCount++;
+				if ((cells[nbr] & COUNT_MASK) == 0)
+					stack.add(nbr);
+			}
+		}
+	}
+
+	/**
+	 * Flags a closed cell.
+	 * @param index Flat index of the cell.
+	 * @return Returns true if the cell was flagged by this call.
+	 */
+	public boolean flagAt(int index){
+		if (!isValidCell(index) || (cells[index] & (VISIBLE | FLAGGED)) != 0)
+			return false;
+		cells[index] |= FLAGGED;
+		flaggedCount++;
+		return true;
+	}
+
+	/**
+	 * Removes the flag of a cell.
+	 * @param index Flat index of the cell.
+	 * @return Returns true if the cell was flagged before.
+	 */
+	public boolean unFlagAt(int index){
+		if (!isValidCell(index) || (cells[index] & FLAGGED) == 0)
+			return false;
+		cells[index] &= ~FLAGGED;
+		flaggedCount--;
+		return true;
+	}
+
+	/**
+	 * Self-checks: a 2D board plays like MineSweeper, flags included, counts match
+	 * brute force in 3 and 4 dimensions, and one click cascades over a 200^3 board.
+	 * @param args Not used.
+	 */
+	public static void main(String[] args){
+		//two dimensions: same mines, counts and click results as a custom MineSweeper game
+		boolean same = true;
+		for (int seed = 0; seed < 30; seed++){
+			MineSweeper flat = new MineSweeper(seed, MineSweeper.Level.CUSTOM, 16, 30, 99);
+			MineSweeperND game = new MineSweeperND(seed, 99, 16, 30);
+			for (int i = 0; i < 16 * 30; i++)
+				same &= game.getCount(i) == flat.getCount(i / 30, i % 30);
+			//a flag on a zero cell, which a cascade opens anyway
+			for (int i = 16 * 30 - 1; i >= 0; i--)
+				if (game.getCount(i) == 0){
+					same &= game.flagAt(i) && flat.flagAt(i / 30, i % 30);
+					break;
+				}
+			for (int i = 0; i < 16 * 30 && !game.isExploded(); i += 7)
+				same &= game.clickAt(i) == flat.clickAt(i / 30, i % 30) && game.clickedCount() == flat.clickedCount();
+			same &= game.getStatus().equals(flat.getStatus());
+		}
+		MineSweeper small = new MineSweeper(3, MineSweeper.Level.CUSTOM, 10, 10, 2);
+		MineSweeperND smallND = new MineSweeperND(3, 2, 10, 10);
+		int flag = -1;
+		int click = -1;
+		for (int i = 0; i < 100; i++)
+			if (small.getCount(i / 10, i % 10) == 0){
+				if (flag < 0)
+					flag = i;
+				else
+					click = i;
+			}
+		small.flagAt(flag / 10, flag % 10);
+		smallND.flagAt(flag);
+		same &= smallND.clickAt(click) == small.clickAt(click / 10, click % 10)
+			&& smallND.clickedCount() == small.clickedCount() && smallND.isVisible(flag) && smallND.isFlagged(flag);
+		if (same){
+			System.out.println("Yay 1");
+		}
+
+		//three and four dimensions: counts match the neighbors, and clicking every safe cell wins;
+		//the dense 5^4 board has counts past the 30 a PackedBoard cell holds
+		boolean counted = true;
+		int[][] shapes = { {12, 13, 14}, {6, 7, 5, 6}, {1, 9, 9}, {5, 5, 5, 5} };
+		int[] mineCounts = { 200, 160, 20, 560 };
+		int highest = 0;
+		for (int s = 0; s < shapes.length; s++){
+			MineSweeperND game = new MineSweeperND(s, mineCounts[s], shapes[s]);
+			int[] out = new int[game.maxCount()];
+			for (int i = 0; i < game.size(); i++){
+				int n = game.neighbors(i, out);
+				int mines = 0;
+				for (int j = 0; j < n; j++)
+					mines += game.hasMine(out[j]) ? 1 : 0;
+				counted &= game.hasMine(i) || game.getCount(i) == mines;
+				highest = Math.max(highest, game.getCount(i));
+			}
+			for (int pass = 0; pass < 2; pass++)
+				for (int i = 0; i < game.size(); i++)
+					if (!game.hasMine(i) && (pass == 1 || game.getCount(i) == 0))
+						game.clickAt(i);
+			counted &= game.isSolved();
+		}
+		if (counted && highest > 30 && new MineSweeperND(0, 0, 3, 3, 3, 3).maxCount() == 80){
+			System.out.println("Yay 2");
+		}
+
+		//a 200^3 board: one click opens a region closed under zero neighbors, no mine, and counted once
+		MineSweeperND big = new MineSweeperND(3, 40000, 200, 200, 200);
+		int start = 0;
+		while (big.hasMine(start) || big.getCount(start) != 0)
+			start++;
+		big.clickAt(start);
+		int[] around = new int[big.maxCount()];
+		int visible = 0;
+		boolean closed = big.getStatus().equals("IN_GAME");
+		for (int i = 0; i < big.size() && closed; i++){
+			if (!big.isVisible(i))
+				continue;
+			visible++;
+			closed = !big.hasMine(i);
+			if (big.getCount(i) == 0){
+				int n = big.neighbors(i, around);
+				for (int j = 0; j < n; j++)
+					closed &= big.isVisible(around[j]);
+			}
+		}
+		if (closed && big.clickedCount() == visible && visible > big.size() / 2){
+			System.out.println("Yay 3");
+		}
+	}
+}
@@ -0,0 +1,355 @@
+import java.util.Arrays;
+
+/**
+ * Bounded undo/redo history of MineSweeper moves, kept in a ring buffer of
+ * parallel arrays. A move stores its cell, the status before and after it, and
+ * for a click the opened cells as sorted runs {start, length, start, length, ...}
+ * and the mines a safe first click moved away as pairs {from, to, ...}.
+ * A cascade opens whole row segments, so the runs take far less room than one
+ * index per cell, and no object is created per cell. The runs are built in one
+ * pass over a reused bitmap of the cells between the lowest and highest one
+ * opened, so recording a click is linear, with no sort.
+ *
+ * Both the number of moves and the bytes of their runs and mine moves are
+ * capped: once either cap is passed the oldest moves are dropped.
+ *
+ * The history only stores moves; MineSweeper applies them. Entries are numbered
+ * by slot: undo() and redo() return the slot of the move to revert or repeat.
+ */
+public class MoveHistory {
+
+	/**
+	 * Move type of a clickAt.
+	 */
+	public static final byte CLICK = 0;
+
+	/**
+	 * Move type of a flagAt.
+	 */
+	public static final byte FLAG = 1;
+
+	/**
+	 * Move type of an unFlagAt.
+	 */
+	public static final byte UNFLAG = 2;
+
+	/**
+	 * Run list of moves that opened nothing.
+	 */
+	private static final int[] NO_RUNS = new int[0];
+
+	/**
+	 * Type of each move.
+	 */
+	private final byte[] types;
+
+	/**
+	 * Cell of each move.
+	 */
+	private final int[] cells;
+
+	/**
+	 * Status ordinal before each move.
+	 */
+	private final byte[] before;
+
+	/**
+	 * Status ordinal after each move.
+	 */
+	private final byte[] after;
+
+	/**
+	 * Counter change of each move: safe cells opened by a click, 1 for a flag on
+	 * an unflagged cell, 0 otherwise.
+	 */
+	private final int[] counts;
+
+	/**
+	 * Opened cells of each click as runs.
+	 */
+	private final int[][] runs;
+
+	/**
+	 * Mines moved by each click before it opened, as {from, to, ...}.
+	 */
+	private final int[][] moves;
+
+	/**
+	 * Slot of the oldest move.
+	 */
+	private int start;
+
+	/**
+	 * Moves stored, done or undone.
+	 */
+	private int size;
+
+	/**
+	 * Moves done; the ones after them can be redone.
+	 */
+	private int done;
+
+	/**
+	 * Most bytes the runs and mine moves of the kept moves may take.
+	 */
+	private final long budget;
+
+	/**
+	 * Bytes the runs and mine moves of the kept moves take.
+	 */
+	private long deltaBytes;
+
+	/**
+	 * Scratch bitmap of opened cells, relative to the lowest one; all zero between uses.
+	 */
+	private long[] bitmap = new long[0];
+
+	/**
+	 * Constructor.
+	 * @param depth Most moves kept; older ones are dropped.
+	 * @param budget Most bytes of runs and mine moves kept; older moves are dropped.
+	 */
+	public MoveHistory(int depth, long budget){
+		if (depth <= 0)
+			throw new IllegalArgumentException("History depth must be positive");
+		if (budget <= 0)
+			throw new IllegalArgumentException("History budget must be positive");
+		this.budget = budget;
+		types = new byte[depth];
+		cells = new int[depth];
+		before = new byte[depth];
+		after = new byte[depth];
+		counts = new int[depth];
+		runs = new int[depth][];
+		moves = new int[depth][];
+	}
+
+	/**
+	 * Reports the most moves kept.
+	 * @return History depth.
+	 */
+	public int depth() { return types.length; }
+
+	/**
+	 * Reports the most bytes of runs and mine moves kept.
+	 * @return History budget.
+	 */
+	public long budget() { return budget; }
+
+	/**
+	 * Estimates the memory of the history: the per-move arrays and the bitmap,
+	 * plus the runs and mine moves of every click kept, which stay within budget().
+	 * @return Estimated bytes.
+	 */
+	public long bytes(){
+		return 80 + (long) types.length * (1 + 4 + 1 + 1 + 4 + 8 + 8) + 8L * bitmap.length + deltaBytes;
+	}
+
+	/**
+	 * Estimates the memory of a run or mine move list.
+	 * @param list The list.
+	 * @return Estimated bytes, 0 for the shared empty list.
+	 */
+	private static long bytesOf(int[] list){
+		return list == null || list == NO_RUNS ? 0 : 16 + 4L * list.length;
+	}
+
+	/**
+	 * Forgets the runs and mine moves of a slot.
+	 * @param slot Slot of the move.
+	 */
+	private void release(int slot){
+		deltaBytes -= bytesOf(runs[slot]) + bytesOf(moves[slot]);
+		runs[slot] = null;
+		moves[slot] = null;
+	}
+
+	/**
+	 * Records a move, dropping the moves that could be redone and, when over the
+	 * depth or the budget, the oldest moves. A move over the budget on its own
+	 * is not kept either.
+	 * @param type CLICK, FLAG or UNFLAG.
+	 * @param cell Flat index of the cell.
+	 * @param statusBefore Status before the move.
+	 * @param statusAfter Status after the move.
+	 * @param count Safe cells opened by a click; 1 if a flag was new, 0 otherwise.
+	 * @param opened Cells opened by a click, null or empty for other moves.
+	 * @param moved Mines moved before a click opened, as {from, to, ...}; null or empty if none.
+	 */
+	public void push(byte type, int cell, MineSweeper.Status statusBefore, MineSweeper.Status statusAfter,
+			int count, DynIntArr310 opened, DynIntArr310 moved){
+		for (int i = done; i < size; i++)
+			release((start + i) % types.length);
+		size = done;
+		if (size == types.length)
+			dropOldest();
+		int slot = (start + size) % types.length;
+		types[slot] = type;
+		cells[slot] = cell;
+		before[slot] = (byte) statusBefore.ordinal();
+		after[slot] = (byte) statusAfter.ordinal();
+		counts[slot] = count;
+		runs[slot] = opened == null || opened.size() == 0 ? NO_RUNS : toRuns(opened);
+		moves[slot] = moved == null || moved.size() == 0 ? NO_RUNS : moved.toArray();
+		deltaBytes += bytesOf(runs[slot]) + bytesOf(moves[slot]);
+		size++;
+		done = size;
+		while (size > 0 && deltaBytes > budget)
+			dropOldest();
+	}
+
+	/**
+	 * Drops the oldest move.
+	 */
+	private void dropOldest(){
+		release(start);
+		start = (start + 1) % types.length;
+		size--;
+		done = Math.max(0, done - 1);
+	}
+
+	/**
+	 * Packs the cells into runs of consecutive indexes: the cells are set in the
+	 * bitmap, then run starts and ends are read off it a word at a time, and the
+	 * words used are cleared. O(cells + span / 64), where span is the distance
+	 * from the lowest cell to the highest.
+	 * @param opened Distinct cells, in any order, not empty.
+	 * @return Runs as {start, length, ...}, in increasing order.
+	 */
+	int[] toRuns(DynIntArr310 opened){
+		int low = Integer.MAX_VALUE;
+		int high = Integer.MIN_VALUE;
+		for (int i = 0; i < opened.size(); i++){
+			low = Math.min(low, opened.get(i));
+			high = Math.max(high, opened.get(i));
+		}
+		int words = ((high - low) >> 6) + 1;
+		if (bitmap.length < words)
+			bitmap = new long[Math.max(words, 2 * bitmap.length)];
+		for (int i = 0; i < opened.size(); i++){
+			int bit = opened.get(i) - low;
+			bitmap[bit >> 6] |= 1L << bit;
+		}
+
+		//a run starts on a set bit whose lower neighbor is clear
+		int n = 0;
+		long carry = 0;
+		for (int w = 0; w < words; w++){
+			n += Long.bitCount(bitmap[w] & ~(bitmap[w] << 1 | carry));
+			carry = bitmap[w] >>> 63;
+		}
+		int[] packed = new int[2 * n];
+		int starts = 0;
+		int ends = 1;
+		carry = 0;
+		for (int w = 0; w < words; w++){
+			long word = bitmap[w];
+			long next = w + 1 < words ? bitmap[w + 1] & 1 : 0;
+			long first = word & ~(word << 1 | carry);
+			long last = word & ~(word >>> 1 | next << 63);
+			carry = word >>> 63;
+			for (; first != 0; first &= first - 1, starts += 2)
+				packed[starts] = low + (w << 6) + Long.numberOfTrailingZeros(first);
+			for (; last != 0; last &= last - 1, ends += 2)
+				packed[ends] = low + (w << 6) + Long.numberOfTrailingZeros(last) - packed[ends - 1] + 1;
+			bitmap[w] = 0;
+		}
+		return packed;
+	}
+
+	/**
+	 * Steps back over the last move done.
+	 * @return Slot of the move to revert, or -1 if there is none.
+	 */
+	public int undo(){
+		if (done == 0)
+			return -1;
+		done--;
+		return (start + done) % types.length;
+	}
+
+	/**
+	 * Steps forward over the next undone move.
+	 * @return Slot of the move to repeat, or -1 if there is none.
+	 */
+	public int redo(){
+		if (done == size)
+			return -1;
+		int slot = (start + done) % types.length;
+		done++;
+		return slot;
+	}
+
+	/**
+	 * Reports whether a move can be undone.
+	 * @return true if some move is done.
+	 */
+	public boolean canUndo() { return done > 0; }
+
+	/**
+	 * Reports whether a move can be redone.
+	 * @return true if some move was undone and not replaced.
+	 */
+	public boolean canRedo() { return done < size; }
+
+	/**
+	 * Forgets every move.
+	 */
+	public void clear(){
+		Arrays.fill(runs, null);
+		Arrays.fill(moves, null);
+		deltaBytes = 0;
+		start = 0;
+		size = 0;
+		done = 0;
+	}
+
+	/**
+	 * Reports the type of a move.
+	 * @param slot Slot of the move.
+	 * @return CLICK, FLAG or UNFLAG.
+	 */
+	public byte type(int slot) { return types[slot]; }
+
+	/**
+	 * Reports the cell of a move.
+	 * @param slot Slot of the move.
+	 * @return Flat index of the cell.
+	 */
+	public int cell(int slot) { return cells[slot]; }
+
+	/**
+	 * Reports the status before a move.
+	 * @param slot Slot of the move.
+	 * @return Status before the move.
+	 */
+	public MineSweeper.Status before(int slot) { return MineSweeper.Status.values()[before[slot]]; }
+
+	/**
+	 * Reports the status after a move.
+	 * @param slot Slot of the move.
+	 * @return Status after the move.
+	 */
+	public MineSweeper.Status after(int slot) { return MineSweeper.Status.values()[after[slot]]; }
+
+	/**
+	 * Reports the counter change of a move.
+	 * @param slot Slot of the move.
+	 * @return Safe cells opened by a click; 1 if a flag was new, 0 otherwise.
+	 */
+	public int count(int slot) { return counts[slot]; }
+
+	/**
+	 * Reports the cells opened by a click.
+	 * @param slot Slot of the move.
+	 * @return Runs as {start, length, ...}; empty for other moves. Do not modify.
+	 */
+	public int[] runs(int slot) { return runs[slot]; }
+
+	/**
+	 * Reports the mines moved away from the cell of a first click before it opened.
+	 * @param slot Slot of the move.
+	 * @return Pairs {from, to, ...} in the order they were moved; empty if none. Do not modify.
+	 */
+	public int[] moved(int slot) { return moves[slot]; }
+}
@@ -0,0 +1,41 @@
+import java.util.Random;
+
+/**
+ * A way of choosing the next cell to open in a headless MineSweeper game.
+ * A simulator creates one strategy per game, so implementations may keep
+ * per-game state.
+ */
+public interface MoveStrategy {
+
+	/**
+	 * Chooses the next cell to click.
+	 * @param game Game being played; not solved or exploded.
+	 * @param random Random numbers for this game, seeded from the game seed.
+	 * @return Flat row-major index of a hidden cell to click, or -1 to give up.
+	 */
+	int nextMove(MineSweeper game, Random random);
+
+	/**
+	 * A strategy that clicks a uniformly random hidden, unflagged cell.
+	 */
+	MoveStrategy RANDOM = (game, random) -> {
+		int rows = game.rowCount();
+		int cols = game.colCount();
+
+		//a few random probes, then a scan from a random start
+		for (int tries = 0; tries < 16; tries++){
+			int row = random.nextInt(rows);
+			int col = random.nextInt(cols);
+			if (!game.isVisible(row, col) && !game.isFlagged(row, col))
+				return col + row * cols;
+		}
+		int cells = rows * cols;
+		int start = random.nextInt(cells);
+		for (int k = 0; k < cells; k++){
+			int index = (start + k) % cells;
+			if (!game.isVisible(index / cols, index % cols) && !game.isFlagged(index / cols, index % cols))
+				return index;
+		}
+		return -1;
+	};
+}
@@ -0,0 +1,263 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds boards that can be solved without guessing.
+ *
+ * A board passes if its start cell (the center, see startCell) is a zero and
+ * MineSolver, helped by the total mine count, opens every safe cell from there.
+ * Candidate i of a master seed uses the board seed MineSimulator.gameSeed(master, i).
+ * Candidates are checked in parallel rounds; the lowest passing index wins and
+ * checks of higher indexes are skipped once a pass is known. The result is the
+ * same seed a one-thread search would find, for any number of threads.
+ *
+ * Passing boards get rare fast as the density grows: about one HARD board in a
+ * hundred passes, and next to none above a fifth of the cells. Densities above
+ * MAX_DENSITY are rejected up front, and the search gives up after
+ * MAX_CANDIDATES, so a density just under it fails in seconds, not minutes.
+ */
+public class NoGuessGenerator {
+
+	/**
+	 * Candidates checked before giving up, far more than the hundred or so a HARD
+	 * board needs on average.
+	 */
+	private static final long MAX_CANDIDATES = 10_000;
+
+	/**
+	 * Highest share of mines a no-guess board is searched for.
+	 */
+	public static final double MAX_DENSITY = 0.25;
+
+	/**
+	 * Candidates per round, per worker thread.
+	 */
+	private static final int ROUND_PER_THREAD = 8;
+
+	/**
+	 * Not meant to be instantiated.
+	 */
+	private NoGuessGenerator(){ }
+
+	/**
+	 * Reports the cell a no-guess board is opened from.
+	 * @param rowCount Number of rows.
+	 * @param colCount Number of columns.
+	 * @return Flat row-major index of the center cell.
+	 */
+	public static int startCell(int rowCount, int colCount){
+		return colCount / 2 + rowCount / 2 * colCount;
+	}
+
+	/**
+	 * Finds the seed of a no-guess board of a standard level, on the common pool.
+	 * @param masterSeed Seed the candidate seeds are derived from.
+	 * @param level Level of the board, not CUSTOM.
+	 * @return Seed to pass to new MineSweeper(seed, level).
+	 * @throws IllegalStateException if no candidate passes.
+	 */
+	public static int find(int masterSeed, MineSweeper.Level level){
+		return find(masterSeed, level, 0, 0, 0, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Finds the seed of a no-guess board.
+	 * @param masterSeed Seed the candidate seeds are derived from.
+	 * @param level Level of the board.
+	 * @param rowCount Rows of a CUSTOM board, unused otherwise.
+	 * @param colCount Columns of a CUSTOM board, unused otherwise.
+	 * @param mineCount Mines of a CUSTOM board, unused otherwise.
+	 * @param pool Pool to check candidates on.
+	 * @return Seed that builds the board with the same level and size.
+	 * @throws IllegalArgumentException if a CUSTOM board has more than MAX_DENSITY mines,
+	 *         or more cells than an int index reaches.
+	 * @throws IllegalStateException if no candidate passes.
+	 */
+	public static int find(int masterSeed, MineSweeper.Level level, int rowCount, int colCount,
+			int mineCount, ForkJoinPool pool){
+		long cells = (long) rowCount * colCount;
+		if (level == MineSweeper.Level.CUSTOM && cells > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Board too large for a no-guess board");
+		if (level == MineSweeper.Level.CUSTOM && (mineCount > cells - 9 || mineCount > MAX_DENSITY * cells))
+			throw new IllegalArgumentException("Too many mines for a no-guess board");
+
+		AtomicLong best = new AtomicLong(Long.MAX_VALUE);
+		long round = (long) pool.getParallelism() * ROUND_PER_THREAD;
+		for (long from = 0; from < MAX_CANDIDATES; from += round){
+			pool.invoke(new Search(masterSeed, level, rowCount, colCount, mineCount, from, from + round, best));
+			if (best.get() != Long.MAX_VALUE)
+				return MineSimulator.gameSeed(masterSeed, best.get());
+		}
+		throw new IllegalStateException("No no-guess board found");
+	}
+
+	/**
+	 * Checks whether a fresh board can be solved from its start cell without guessing.
+	 * The game is played out in the process.
+	 * @param game Fresh game.
+	 * @return true if every safe cell was opened by deduction alone.
+	 */
+	public static boolean solvable(MineSweeper game){
+		int cols = game.colCount();
+		int start = startCell(game.rowCount(), cols);
+		if (game.hasMine(start / cols, start % cols) || game.getCount(start / cols, start % cols) != 0)
+			return false;
+		game.clickAt(start / cols, start % cols);
+
+		MineSolver solver = new MineSolver(game);
+		while (!game.isSolved()){
+			solver.solve();
+			int index = solver.nextSafe();
+			if (index < 0){
+				//all mines found: every other hidden cell is safe
+				if (solver.knownMineCount() != game.mineCount())
+					return false;
+				for (int cell = 0; cell < game.rowCount() * cols; cell++)
+					if (!solver.isKnownMine(cell) && !game.isVisible(cell / cols, cell % cols))
+						game.clickAt(cell / cols, cell % cols);
+				return game.isSolved();
+			}
+			game.clickAt(index / cols, index % cols);
+			solver.reveal(game.getRevealed());
+		}
+		return true;
+	}
+
+	/**
+	 * Checks candidates [from, to), splitting the range across the pool.
+	 */
+	private static class Search extends RecursiveAction {
+
+		/**
+		 * Serialization version, required by RecursiveAction.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Candidates below which a range is checked by one task.
+		 */
+		private static final int SPLIT_THRESHOLD = 2;
+
+		/**
+		 * Seed the candidate seeds are derived from.
+		 */
+		private final int masterSeed;
+
+		/**
+		 * Level of the board.
+		 */
+		private final MineSweeper.Level level;
+
+		/**
+		 * Rows, columns and mines of a CUSTOM board.
+		 */
+		private final int rowCount, colCount, mineCount;
+
+		/**
+		 * First candidate, inclusive.
+		 */
+		private final long from;
+
+		/**
+		 * Last candidate, exclusive.
+		 */
+		private final long to;
+
+		/**
+		 * Lowest passing candidate so far, Long.MAX_VALUE if none.
+		 */
+		private final AtomicLong best;
+
+		/**
+		 * Constructor.
+		 * @param masterSeed Seed the candidate seeds are derived from.
+		 * @param level Level of the board.
+		 * @param rowCount Rows of a CUSTOM board.
+		 * @param colCount Columns of a CUSTOM board.
+		 * @param mineCount Mines of a CUSTOM board.
+		 * @param from First candidate, inclusive.
+		 * @param to Last candidate, exclusive.
+		 * @param best Lowest passing candidate so far.
+		 */
+		Search(int masterSeed, MineSweeper.Level level, int rowCount, int colCount, int mineCount,
+				long from, long to, AtomicLong best){
+			this.masterSeed = masterSeed;
+			this.level = level;
+			this.rowCount = rowCount;
+			this.colCount = colCount;
+			this.mineCount = mineCount;
+			this.from = from;
+			this.to = to;
+			this.best = best;
+		}
+
+		/**
+		 * Checks the range, or splits it in two.
+		 */
+		@Override
+		protected void compute(){
+			if (to - from > SPLIT_THRESHOLD){
+				long mid = (from + to) >>> 1;
+				invokeAll(new Search(masterSeed, level, rowCount, colCount, mineCount, from, mid, best),
+					new Search(masterSeed, level, rowCount, colCount, mineCount, mid, to, best));
+				return;
+			}
+			for (long i = from; i < to; i++){
+				//a lower candidate already passed, this one cannot win
+				if (i > best.get())
+					return;
+				int seed = MineSimulator.gameSeed(masterSeed, i);
+				MineSweeper game = level == MineSweeper.Level.CUSTOM
+					? new MineSweeper(seed, level, rowCount, colCount, mineCount)
+					: new MineSweeper(seed, level);
+				if (solvable(game)){
+					best.accumulateAndGet(i, Math::min);
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks that the search does not depend on the thread count, and that it
+	 * refuses or gives up on densities it cannot reach.
+	 * @param args Not used.
+	 */
+	public static void main(String[] args){
+		ForkJoinPool one = new ForkJoinPool(1);
+		ForkJoinPool many = new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+		boolean same = true;
+		for (int master = 0; master < 5; master++)
+			if (find(master, MineSweeper.Level.HARD, 0, 0, 0, one) != find(master, MineSweeper.Level.HARD, 0, 0, 0, many))
+				same = false;
+		if (same)
+			System.out.println("Yay 1");
+
+		int seed = find(3, MineSweeper.Level.CUSTOM, 30, 30, 150, many);
+		if (solvable(new MineSweeper(seed, MineSweeper.Level.CUSTOM, 30, 30, 150)))
+			System.out.println("Yay 2");
+
+		//densities and sizes no-guess boards cannot reach are refused, or given up on
+		boolean refused = false, tooLarge = false, givenUp = false;
+		try {
+			find(3, MineSweeper.Level.CUSTOM, 10, 10, 85, many);
+		} catch (IllegalArgumentException e) {
+			refused = true;
+		}
+		try {
+			find(3, MineSweeper.Level.CUSTOM, 70000, 70000, 1000, many);
+		} catch (IllegalArgumentException e) {
+			tooLarge = true;
+		}
+		try {
+			find(3, MineSweeper.Level.CUSTOM, 30, 30, 225, many);
+		} catch (IllegalStateException e) {
+			givenUp = true;
+		}
+		if (refused && tooLarge && givenUp)
+			System.out.println("Yay 3");
+		one.shutdown();
+		many.shutdown();
+	}
+}
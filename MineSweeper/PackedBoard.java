@@ -0,0 +1,493 @@
+/**
+ * A minesweeper board that packs every cell into a single byte of a flat,
+ * row-major primitive array. Cell (row, col) lives at index col + row * colCount.
+ *
+ * Layout of a cell byte:
+ *   bits 0-4: neighbor count plus one (0 means -1, the value of a fresh cell)
+ *   bit  5  : mine
+ *   bit  6  : visible
+ *   bit  7  : flagged
+ */
+public class PackedBoard {
+
+	/**
+	 * Mask of the bits holding the neighbor count plus one.
+	 */
+	public static final int COUNT_MASK = 0x1F;
+
+	/**
+	 * Bit set when the cell has a mine underneath.
+	 */
+	public static final int MINE = 0x20;
+
+	/**
+	 * Bit set when the cell has been clicked open.
+	 */
+	public static final int VISIBLE = 0x40;
+
+	/**
+	 * Bit set when the cell has been flagged.
+	 */
+	public static final int FLAGGED = 0x80;
+
+	/**
+	 * Largest neighbor count a cell of a square grid can hold.
+	 */
+	public static final int MAX_COUNT = 8;
+
+	/**
+	 * Underlying row-major storage, one byte per cell.
+	 */
+	private final byte[] cells;
+
+	/**
+	 * How the cells touch each other.
+	 */
+	private final Topology topology;
+
+	/**
+	 * Neighbor table of the board's size and topology.
+	 */
+	private final Topology.Table table;
+
+	/**
+	 * Scratch buffer for the neighbors read by counting and mine moves.
+	 */
+	private final int[] nbrs;
+
+	/**
+	 * Bumped on every change to mines or counts, so indexes built over the
+	 * layout can tell when they are stale.
+	 */
+	private int layoutVersion;
+
+	/**
+	 * Number of rows of the board.
+	 */
+	private final int rowCount;
+
+	/**
+	 * Number of columns of the board.
+	 */
+	private final int colCount;
+
+	/**
+	 * Constructor, creates a rowCount x colCount board of default cells (no mines).
+	 * @param rowCount Number of rows, must not be negative.
+	 * @param colCount Number of columns, must not be negative.
+	 */
+	public PackedBoard(int rowCount, int colCount){
+		this(rowCount, colCount, Topology.SQUARE);
+	}
+
+	/**
+	 * Constructor, creates a rowCount x colCount board of default cells (no mines)
+	 * whose cells touch as the topology says.
+	 * @param rowCount Number of rows, must not be negative.
+	 * @param colCount Number of columns, must not be negative.
+	 * @param topology How cells touch each other.
+	 */
+	public PackedBoard(int rowCount, int colCount, Topology topology){
+		if(rowCount < 0 || colCount < 0)
+			throw new IllegalArgumentException("Board size must not be negative!");
+		this.rowCount = rowCount;
+		this.colCount = colCount;
+		this.topology = topology;
+		cells = new byte[rowCount * colCount];
+		table = topology.table(rowCount, colCount);
+		nbrs = new int[topology.degree()];
+	}
+
+	/**
+	 * Reports how the cells of the board touch each other.
+	 * @return The topology.
+	 */
+	public Topology topology() { return topology; }
+
+	/**
+	 * Returns the neighbor table of the board, shared by boards of its size and topology.
+	 * @return The table.
+	 */
+	public Topology.Table neighborTable() { return table; }
+
+	/**
+	 * Reports number of rows.
+	 * @return Rows.
+	 */
+	public int rowCount() { return rowCount; }
+
+	/**
+	 * Reports number of columns.
+	 * @return Columns.
+	 */
+	public int colCount() { return colCount; }
+
+	/**
+	 * Reports number of cells.
+	 * @return Rows times columns.
+	 */
+	public int size() { return cells.length; }
+
+	/**
+	 * Estimates the memory of the board: a byte per cell, the neighbor table it
+	 * shares with boards of its size and topology, and object overhead.
+	 * @return Estimated bytes.
+	 */
+	public long bytes() { return cells.length + table.bytes() + 64; }
+
+	/**
+	 * Checks whether (row,col) is a cell of this board.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return Returns true if valid cell, false otherwise.
+	 */
+	public boolean isValidCell(int row, int col){
+		return row >= 0 && col >= 0 && row < rowCount && col < colCount;
+	}
+
+	/**
+	 * Converts (row,col) to a flat cell index. Does not check bounds.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return Returns the flat index of the cell.
+	 */
+	public int index(int row, int col) { return col + row * colCount; }
+
+	/**
+	 * Reports the row of a flat cell index.
+	 * @param index Flat index of the cell.
+	 * @return Row of the cell.
+	 */
+	public int row(int index) { return index / colCount; }
+
+	/**
+	 * Reports the column of a flat cell index.
+	 * @param index Flat index of the cell.
+	 * @return Column of the cell.
+	 */
+	public int col(int index) { return index % colCount; }
+
+	/**
+	 * Reports the raw state byte of a cell as an unsigned value.
+	 * @param index Flat index of the cell.
+	 * @return The packed state of the cell.
+	 */
+	public int state(int index) { return cells[index] & 0xFF; }
+
+	/**
+	 * Reports how often mines or counts changed.
+	 * @return A number that changes whenever a mine or count does.
+	 */
+	public int layoutVersion() { return layoutVersion; }
+
+	/**
+	 * Reports whether the cell has a mine.
+	 * @param index Flat index of the cell.
+	 * @return true if it has a mine; false otherwise
+	 */
+	public boolean hasMine(int index) { return (cells[index] & MINE) != 0; }
+
+	/**
+	 * Places a mine at the cell.
+	 * @param index Flat index of the cell.
+	 */
+	public void setMine(int index){
+		cells[index] |= MINE;
+		layoutVersion++;
+	}
+
+	/**
+	 * Removes a mine from the cell.
+	 * @param index Flat index of the cell.
+	 */
+	public void removeMine(int index){
+		cells[index] &= ~MINE;
+		layoutVersion++;
+	}
+
+	/**
+	 * Reports whether the cell has been clicked open.
+	 * @param index Flat index of the cell.
+	 * @return true if cell is exposed (not hidden); false otherwise
+	 */
+	public boolean isVisible(int index) { return (cells[index] & VISIBLE) != 0; }
+
+	/**
+	 * Opens the cell.
+	 * @param index Flat index of the cell.
+	 */
+	public void setVisible(int index) { cells[index] |= VISIBLE; }
+
+	/**
+	 * Hides the cell.
+	 * @param index Flat index of the cell.
+	 */
+	public void setInvisible(int index) { cells[index] &= ~VISIBLE; }
+
+	/**
+	 * Reports whether the cell has been flagged.
+	 * @param index Flat index of the cell.
+	 * @return true if cell has been flagged; false otherwise
+	 */
+	public boolean isFlagged(int index) { return (cells[index] & FLAGGED) != 0; }
+
+	/**
+	 * Flags the cell.
+	 * @param index Flat index of the cell.
+	 */
+	public void setFlagged(int index) { cells[index] |= FLAGGED; }
+
+	/**
+	 * Unflags the cell.
+	 * @param index Flat index of the cell.
+	 */
+	public void unFlagged(int index) { cells[index] &= ~FLAGGED; }
+
+	/**
+	 * Reports the number of mines adjacent to the cell, -1 if never set.
+	 * @param index Flat index of the cell.
+	 * @return the number of mines adjacent to this cell.
+	 */
+	public int getCount(int index) { return (cells[index] & COUNT_MASK) - 1; }
+
+	/**
+	 * Sets the number of mines adjacent to the cell, -1 for a cell with a mine.
+	 * @param index Flat index of the cell.
+	 * @param count the number of mines adjacent to this cell.
+	 */
+	public void setCount(int index, int count){
+		if (count<-1 || count>MAX_COUNT){
+			throw new IllegalArgumentException("Incorrect count value: " + count + "!");
+		}
+		cells[index] = (byte) ((cells[index] & ~COUNT_MASK) | (count + 1));
+		layoutVersion++;
+	}
+
+	/**
+	 * Writes the flat indexes of the neighbors of a cell into out, from the neighbor table.
+	 * @param index Flat index of the cell.
+	 * @param out Array of length at least 8 to receive the neighbor indexes.
+	 * @return Returns the number of neighbors written.
+	 */
+	public int neighbors(int index, int[] out){
+		return table.neighbors(index, out);
+	}
+
+	/**
+	 * Counts the mines in the neighbor cells of a cell.
+	 * @param index Flat index of the cell.
+	 * @return Returns number of neighboring mines.
+	 */
+	public int countNbrMines(int index){
+		int n = table.neighbors(index, nbrs);
+		int count = 0;
+		for(int k=0; k<n; k++)
+			if((cells[nbrs[k]] & MINE) != 0)
+				count++;
+		return count;
+	}
+
+	/**
+	 * Sets the counts of every cell from the mines already on the board: -1 for
+	 * a mine, otherwise the number of adjacent mines. Only the neighbors of the
+	 * given mines are visited after one linear reset pass.
+	 * @param mines Flat indexes of all mine cells of the board.
+	 */
+	public void countMines(DynIntArr310 mines){
+		layoutVersion++;
+		for(int i=0; i<cells.length; i++)
+		{
+			int count = (cells[i] & MINE) != 0 ? 0 : 1;
+			cells[i] = (byte) ((cells[i] & ~COUNT_MASK) | count);
+		}
+
+		for(int i=0; i<mines.size(); i++)
+		{
+			int n = table.neighbors(mines.get(i), nbrs);
+			for(int k=0; k<n; k++)
+				if((cells[nbrs[k]] & MINE) == 0)
+					cells[nbrs[k]]++;
+		}
+	}
+
+	/**
+	 * Places a mine at the cell and keeps the counts of the cell and its neighbors
+	 * up to date. Expects the counts of the board to be set already. O(1).
+	 * @param index Flat index of the cell.
+	 * @return Returns false if the cell already had a mine, true otherwise.
+	 */
+	public boolean placeMine(int index){
+		if((cells[index] & MINE) != 0)
+			return false;
+		cells[index] = (byte) ((cells[index] & ~COUNT_MASK) | MINE);
+		layoutVersion++;
+
+		int n = table.neighbors(index, nbrs);
+		for(int k=0; k<n; k++)
+			if((cells[nbrs[k]] & MINE) == 0)
+				cells[nbrs[k]]++;
+		return true;
+	}
+
+	/**
+	 * Removes the mine from the cell and keeps the counts of the cell and its
+	 * neighbors up to date. Expects the counts of the board to be set already.
+	 * @param index Flat index of the cell.
+	 * @return Returns false if the cell had no mine, true otherwise.
+	 */
+	public boolean clearMine(int index){
+		if((cells[index] & MINE) == 0)
+			return false;
+		cells[index] &= ~MINE;
+		layoutVersion++;
+
+		int n = table.neighbors(index, nbrs);
+		int count = 0;
+		for(int k=0; k<n; k++)
+		{
+			if((cells[nbrs[k]] & MINE) == 0)
+				cells[nbrs[k]]--;
+			else
+				count++;
+		}
+		cells[index] = (byte) ((cells[index] & ~COUNT_MASK) | (count + 1));
+		return true;
+	}
+
+	/**
+	 * Returns a Cell view of (row, col) that reads and writes this board.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @return A Cell backed by this board.
+	 */
+	public Cell cellAt(int row, int col){
+		if(!isValidCell(row, col))
+			throw new IndexOutOfBoundsException("Index("+row+","+col+") out of bounds!");
+		return new PackedCell(this, index(row, col));
+	}
+
+	/**
+	 * Builds a grid of Cell views backed by this board, for code that still needs Cells.
+	 * @return A grid of Cells that read and write this board.
+	 */
+	public DynGrid310<Cell> toGrid(){
+		DynGrid310<Cell> grid = new DynGrid310<>();
+		for(int i=0; i<rowCount; i++)
+		{
+			DynArr310<Cell> row = new DynArr310<>(Math.max(colCount, 2));
+			for(int j=0; j<colCount; j++)
+				row.add(new PackedCell(this, index(i, j)));
+			grid.addRow(i, row);
+		}
+		return grid;
+	}
+
+	/**
+	 * Copies a grid of Cells into a new packed board.
+	 * @param grid Grid of cells to copy.
+	 * @return A packed board with the same cell states.
+	 */
+	public static PackedBoard fromGrid(DynGrid310<Cell> grid){
+		PackedBoard packed = new PackedBoard(grid.getNumRow(), grid.getNumCol());
+		for(int i=0; i<packed.rowCount; i++)
+		{
+			for(int j=0; j<packed.colCount; j++)
+			{
+				Cell cell = grid.get(i, j);
+				int index = packed.index(i, j);
+				packed.setCount(index, cell.getCount());
+				if(cell.hasMine())
+					packed.setMine(index);
+				if(cell.visible())
+					packed.setVisible(index);
+				if(cell.isFlagged())
+					packed.setFlagged(index);
+			}
+		}
+		return packed;
+	}
+
+	/**
+	 * Displays the board in the same format as DynGrid310 of Cells.
+	 * @return A string representation of the board.
+	 */
+	@Override
+	public String toString(){
+		if(rowCount == 0 || colCount == 0){ return "empty board"; }
+		StringBuilder sb = new StringBuilder();
+		for(int i=0; i<rowCount; i++){
+			sb.append("|");
+			for (int j=0; j<colCount; j++){
+				sb.append(PackedCell.toString(state(index(i, j))));
+				sb.append("|");
+			}
+			sb.append("\n");
+		}
+		return sb.toString().trim();
+	}
+
+	//******************************************************
+	//*******     BELOW THIS LINE IS TESTING CODE    *******
+	//*******      Edit it as much as you'd like!    *******
+	//******************************************************
+
+	/**
+	 * Tests the PackedBoard class.
+	 * @param args String array (not used).
+	 */
+	public static void main(String[] args){
+		PackedBoard packed = new PackedBoard(3, 4);
+
+		//fresh cells behave like default Cells
+		int index = packed.index(2, 1);
+		if (packed.size() == 12 && !packed.hasMine(index) && !packed.isVisible(index)
+			&& !packed.isFlagged(index) && packed.getCount(index) == -1){
+			System.out.println("Yay 1");
+		}
+
+		//flags do not disturb each other
+		packed.setMine(index);
+		packed.setCount(index, -1);
+		packed.setFlagged(index);
+		packed.setCount(packed.index(1, 1), 1);
+		if (packed.hasMine(index) && packed.isFlagged(index) && !packed.isVisible(index)
+			&& packed.getCount(index) == -1 && packed.getCount(packed.index(1, 1)) == 1
+			&& packed.countNbrMines(packed.index(1, 1)) == 1){
+			System.out.println("Yay 2");
+		}
+
+		//neighbors of a corner and of an inner cell
+		int[] nbrs = new int[8];
+		if (packed.neighbors(0, nbrs) == 3 && packed.neighbors(packed.index(1, 1), nbrs) == 8){
+			System.out.println("Yay 3");
+		}
+
+		//incremental counts match a full recount
+		PackedBoard counted = new PackedBoard(4, 5);
+		DynIntArr310 mines = new DynIntArr310();
+		mines.add(counted.index(0, 0));
+		mines.add(counted.index(1, 2));
+		counted.setMine(mines.get(0));
+		counted.setMine(mines.get(1));
+		counted.countMines(mines);
+		boolean ok = counted.getCount(counted.index(0, 1)) == 2 && counted.getCount(0) == -1;
+		ok = ok && counted.placeMine(counted.index(3, 4)) && !counted.placeMine(counted.index(3, 4))
+			&& counted.clearMine(0) && !counted.clearMine(0);
+		for(int i=0; i<counted.size(); i++)
+			ok = ok && counted.getCount(i) == (counted.hasMine(i) ? -1 : counted.countNbrMines(i));
+		if (ok && counted.getCount(0) == 0 && counted.getCount(counted.index(2, 3)) == 2){
+			System.out.println("Yay 4");
+		}
+
+		//Cell views write through, and copying back gives the same board
+		DynGrid310<Cell> grid = packed.toGrid();
+		grid.get(0, 0).setVisible();
+		grid.get(0, 0).setCount(0);
+		PackedBoard copy = PackedBoard.fromGrid(grid);
+		if (packed.isVisible(0) && copy.toString().equals(packed.toString())
+			&& grid.toString().equals(packed.toString())
+			&& grid.get(2, 1).toStringDebug().equals("X,f")){
+			System.out.println("Yay 5");
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * A Cell view of one cell of a PackedBoard. Every getter and setter reads or
+ * writes the board's byte, so the view never holds state of its own.
+ */
+public class PackedCell extends Cell {
+
+	/**
+	 * Board that owns the cell.
+	 */
+	private final PackedBoard board;
+
+	/**
+	 * Flat index of the cell in the board.
+	 */
+	private final int index;
+
+	/**
+	 * Constructor, creates a view of one cell of a packed board.
+	 * @param board Board that owns the cell.
+	 * @param index Flat index of the cell in the board.
+	 */
+	public PackedCell(PackedBoard board, int index){
+		this.board = board;
+		this.index = index;
+	}
+
+	/**
+	 * Reports the flat index of the viewed cell.
+	 * @return Flat index of the cell.
+	 */
+	public int index() { return index; }
+
+	@Override
+	public void setMine() { board.setMine(index); }
+
+	@Override
+	public void removeMine() { board.removeMine(index); }
+
+	@Override
+	public boolean hasMine() { return board.hasMine(index); }
+
+	@Override
+	public void setVisible() { board.setVisible(index); }
+
+	@Override
+	public void setInvisible() { board.setInvisible(index); }
+
+	@Override
+	public boolean visible() { return board.isVisible(index); }
+
+	@Override
+	public void setFlagged() { board.setFlagged(index); }
+
+	@Override
+	public void unFlagged() { board.unFlagged(index); }
+
+	@Override
+	public boolean isFlagged() { return board.isFlagged(index); }
+
+	@Override
+	public int getCount() { return board.getCount(index); }
+
+	@Override
+	public void setCount(int count) { board.setCount(index, count); }
+
+	@Override
+	public String toString() { return toString(board.state(index)); }
+
+	@Override
+	public String toStringDebug(){
+		int state = board.state(index);
+		String visibleS = (state & PackedBoard.VISIBLE) != 0 ? ",v":"";
+		String flaggedS = (state & PackedBoard.FLAGGED) != 0 ? "f":"";
+		if ((state & PackedBoard.MINE) != 0)
+			return "X,"+flaggedS +visibleS;
+		else
+			return " ,"+flaggedS + ((state & PackedBoard.COUNT_MASK) - 1)+visibleS;
+	}
+
+	/**
+	 * Formats a packed cell state the same way as Cell.toString().
+	 * @param state Packed state of the cell.
+	 * @return a String representation of the cell.
+	 */
+	static String toString(int state){
+		if ((state & PackedBoard.FLAGGED) != 0) return "F";
+		if ((state & PackedBoard.VISIBLE) != 0){
+			int count = (state & PackedBoard.COUNT_MASK) - 1;
+			if ((state & PackedBoard.MINE) != 0) return "X";
+			else if (count==0)
+					return " ";
+			else
+					return ""+count;
+		}
+		else
+			return "?";
+	}
+}
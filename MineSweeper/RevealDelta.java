@@ -0,0 +1,116 @@
+/**
+ * What changed on a MineSweeper board after one click, flag or unflag: the cells
+ * that were opened, the cells whose flag changed, and the game status before and
+ * after the move. Cells are flat row-major indexes (row * colCount + col).
+ */
+public class RevealDelta {
+
+	/**
+	 * Value returned by the move, same as clickAt for clicks and 1/0 for true/false flag moves.
+	 */
+	private final int result;
+
+	/**
+	 * Cells opened by the move, in the order they were opened.
+	 */
+	private final DynIntArr310 revealed;
+
+	/**
+	 * Cells flagged by the move.
+	 */
+	private final DynIntArr310 flagged;
+
+	/**
+	 * Cells unflagged by the move.
+	 */
+	private final DynIntArr310 unflagged;
+
+	/**
+	 * Game status before the move.
+	 */
+	private final MineSweeper.Status before;
+
+	/**
+	 * Game status after the move.
+	 */
+	private final MineSweeper.Status after;
+
+	/**
+	 * Constructor.
+	 * @param result Value returned by the move.
+	 * @param revealed Cells opened by the move.
+	 * @param flagged Cells flagged by the move.
+	 * @param unflagged Cells unflagged by the move.
+	 * @param before Game status before the move.
+	 * @param after Game status after the move.
+	 */
+	public RevealDelta(int result, DynIntArr310 revealed, DynIntArr310 flagged,
+			DynIntArr310 unflagged, MineSweeper.Status before, MineSweeper.Status after){
+		this.result = result;
+		this.revealed = revealed;
+		this.flagged = flagged;
+		this.unflagged = unflagged;
+		this.before = before;
+		this.after = after;
+	}
+
+	/**
+	 * Reports the value returned by the move.
+	 * @return For a click, the clickAt result; for a flag move, 1 if flagAt/unFlagAt returned true, 0 otherwise.
+	 */
+	public int result() { return result; }
+
+	/**
+	 * Reports the cells opened by the move.
+	 * @return Flat indexes of the opened cells.
+	 */
+	public DynIntArr310 revealed() { return revealed; }
+
+	/**
+	 * Reports the cells flagged by the move.
+	 * @return Flat indexes of the newly flagged cells.
+	 */
+	public DynIntArr310 flagged() { return flagged; }
+
+	/**
+	 * Reports the cells unflagged by the move.
+	 * @return Flat indexes of the newly unflagged cells.
+	 */
+	public DynIntArr310 unflagged() { return unflagged; }
+
+	/**
+	 * Reports the game status before the move.
+	 * @return Status before the move.
+	 */
+	public MineSweeper.Status before() { return before; }
+
+	/**
+	 * Reports the game status after the move.
+	 * @return Status after the move.
+	 */
+	public MineSweeper.Status after() { return after; }
+
+	/**
+	 * Reports whether the move changed the game status.
+	 * @return true if the status before and after differ.
+	 */
+	public boolean statusChanged() { return before != after; }
+
+	/**
+	 * Reports whether the move left the board unchanged.
+	 * @return true if no cell was opened, flagged or unflagged.
+	 */
+	public boolean isEmpty(){
+		return revealed.size() == 0 && flagged.size() == 0 && unflagged.size() == 0;
+	}
+
+	/**
+	 * Displays the delta, use this for debugging.
+	 * @return A string representation of the delta.
+	 */
+	@Override
+	public String toString(){
+		return "result=" + result + " revealed=" + revealed + " flagged=" + flagged
+			+ " unflagged=" + unflagged + " " + before + "->" + after;
+	}
+}
@@ -0,0 +1,348 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * How the cells of a board touch each other. A topology precomputes, once per
+ * board size, a neighbor table in two classes: the inner cells, whose neighbors
+ * are fixed index offsets (one set per row parity for hexagons), and the border
+ * cells of the first and last row and column, whose neighbors are listed one by
+ * one. The table takes memory in rows + cols, not in cells, so even a 2000x2000
+ * board keeps its 1 byte per cell. Tables are immutable and shared by all boards
+ * of a size.
+ *
+ *   SQUARE  the classic grid: up to 8 neighbors, fewer on the edges.
+ *   TORUS   the grid with opposite edges joined: 8 neighbors everywhere
+ *           (fewer on boards under 3 rows or columns, where some coincide).
+ *   HEX     hexagons in rows, odd rows shifted half a cell right: up to 6 neighbors.
+ */
+public enum Topology {
+
+	/**
+	 * The classic square grid.
+	 */
+	SQUARE(8) {
+		@Override
+		int compute(int row, int col, int rows, int cols, int[] out){
+			int n = 0;
+			for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++)
+				for (int c = Math.max(0, col - 1); c <= Math.min(cols - 1, col + 1); c++)
+					if (r != row || c != col)
+						out[n++] = c + r * cols;
+			return n;
+		}
+	},
+
+	/**
+	 * The square grid wrapping around at all four edges.
+	 */
+	TORUS(8) {
+		@Override
+		int compute(int row, int col, int rows, int cols, int[] out){
+			int self = col + row * cols;
+			int n = 0;
+			for (int dr = -1; dr <= 1; dr++)
+				for (int dc = -1; dc <= 1; dc++){
+					int cell = Math.floorMod(col + dc, cols) + Math.floorMod(row + dr, rows) * cols;
+					if (cell != self && !contains(out, n, cell))
+						out[n++] = cell;
+				}
+			return n;
+		}
+	},
+
+	/**
+	 * Hexagonal cells, odd rows shifted half a cell to the right.
+	 */
+	HEX(6) {
+		@Override
+		int rowClasses() { return 2; }
+
+		@Override
+		int compute(int row, int col, int rows, int cols, int[] out){
+			//the two cells touched above and below start one column left on even rows
+			int shift = row % 2 == 0 ? -1 : 0;
+			int n = 0;
+			for (int dr = -1; dr <= 1; dr++){
+				int r = row + dr;
+				if (r < 0 || r >= rows)
+					continue;
+				int from = dr == 0 ? col - 1 : col + shift;
+				for (int c = from; c <= from + (dr == 0 ? 2 : 1); c++)
+					if (c >= 0 && c < cols && (dr != 0 || c != col))
+						out[n++] = c + r * cols;
+			}
+			return n;
+		}
+	};
+
+	/**
+	 * Table sizes kept before the cache is emptied.
+	 */
+	private static final int CACHE_LIMIT = 32;
+
+	/**
+	 * Most neighbors a cell can have.
+	 */
+	private final int degree;
+
+	/**
+	 * Tables already built, by rows << 32 | cols.
+	 */
+	private final ConcurrentHashMap<Long, Table> tables = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor.
+	 * @param degree Most neighbors a cell can have.
+	 */
+	Topology(int degree){
+		this.degree = degree;
+	}
+
+	/**
+	 * Reports the most neighbors a cell can have.
+	 * @return 8 for square grids, 6 for hexagons.
+	 */
+	public int degree() { return degree; }
+
+	/**
+	 * Computes the neighbors of one cell, with bounds checks.
+	 * @param row Row of the cell.
+	 * @param col Column of the cell.
+	 * @param rows Number of rows of the board.
+	 * @param cols Number of columns of the board.
+	 * @param out Array of at least degree() slots for the neighbor indexes.
+	 * @return Number of neighbors written, each once.
+	 */
+	abstract int compute(int row, int col, int rows, int cols, int[] out);
+
+	/**
+	 * Reports how many row classes inner cells fall in: inner cells of rows with
+	 * the same remainder modulo this number have the same neighbor offsets.
+	 * @return 1, or 2 when odd and even rows differ.
+	 */
+	int rowClasses() { return 1; }
+
+	/**
+	 * Checks whether a cell is among the first n entries of an array.
+	 * @param cells Array of cells.
+	 * @param n Entries to look at.
+	 * @param cell Cell to look for.
+	 * @return true if found.
+	 */
+	private static boolean contains(int[] cells, int n, int cell){
+		for (int i = 0; i < n; i++)
+			if (cells[i] == cell)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Returns the neighbor table of a board size, building it on first use.
+	 * @param rows Number of rows.
+	 * @param cols Number of columns.
+	 * @return The shared table.
+	 */
+	public Table table(int rows, int cols){
+		long key = (long) rows << 32 | cols;
+		Table table = tables.get(key);
+		if (table == null){
+			if (tables.size() >= CACHE_LIMIT)
+				tables.clear();
+			table = tables.computeIfAbsent(key, k -> new Table(this, rows, cols));
+		}
+		return table;
+	}
+
+	/**
+	 * Neighbors of every cell of one board size. An inner cell, off the first and
+	 * last row and column, finds its neighbors at fixed offsets from its index; a
+	 * border cell reads them from a list kept in compressed rows by border slot.
+	 */
+	public static final class Table {
+
+		/**
+		 * Number of rows.
+		 */
+		private final int rows;
+
+		/**
+		 * Number of columns.
+		 */
+		private final int cols;
+
+		/**
+		 * Neighbor offsets of the inner cells of each row class, null for classes with no inner cell.
+		 */
+		private final int[][] inner;
+
+		/**
+		 * Start of each border slot's neighbors, with one extra entry for the end.
+		 */
+		private final int[] start;
+
+		/**
+		 * Neighbors of all border slots, slot by slot.
+		 */
+		private final int[] cells;
+
+		/**
+		 * Builds the table.
+		 * @param topology Topology to build for.
+		 * @param rows Number of rows.
+		 * @param cols Number of columns.
+		 */
+		private Table(Topology topology, int rows, int cols){
+			this.rows = rows;
+			this.cols = cols;
+			int[] out = new int[topology.degree];
+
+			//offsets of a sample inner cell of each row class
+			inner = new int[topology.rowClasses()][];
+			for (int row = 1; row < rows - 1 && row <= inner.length && cols > 2; row++){
+				int cell = 1 + row * cols;
+				int k = topology.compute(row, 1, rows, cols, out);
+				int[] offsets = new int[k];
+				for (int j = 0; j < k; j++)
+					offsets[j] = out[j] - cell;
+				Arrays.sort(offsets);
+				inner[row % inner.length] = offsets;
+			}
+
+			int slots = rows == 0 ? 0 : rows == 1 ? cols : 2 * cols + 2 * (rows - 2);
+			start = new int[slots + 1];
+			int[] all = new int[slots * topology.degree];
+			int at = 0;
+			for (int slot = 0; slot < slots; slot++){
+				int cell = cellOf(slot);
+				int k = topology.compute(cell / cols, cell % cols, rows, cols, out);
+				Arrays.sort(out, 0, k);
+				System.arraycopy(out, 0, all, at, k);
+				at += k;
+				start[slot + 1] = at;
+			}
+			cells = Arrays.copyOf(all, at);
+		}
+
+		/**
+		 * Finds the border slot of a border cell: the first row, then the last row,
+		 * then the first and last column of each row in between.
+		 * @param row Row of the cell.
+		 * @param col Column of the cell.
+		 * @return Slot of the cell.
+		 */
+		private int slotOf(int row, int col){
+			if (row == 0)
+				return col;
+			if (row == rows - 1)
+				return cols + col;
+			return 2 * cols + 2 * (row - 1) + (col == 0 ? 0 : 1);
+		}
+
+		/**
+		 * Finds the cell of a border slot.
+		 * @param slot Border slot.
+		 * @return Flat index of the cell.
+		 */
+		private int cellOf(int slot){
+			if (slot < cols)
+				return slot;
+			if (slot < 2 * cols)
+				return slot - cols + (rows - 1) * cols;
+			int k = slot - 2 * cols;
+			return (1 + k / 2) * cols + (k % 2 == 0 ? 0 : cols - 1);
+		}
+
+		/**
+		 * Copies the neighbors of a cell, in increasing index order on every topology.
+		 * @param cell Flat index of the cell.
+		 * @param out Array of at least degree() slots.
+		 * @return Number of neighbors written.
+		 */
+		public int neighbors(int cell, int[] out){
+			int row = cell / cols;
+			int col = cell - row * cols;
+			if (row > 0 && row < rows - 1 && col > 0 && col < cols - 1){
+				int[] offsets = inner[row % inner.length];
+				for (int j = 0; j < offsets.length; j++)
+					out[j] = cell + offsets[j];
+				return offsets.length;
+			}
+			int slot = slotOf(row, col);
+			int from = start[slot];
+			int k = start[slot + 1] - from;
+			System.arraycopy(cells, from, out, 0, k);
+			return k;
+		}
+
+		/**
+		 * Checks whether two cells touch.
+		 * @param cell Flat index of one cell.
+		 * @param other Flat index of the other cell.
+		 * @return true if other is a neighbor of cell.
+		 */
+		public boolean touches(int cell, int other){
+			int row = cell / cols;
+			int col = cell - row * cols;
+			if (row > 0 && row < rows - 1 && col > 0 && col < cols - 1){
+				for (int offset : inner[row % inner.length])
+					if (cell + offset == other)
+						return true;
+				return false;
+			}
+			int slot = slotOf(row, col);
+			for (int k = start[slot]; k < start[slot + 1]; k++)
+				if (cells[k] == other)
+					return true;
+			return false;
+		}
+
+		/**
+		 * Estimates the memory the table takes.
+		 * @return Bytes of its arrays.
+		 */
+		public long bytes(){
+			long bytes = 4L * (start.length + cells.length) + 64;
+			for (int[] offsets : inner)
+				bytes += offsets == null ? 0 : 4L * offsets.length + 16;
+			return bytes;
+		}
+	}
+
+	/**
+	 * Self-checks: neighbor counts of each topology and symmetric tables.
+	 * @param args Not used.
+	 */
+	public static void main(String[] args){
+		int[] out = new int[8];
+		Table square = SQUARE.table(5, 6);
+		Table torus = TORUS.table(5, 6);
+		Table hex = HEX.table(5, 6);
+		if (square.neighbors(0, out) == 3 && square.neighbors(7, out) == 8
+			&& torus.neighbors(0, out) == 8 && torus.touches(0, 29) && torus.touches(0, 5)
+			&& hex.neighbors(7, out) == 6 && hex.touches(7, 1) && hex.touches(7, 2) && !hex.touches(7, 0)
+			&& hex.touches(13, 6) && hex.touches(13, 7) && hex.touches(13, 19) && !hex.touches(13, 8)){
+			System.out.println("Yay 1");
+		}
+
+		//every table matches compute cell by cell in increasing order, is symmetric and is shared between boards of a size
+		boolean symmetric = true;
+		int[] expected = new int[8];
+		for (Topology topology : values())
+			for (int[] size : new int[][] { {1, 1}, {1, 4}, {4, 1}, {2, 3}, {3, 3}, {5, 6}, {16, 30} }){
+				Table table = topology.table(size[0], size[1]);
+				for (int i = 0; i < size[0] * size[1]; i++){
+					int n = table.neighbors(i, out);
+					int m = topology.compute(i / size[1], i % size[1], size[0], size[1], expected);
+					Arrays.sort(expected, 0, m);
+					symmetric &= n == m && Arrays.equals(out, 0, n, expected, 0, m);
+					for (int k = 0; k < n; k++)
+						symmetric &= table.touches(out[k], i) && out[k] != i && (k == 0 || out[k - 1] < out[k]);
+				}
+				symmetric &= topology.table(size[0], size[1]) == table;
+			}
+		//a 2000x2000 table keeps only its border
+		if (symmetric && SQUARE.table(2000, 2000).bytes() < 400_000){
+			System.out.println("Yay 2");
+		}
+	}
+}
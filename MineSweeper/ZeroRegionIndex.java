@@ -0,0 +1,304 @@
+import java.util.Arrays;
+
+/**
+ * Labels the zero-count regions of a board once, so a click on a zero cell can
+ * open its whole region without a search, and gives the board's 3BV.
+ *
+ * A region is a set of zero-count cells connected through their neighbors,
+ * together with the numbered cells around it: exactly what one click on any of
+ * its zero cells opens. Regions are found by union-find over the cell indexes
+ * and stored in compressed rows: the cells of region r are
+ * cells()[start(r)] to cells()[end(r) - 1], zero cells first. A numbered cell
+ * touching several regions is listed in each.
+ *
+ * 3BV, the fewest clicks that solve the board, is the number of regions plus
+ * the safe numbered cells that touch no region.
+ */
+public class ZeroRegionIndex {
+
+	/**
+	 * Region of each zero cell, -1 for the other cells.
+	 */
+	private final int[] region;
+
+	/**
+	 * Start of each region in cells, with one extra entry for the end.
+	 */
+	private final int[] start;
+
+	/**
+	 * Cells of all regions, region by region.
+	 */
+	private final int[] cells;
+
+	/**
+	 * Zero cells of each region; they come first in its cells.
+	 */
+	private final int[] zeros;
+
+	/**
+	 * 3BV of the board.
+	 */
+	private final int threeBV;
+
+	/**
+	 * Layout version of the board the index was built from.
+	 */
+	private final int version;
+
+	/**
+	 * Builds the index of a board whose counts are set. O(cells).
+	 * @param board The board.
+	 */
+	public ZeroRegionIndex(PackedBoard board){
+		int n = board.size();
+		version = board.layoutVersion();
+		int[] nbrs = new int[board.topology().degree()];
+
+		//union-find over the zero cells, linking each to its earlier zero neighbors
+		int[] parent = new int[n];
+		for (int i = 0; i < n; i++)
+			parent[i] = isZero(board, i) ? i : -1;
+		for (int i = 0; i < n; i++){
+			if (parent[i] < 0)
+				continue;
+			int m = board.neighbors(i, nbrs);
+			for (int k = 0; k < m; k++){
+				int nbr = nbrs[k];
+				if (nbr < i && parent[nbr] >= 0)
+					union(parent, i, nbr);
+			}
+		}
+
+		//number the roots, then label every zero cell
+		region = parent;
+		int regions = 0;
+		for (int i = 0; i < n; i++)
+			if (parent[i] == i)
+				parent[i] = -2 - regions++;
+		for (int i = 0; i < n; i++)
+			if (region[i] >= 0)
+				region[i] = label(parent, i);
+		for (int i = 0; i < n; i++)
+			if (region[i] < -1)
+				region[i] = -2 - region[i];
+
+		//find the regions around each numbered cell, once
+		DynIntArr310 border = new DynIntArr310();
+		int[] seen = new int[board.topology().degree()];
+		int[] count = new int[regions + 1];
+		zeros = new int[regions];
+		int lonely = 0;
+		for (int i = 0; i < n; i++){
+			if (region[i] >= 0){
+				count[region[i]]++;
+				zeros[region[i]]++;
+				continue;
+			}
+			if (board.hasMine(i))
+				continue;
+			int k = 0;
+			int m = board.neighbors(i, nbrs);
+			for (int j = 0; j < m; j++){
+				int label = region[nbrs[j]];
+				if (label < 0)
+					continue;
+				boolean dup = false;
+				for (int s = 0; s < k && !dup; s++)
+					dup = seen[s] == label;
+				if (!dup){
+					seen[k++] = label;
+					count[label]++;
+					border.add(i);
+					border.add(label);
+				}
+			}
+			if (k == 0)
+				lonely++;
+		}
+		threeBV = regions + lonely;
+
+		start = new int[regions + 1];
+		for (int r = 0; r < regions; r++)
+			start[r + 1] = start[r] + count[r];
+		cells = new int[start[regions]];
+
+		//fill: zero cells first, then border cells, each region from its start
+		int[] at = Arrays.copyOf(start, regions);
+		for (int i = 0; i < n; i++)
+			if (region[i] >= 0)
+				cells[at[region[i]]++] = i;
+		for (int j = 0; j < border.size(); j += 2)
+			cells[at[border.get(j + 1)]++] = border.get(j);
+	}
+
+	/**
+	 * Tests for a safe cell with no mine around it.
+	 * @param board The board.
+	 * @param i Flat index of the cell.
+	 * @return true for a zero cell.
+	 */
+	private static boolean isZero(PackedBoard board, int i){
+		return !board.hasMine(i) && board.getCount(i) == 0;
+	}
+
+	/**
+	 * Finds the root of a cell, halving the path on the way.
+	 * @param parent Union-find parents.
+	 * @param i Cell.
+	 * @return Root cell.
+	 */
+	private static int find(int[] parent, int i){
+		while (parent[i] != i){
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	/**
+	 * Joins the sets of two cells, keeping the smaller root.
+	 * @param parent Union-find parents.
+	 * @param a One cell.
+	 * @param b Other cell.
+	 */
+	private static void union(int[] parent, int a, int b){
+		int ra = find(parent, a);
+		int rb = find(parent, b);
+		if (ra < rb)
+			parent[rb] = ra;
+		else if (rb < ra)
+			parent[ra] = rb;
+	}
+
+	/**
+	 * Finds the numbered root of a cell once roots hold -2 - label.
+	 * @param parent Union-find parents with labeled roots.
+	 * @param i Cell.
+	 * @return Encoded label -2 - region.
+	 */
+	private static int label(int[] parent, int i){
+		while (parent[i] >= 0)
+			i = parent[i];
+		return parent[i];
+	}
+
+	/**
+	 * Reports whether the index still matches a board.
+	 * @param board The board.
+	 * @return true if no mine or count changed since the index was built.
+	 */
+	public boolean matches(PackedBoard board) { return board.layoutVersion() == version && board.size() == region.length; }
+
+	/**
+	 * Estimates the memory of the index.
+	 * @return Bytes of its arrays.
+	 */
+	public long bytes() { return 4L * (region.length + start.length + cells.length + zeros.length) + 96; }
+
+	/**
+	 * Reports the number of regions.
+	 * @return Region count.
+	 */
+	public int regionCount() { return zeros.length; }
+
+	/**
+	 * Reports the region of a zero cell.
+	 * @param cell Flat index of the cell.
+	 * @return Region, or -1 if the cell is not a zero cell.
+	 */
+	public int regionOf(int cell) { return region[cell]; }
+
+	/**
+	 * Reports where a region starts in cells().
+	 * @param r Region.
+	 * @return First position.
+	 */
+	public int start(int r) { return start[r]; }
+
+	/**
+	 * Reports where a region ends in cells().
+	 * @param r Region.
+	 * @return Position after the last one.
+	 */
+	public int end(int r) { return start[r + 1]; }
+
+	/**
+	 * Reports the zero cells of a region; they are its first cells.
+	 * @param r Region.
+	 * @return Zero cell count.
+	 */
+	public int zeroCount(int r) { return zeros[r]; }
+
+	/**
+	 * Returns the cells of all regions.
+	 * @return Flat indexes, region by region. Do not modify.
+	 */
+	public int[] cells() { return cells; }
+
+	/**
+	 * Reports the 3BV of the board.
+	 * @return Fewest clicks that solve the board.
+	 */
+	public int threeBV() { return threeBV; }
+
+	/**
+	 * Self-checks: regions match flood fills and 3BV matches a click count.
+	 * @param args Not used.
+	 */
+	public static void main(String[] args){
+		//each region holds exactly what a flood fill from its first zero cell opens
+		boolean same = true;
+		int[] nbrs = new int[8];
+		for (int seed = 0; seed < 50; seed++){
+			MineSweeper game = new MineSweeper(seed, MineSweeper.Level.CUSTOM, 40, 50, 150 + 10 * seed);
+			PackedBoard board = PackedBoard.fromGrid(game.getBoard());
+			ZeroRegionIndex index = new ZeroRegionIndex(board);
+			for (int r = 0; r < index.regionCount(); r++){
+				boolean[] open = new boolean[board.size()];
+				DynIntArr310 flood = new DynIntArr310();
+				flood.add(index.cells()[index.start(r)]);
+				open[flood.get(0)] = true;
+				for (int next = 0; next < flood.size(); next++){
+					if (board.getCount(flood.get(next)) != 0)
+						continue;
+					int k = board.neighbors(flood.get(next), nbrs);
+					for (int j = 0; j < k; j++)
+						if (!open[nbrs[j]]){
+							open[nbrs[j]] = true;
+							flood.add(nbrs[j]);
+						}
+				}
+				int[] opened = flood.toArray();
+				int[] listed = Arrays.copyOfRange(index.cells(), index.start(r), index.end(r));
+				Arrays.sort(opened);
+				Arrays.sort(listed);
+				same &= Arrays.equals(opened, listed);
+			}
+		}
+		if (same){
+			System.out.println("Yay 1");
+		}
+
+		//3BV is the clicks of a player that opens every region, then every lonely number
+		boolean bv = true;
+		for (int seed = 0; seed < 50; seed++){
+			MineSweeper game = new MineSweeper(seed, MineSweeper.Level.HARD);
+			int clicks = 0;
+			for (int pass = 0; pass < 2; pass++)
+				for (int i = 0; i < 16 * 30; i++){
+					int row = i / 30;
+					int col = i % 30;
+					if (!game.hasMine(row, col) && !game.isVisible(row, col)
+						&& (pass == 1 || game.getCount(row, col) == 0)){
+						game.clickAt(row, col);
+						clicks++;
+					}
+				}
+			bv &= game.isSolved() && game.threeBV() == clicks;
+		}
+		if (bv){
+			System.out.println("Yay 2");
+		}
+	}
+}